@@ -0,0 +1,42 @@
+package toberumono.json;
+
+import toberumono.json.exceptions.JSONException;
+
+/**
+ * Shared support for the typed accessors on {@link JSONObject} and {@link JSONArray}.<br>
+ * The accessors check the type of the value inline and only call into this class when they have to report a problem, so reading a value does
+ * not box the index or build a message.
+ * 
+ * @author Toberumono
+ */
+final class JSONAccessors {
+	
+	private JSONAccessors() {/* This class should not be initialized */}
+	
+	/**
+	 * @param value
+	 *            the value that was found
+	 * @return {@code true} if {@code value} is missing or is JSON's {@code null}
+	 */
+	static boolean isAbsent(JSONData<?> value) {
+		return value == null || value.type() == JSONType.NULL;
+	}
+	
+	/**
+	 * Constructs the {@link JSONException} thrown when a typed accessor finds a value of the wrong type.
+	 * 
+	 * @param value
+	 *            the value that was found ({@code null} if there was no value)
+	 * @param expected
+	 *            a description of the expected type
+	 * @param location
+	 *            the key ({@link String}) or index ({@link Integer}) that was accessed
+	 * @return the {@link JSONException} to throw
+	 */
+	static JSONException mismatch(JSONData<?> value, String expected, Object location) {
+		String where = location instanceof String ? JSONString.toJSONString((String) location) : "index " + location;
+		if (value == null)
+			return new JSONException("Expected " + expected + " at " + where + " but there is no value there");
+		return new JSONException("Expected " + expected + " at " + where + " but found " + value.type());
+	}
+}
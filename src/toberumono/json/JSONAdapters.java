@@ -0,0 +1,129 @@
+package toberumono.json;
+
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Implements the dispatch used by {@link JSONSystem#wrap(Object)}.<br>
+ * The adapter for each {@link Class} is chosen once and cached in a {@link ClassValue}, so wrapping a value costs a single lookup rather than a
+ * chain of {@code instanceof} checks. Registering an adapter replaces the cache so that classes which were already resolved pick it up.
+ * 
+ * @author Toberumono
+ */
+final class JSONAdapters {
+	private static final Map<Class<?>, Function<?, ? extends JSONData<?>>> registered = new ConcurrentHashMap<>();
+	private static volatile ClassValue<Function<Object, JSONData<?>>> adapters = newAdapterCache();
+	
+	private JSONAdapters() {/* This class should not be initialized */}
+	
+	static JSONData<?> wrap(Object value) {
+		if (value == null)
+			return JSONNull.NULL;
+		return adapters.get(value.getClass()).apply(value);
+	}
+	
+	static <T> void register(Class<T> type, Function<? super T, ? extends JSONData<?>> adapter) {
+		synchronized (registered) {
+			registered.put(Objects.requireNonNull(type, "type"), Objects.requireNonNull(adapter, "adapter"));
+			adapters = newAdapterCache(); //Subtypes of type may have already resolved a different adapter
+		}
+	}
+	
+	private static ClassValue<Function<Object, JSONData<?>>> newAdapterCache() {
+		return new ClassValue<Function<Object, JSONData<?>>>() {
+			@Override
+			protected Function<Object, JSONData<?>> computeValue(Class<?> type) {
+				return createAdapter(type);
+			}
+		};
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Function<Object, JSONData<?>> createAdapter(Class<?> type) {
+		if (JSONData.class.isAssignableFrom(type)) //Values that are already JSONData are never passed to registered adapters
+			return value -> (JSONData<?>) value;
+		Function<?, ? extends JSONData<?>> adapter = findRegistered(registered, type);
+		if (adapter != null)
+			return (Function<Object, JSONData<?>>) adapter;
+		if (Number.class.isAssignableFrom(type)) {
+			//The number type can be changed at any time, so it has to be checked when the value is wrapped
+			Function<Object, JSONData<?>> fallback = createObjectAdapter(type);
+			return value -> JSONSystem.getNumberType().isInstance(value) ? new JSONNumber<>((Number) value) : fallback.apply(value);
+		}
+		if (type == String.class)
+			return value -> new JSONString((String) value);
+		if (type == Boolean.class)
+			return value -> JSONBoolean.valueOf((Boolean) value);
+		if (Collection.class.isAssignableFrom(type))
+			return value -> JSONArray.wrap((Collection<?>) value);
+		if (type.isArray())
+			return createArrayAdapter(type.getComponentType());
+		return createObjectAdapter(type);
+	}
+	
+	/**
+	 * Finds the value registered for the nearest superclass of {@code type} (including {@code type} itself) or, failing that, for the nearest
+	 * of its interfaces, searching the interfaces breadth-first starting with those of {@code type}. This is also used by
+	 * {@link JSONWrapped} to find registered copiers.
+	 * 
+	 * @return the value, or {@code null} if none of the supertypes of {@code type} are in {@code registry}
+	 */
+	static <V> V findRegistered(Map<Class<?>, V> registry, Class<?> type) {
+		ArrayDeque<Class<?>> interfaces = new ArrayDeque<>();
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			V value = registry.get(c);
+			if (value != null)
+				return value;
+			interfaces.addAll(Arrays.asList(c.getInterfaces()));
+		}
+		Set<Class<?>> seen = new HashSet<>();
+		while (!interfaces.isEmpty()) {
+			Class<?> c = interfaces.poll();
+			if (!seen.add(c))
+				continue;
+			V value = registry.get(c);
+			if (value != null)
+				return value;
+			interfaces.addAll(Arrays.asList(c.getInterfaces()));
+		}
+		return null;
+	}
+	
+	private static Function<Object, JSONData<?>> createArrayAdapter(Class<?> component) {
+		if (!component.isPrimitive())
+			return value -> JSONArray.wrap(Arrays.asList((Object[]) value));
+		if (component == int.class)
+			return value -> JSONArray.wrap((int[]) value);
+		if (component == long.class)
+			return value -> JSONArray.wrap((long[]) value);
+		if (component == double.class)
+			return value -> JSONArray.wrap((double[]) value);
+		if (component == boolean.class)
+			return value -> JSONArray.wrap((boolean[]) value);
+		return value -> { //The remaining primitive arrays are rare enough that boxing through Array.get is acceptable
+			int length = Array.getLength(value);
+			JSONArray out = new JSONArray(length);
+			for (int i = 0; i < length; i++)
+				out.add(wrap(Array.get(value, i)));
+			return out;
+		};
+	}
+	
+	private static Function<Object, JSONData<?>> createObjectAdapter(Class<?> type) {
+		if (JSONRepresentable.class.isAssignableFrom(type))
+			return value -> ((JSONRepresentable) value).toJSONObject();
+		if (JSONSerializable.class.isAssignableFrom(type))
+			return value -> new JSONWrapped<>((JSONSerializable) value);
+		return value -> {
+			throw new UnsupportedOperationException("Cannot wrap a value that is not part of JSON's default supported values and does not implement JSONSerializable or JSONRepresentable");
+		};
+	}
+}
@@ -1,11 +1,13 @@
 package toberumono.json;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
 
+import toberumono.json.exceptions.JSONException;
+
 /**
  * Represents a comma-separated list of items bracketed by '[' and ']' in JSON text.
  * 
@@ -62,7 +64,9 @@ public class JSONArray extends ArrayList<JSONData<?>> implements JSONData<List<J
 
 	@Override
 	public JSONArray deepCopy() {
-		JSONArray out = (JSONArray) clone();
+		if (getClass() == JSONArray.class)
+			return JSONCopier.copy(this);
+		JSONArray out = (JSONArray) clone(); //Subclasses are copied via clone so that their runtime type is preserved
 		for (int i = 0; i < out.size(); i++)
 			out.set(i, out.get(i).deepCopy());
 		if (!isModified()) //We can take advantage of out already being flagged as modifiable to avoid having to copy the "modifiable" field
@@ -89,44 +93,21 @@ public class JSONArray extends ArrayList<JSONData<?>> implements JSONData<List<J
 	
 	@Override
 	public String toJSONString() {
-		StringBuilder out = new StringBuilder("[");
-		JSONData<?> e;
-		for (Iterator<JSONData<?>> iter = this.iterator(); iter.hasNext();) {
-			e = iter.next();
-			out.append(e.toJSONString());
-			if (iter.hasNext())
-				out.append(", ");
-		}
-		out.append(']');
-		return out.toString();
+		return JSONGenerator.toJSONString(this, false);
 	}
 	
 	@Override
 	public StringBuilder toFormattedJSON(final StringBuilder sb, final String indentation) {
-		if (size() == 0)
-			return sb.append("[ ]");
-		final String innerIndentation = indentation + JSONSystem.getIndentation();
-		sb.append('[');
-		int i = 0;
-		JSONData<?> e = get(i);
-		for (; i < size() - 1; e = get(++i)) {
-			if (e.type() == JSONType.OBJECT || e.type() == JSONType.ARRAY) {
-				e = (JSONData<?>) e.value();
-				sb.append(System.lineSeparator()).append(innerIndentation);
-				e.toFormattedJSON(sb, innerIndentation);
-				sb.append(',');
-			}
-			else
-				sb.append(' ').append(get(i).toJSONString()).append(',');
-		}
-		if (e.type() == JSONType.OBJECT || e.type() == JSONType.ARRAY) {
-			sb.append(System.lineSeparator()).append(innerIndentation);
-			e.toFormattedJSON(sb, innerIndentation);
-			sb.append(System.lineSeparator()).append(indentation);
+		try {
+			writeJSON(new JSONGenerator(sb, true, indentation));
 		}
-		else
-			sb.append(' ').append(e.toJSONString()).append(' ');
-		return sb.append(']');
+		catch (IOException e) {} //StringBuilders do not throw IOExceptions
+		return sb;
+	}
+	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		generator.tree(this);
 	}
 	
 	/**
@@ -137,7 +118,10 @@ public class JSONArray extends ArrayList<JSONData<?>> implements JSONData<List<J
 	 * @return a {@link JSONArray} containing the elements in {@code c}
 	 */
 	public static final JSONArray wrap(Collection<?> c) {
-		return c.stream().collect(JSONArray::new, (l, e) -> l.add(e instanceof JSONData ? (JSONData<?>) e : JSONSystem.wrap((Object) e)), JSONArray::addAll);
+		JSONArray out = new JSONArray(c.size());
+		for (Object e : c)
+			out.add(e instanceof JSONData ? (JSONData<?>) e : JSONSystem.wrap(e));
+		return out;
 	}
 	
 	/**
@@ -152,7 +136,421 @@ public class JSONArray extends ArrayList<JSONData<?>> implements JSONData<List<J
 	 * @return a {@link JSONArray} containing the elements in {@code c}
 	 */
 	public static final <T> JSONArray wrap(Collection<T> c, Function<T, JSONData<?>> converter) {
-		return c.stream().collect(JSONArray::new, (l, e) -> l.add(converter.apply(e)), JSONArray::addAll);
+		JSONArray out = new JSONArray(c.size());
+		for (T e : c)
+			out.add(converter.apply(e));
+		return out;
+	}
+	
+	/**
+	 * Wraps the elements of an {@code int[]} in a {@link JSONArray}.
+	 * 
+	 * @param values
+	 *            the values to wrap
+	 * @return a {@link JSONArray} containing the values in {@code values}
+	 */
+	public static final JSONArray wrap(int[] values) {
+		JSONArray out = new JSONArray(values.length);
+		for (int value : values)
+			out.add(JSONNumber.valueOf(value));
+		return out;
+	}
+	
+	/**
+	 * Wraps the elements of a {@code long[]} in a {@link JSONArray}.
+	 * 
+	 * @param values
+	 *            the values to wrap
+	 * @return a {@link JSONArray} containing the values in {@code values}
+	 */
+	public static final JSONArray wrap(long[] values) {
+		JSONArray out = new JSONArray(values.length);
+		for (long value : values)
+			out.add(JSONNumber.valueOf(value));
+		return out;
+	}
+	
+	/**
+	 * Wraps the elements of a {@code double[]} in a {@link JSONArray}.
+	 * 
+	 * @param values
+	 *            the values to wrap
+	 * @return a {@link JSONArray} containing the values in {@code values}
+	 */
+	public static final JSONArray wrap(double[] values) {
+		JSONArray out = new JSONArray(values.length);
+		for (double value : values)
+			out.add(JSONNumber.valueOf(value));
+		return out;
+	}
+	
+	/**
+	 * Wraps the elements of a {@code boolean[]} in a {@link JSONArray}.
+	 * 
+	 * @param values
+	 *            the values to wrap
+	 * @return a {@link JSONArray} containing the values in {@code values}
+	 */
+	public static final JSONArray wrap(boolean[] values) {
+		JSONArray out = new JSONArray(values.length);
+		for (boolean value : values)
+			out.add(JSONBoolean.valueOf(value));
+		return out;
+	}
+	
+	/**
+	 * Appends {@code value} to the end of this {@link JSONArray} without boxing it. The value is stored as an {@link Integer}, just as the
+	 * parser stores integers that fit in an {@code int}.
+	 * 
+	 * @param value
+	 *            the value to append
+	 * @return {@code true}
+	 * @see JSONNumber#valueOf(int)
+	 */
+	public boolean add(int value) {
+		return add(JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Appends {@code value} to the end of this {@link JSONArray} as a single-character {@link JSONString}. Without this overload,
+	 * {@code char} values would be widened to {@code int} and stored as numbers.
+	 * 
+	 * @param value
+	 *            the value to append
+	 * @return {@code true}
+	 */
+	public boolean add(char value) {
+		return add(new JSONString(String.valueOf(value)));
+	}
+	
+	/**
+	 * Appends {@code value} to the end of this {@link JSONArray} without boxing it.
+	 * 
+	 * @param value
+	 *            the value to append
+	 * @return {@code true}
+	 * @see JSONNumber#valueOf(long)
+	 */
+	public boolean add(long value) {
+		return add(JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Appends {@code value} to the end of this {@link JSONArray} without boxing it.
+	 * 
+	 * @param value
+	 *            the value to append
+	 * @return {@code true}
+	 * @see JSONNumber#valueOf(double)
+	 */
+	public boolean add(double value) {
+		return add(JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Appends {@code value} to the end of this {@link JSONArray} as a {@link Float}, so it is written as the shortest decimal that parses back
+	 * to the same {@code float} rather than being widened to a {@code double}.
+	 * 
+	 * @param value
+	 *            the value to append
+	 * @return {@code true}
+	 */
+	public boolean add(float value) {
+		return add(new JSONNumber<>(value));
+	}
+	
+	/**
+	 * Appends {@code value} to the end of this {@link JSONArray}.
+	 * 
+	 * @param value
+	 *            the value to append
+	 * @return {@code true}
+	 */
+	public boolean add(boolean value) {
+		return add(JSONBoolean.valueOf(value));
+	}
+	
+	/**
+	 * Replaces the value at {@code index} with {@code value} without boxing it. The value is stored as an {@link Integer}, just as the parser
+	 * stores integers that fit in an {@code int}.
+	 * 
+	 * @param index
+	 *            the index of the value to replace
+	 * @param value
+	 *            the new value
+	 * @return the value previously at {@code index}
+	 * @see JSONNumber#valueOf(int)
+	 */
+	public JSONData<?> set(int index, int value) {
+		return set(index, JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Replaces the value at {@code index} with {@code value} as a single-character {@link JSONString}. Without this overload, {@code char}
+	 * values would be widened to {@code int} and stored as numbers.
+	 * 
+	 * @param index
+	 *            the index of the value to replace
+	 * @param value
+	 *            the new value
+	 * @return the value previously at {@code index}
+	 */
+	public JSONData<?> set(int index, char value) {
+		return set(index, new JSONString(String.valueOf(value)));
+	}
+	
+	/**
+	 * Replaces the value at {@code index} with {@code value} without boxing it.
+	 * 
+	 * @param index
+	 *            the index of the value to replace
+	 * @param value
+	 *            the new value
+	 * @return the value previously at {@code index}
+	 * @see JSONNumber#valueOf(long)
+	 */
+	public JSONData<?> set(int index, long value) {
+		return set(index, JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Replaces the value at {@code index} with {@code value} without boxing it.
+	 * 
+	 * @param index
+	 *            the index of the value to replace
+	 * @param value
+	 *            the new value
+	 * @return the value previously at {@code index}
+	 * @see JSONNumber#valueOf(double)
+	 */
+	public JSONData<?> set(int index, double value) {
+		return set(index, JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Replaces the value at {@code index} with {@code value} as a {@link Float}, so it is written as the shortest decimal that parses back to
+	 * the same {@code float} rather than being widened to a {@code double}.
+	 * 
+	 * @param index
+	 *            the index of the value to replace
+	 * @param value
+	 *            the new value
+	 * @return the value previously at {@code index}
+	 */
+	public JSONData<?> set(int index, float value) {
+		return set(index, new JSONNumber<>(value));
+	}
+	
+	/**
+	 * Replaces the value at {@code index} with {@code value}.
+	 * 
+	 * @param index
+	 *            the index of the value to replace
+	 * @param value
+	 *            the new value
+	 * @return the value previously at {@code index}
+	 */
+	public JSONData<?> set(int index, boolean value) {
+		return set(index, JSONBoolean.valueOf(value));
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as an {@code int} as if by {@link Number#intValue()}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @return the value at {@code index}
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is out of range
+	 * @throws JSONException
+	 *             if the value at {@code index} is not a {@link JSONNumber}
+	 */
+	public int getInt(int index) {
+		JSONData<?> value = get(index);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).intValue();
+		throw JSONAccessors.mismatch(value, "a number", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as an {@code int} as if by {@link Number#intValue()}, or {@code defaultValue} if {@code index} is out
+	 * of range or the value at {@code index} is {@code null}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value at {@code index}
+	 * @return the value at {@code index} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value at {@code index} is neither {@code null} nor a {@link JSONNumber}
+	 */
+	public int getInt(int index, int defaultValue) {
+		JSONData<?> value = getOrNull(index);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).intValue();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a number", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@code long} as if by {@link Number#longValue()}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @return the value at {@code index}
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is out of range
+	 * @throws JSONException
+	 *             if the value at {@code index} is not a {@link JSONNumber}
+	 */
+	public long getLong(int index) {
+		JSONData<?> value = get(index);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).longValue();
+		throw JSONAccessors.mismatch(value, "a number", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@code long} as if by {@link Number#longValue()}, or {@code defaultValue} if {@code index} is
+	 * out of range or the value at {@code index} is {@code null}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value at {@code index}
+	 * @return the value at {@code index} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value at {@code index} is neither {@code null} nor a {@link JSONNumber}
+	 */
+	public long getLong(int index, long defaultValue) {
+		JSONData<?> value = getOrNull(index);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).longValue();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a number", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@code double} as if by {@link Number#doubleValue()}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @return the value at {@code index}
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is out of range
+	 * @throws JSONException
+	 *             if the value at {@code index} is not a {@link JSONNumber}
+	 */
+	public double getDouble(int index) {
+		JSONData<?> value = get(index);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).doubleValue();
+		throw JSONAccessors.mismatch(value, "a number", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@code double} as if by {@link Number#doubleValue()}, or {@code defaultValue} if {@code index}
+	 * is out of range or the value at {@code index} is {@code null}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value at {@code index}
+	 * @return the value at {@code index} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value at {@code index} is neither {@code null} nor a {@link JSONNumber}
+	 */
+	public double getDouble(int index, double defaultValue) {
+		JSONData<?> value = getOrNull(index);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).doubleValue();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a number", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@code boolean}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @return the value at {@code index}
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is out of range
+	 * @throws JSONException
+	 *             if the value at {@code index} is not a {@link JSONBoolean}
+	 */
+	public boolean getBoolean(int index) {
+		JSONData<?> value = get(index);
+		if (value instanceof JSONBoolean)
+			return ((JSONBoolean) value).value();
+		throw JSONAccessors.mismatch(value, "a boolean", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@code boolean}, or {@code defaultValue} if {@code index} is out of range or the value at {@code
+	 * index} is {@code null}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value at {@code index}
+	 * @return the value at {@code index} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value at {@code index} is neither {@code null} nor a {@link JSONBoolean}
+	 */
+	public boolean getBoolean(int index, boolean defaultValue) {
+		JSONData<?> value = getOrNull(index);
+		if (value instanceof JSONBoolean)
+			return ((JSONBoolean) value).value();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a boolean", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@link String}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @return the value at {@code index}
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is out of range
+	 * @throws JSONException
+	 *             if the value at {@code index} is not a {@link JSONString}
+	 */
+	public String getString(int index) {
+		JSONData<?> value = get(index);
+		if (value instanceof JSONString)
+			return ((JSONString) value).value();
+		throw JSONAccessors.mismatch(value, "a string", index);
+	}
+	
+	/**
+	 * Retrieves the value at {@code index} as a {@link String}, or {@code defaultValue} if {@code index} is out of range or the value at {@code
+	 * index} is {@code null}.
+	 * 
+	 * @param index
+	 *            the index of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value at {@code index}
+	 * @return the value at {@code index} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value at {@code index} is neither {@code null} nor a {@link JSONString}
+	 */
+	public String getString(int index, String defaultValue) {
+		JSONData<?> value = getOrNull(index);
+		if (value instanceof JSONString)
+			return ((JSONString) value).value();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a string", index);
+	}
+	
+	private JSONData<?> getOrNull(int index) {
+		return index >= 0 && index < size() ? get(index) : null;
 	}
 	
 	@Override
@@ -167,6 +565,50 @@ public class JSONArray extends ArrayList<JSONData<?>> implements JSONData<List<J
 		return modified;
 	}
 	
+	/**
+	 * Clears the modified flag of this {@link JSONArray} without checking its values. This is only correct when none of its values are
+	 * modified, which is the case while a parser is building the tree from the bottom up.
+	 */
+	void clearOwnModified() {
+		modified = false;
+	}
+	
+	/**
+	 * Sets the modified flag of this {@link JSONArray} to that of {@code source} without checking the values of either.
+	 */
+	void copyOwnModified(JSONArray source) {
+		modified = source.modified;
+	}
+	
+	/**
+	 * @return the modified flag of this {@link JSONArray} without checking its values
+	 */
+	boolean isOwnModified() {
+		return modified;
+	}
+	
+	/**
+	 * Sets the modified flag of this {@link JSONArray} without checking its values.
+	 */
+	void setOwnModified(boolean modified) {
+		this.modified = modified;
+	}
+	
+	/**
+	 * Appends {@code count} {@code null} elements so that the elements can then be filled in by index with {@link #setDirectly(int, JSONData)}.
+	 */
+	void fillWithNulls(int count) {
+		for (int i = 0; i < count; i++)
+			super.add(null);
+	}
+	
+	/**
+	 * Replaces the element at {@code index} without updating the modified flag. Used when the modified flag is set separately.
+	 */
+	void setDirectly(int index, JSONData<?> value) {
+		super.set(index, value);
+	}
+	
 	@Override
 	public void clearModified() {
 		if (modified) {
@@ -240,7 +682,7 @@ public class JSONArray extends ArrayList<JSONData<?>> implements JSONData<List<J
 	@Override
 	public JSONData<?> set(int index, JSONData<?> element) {
 		JSONData<?> old = super.set(index, element);
-		if (old == null ^ element == null || (old != null && old.equals(element.value())))
+		if (old == null ^ element == null || (old != null && !old.equals(element.value())))
 			modified = true;
 		return old;
 	}
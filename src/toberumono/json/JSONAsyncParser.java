@@ -0,0 +1,297 @@
+package toberumono.json;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import toberumono.json.exceptions.JSONSyntaxException;
+
+/**
+ * A non-blocking parser that reads JSON text from {@link ByteBuffer ByteBuffers} as they arrive.<br>
+ * Each call to {@link #feed(ByteBuffer)} decodes and parses as much of the chunk as it can and then returns. Characters that are split across
+ * chunks are held until the rest of their bytes arrive, and all of the parser's other state is kept between calls, so a single thread can parse
+ * the input from many connections at once. The input can contain any number of JSON values one after another (for example, newline-delimited
+ * JSON), and each value is reported as soon as it is complete. The limits set via {@link JSONSystem#setMaxDocumentLength(long)} and
+ * {@link JSONSystem#setMaxElements(long)} apply to each value separately rather than to the input as a whole.<br>
+ * Example Usage:
+ * 
+ * <pre>
+ * {
+ * 	JSONAsyncParser parser = new JSONAsyncParser(root -&gt; process(root));
+ * 	while (channel.read(buffer) != -1) {
+ * 		buffer.flip();
+ * 		parser.feed(buffer);
+ * 		buffer.clear();
+ * 	}
+ * 	parser.endOfInput();
+ * }
+ * </pre>
+ * 
+ * @author Toberumono
+ * @see JSONStreamParser
+ */
+public final class JSONAsyncParser {
+	private final CharsetDecoder decoder;
+	private final JSONStreamParser parser;
+	private final ValueCollector collector;
+	private final CharBuffer chars = CharBuffer.allocate(8192);
+	private ByteBuffer pending = ByteBuffer.allocate(16);
+	private long bytes;
+	
+	/**
+	 * Constructs a new {@link JSONAsyncParser} that reads UTF-8 encoded text and passes each complete JSON value to {@code consumer}.
+	 * 
+	 * @param consumer
+	 *            the {@link Consumer} that receives the root of each JSON value as soon as it has been parsed
+	 */
+	public JSONAsyncParser(Consumer<JSONData<?>> consumer) {
+		this(consumer, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Constructs a new {@link JSONAsyncParser} that reads text in the given {@link Charset} and passes each complete JSON value to
+	 * {@code consumer}.
+	 * 
+	 * @param consumer
+	 *            the {@link Consumer} that receives the root of each JSON value as soon as it has been parsed
+	 * @param charset
+	 *            the {@link Charset} in which the text is encoded
+	 */
+	public JSONAsyncParser(Consumer<JSONData<?>> consumer, Charset charset) {
+		this(new ValueCollector(consumer), charset);
+	}
+	
+	/**
+	 * Constructs a new {@link JSONAsyncParser} that reads UTF-8 encoded text and reports its structure to {@code handler}.
+	 * 
+	 * @param handler
+	 *            the {@link JSONHandler} that receives the parsed structure
+	 */
+	public JSONAsyncParser(JSONHandler handler) {
+		this(handler, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Constructs a new {@link JSONAsyncParser} that reads text in the given {@link Charset} and reports its structure to {@code handler}.
+	 * 
+	 * @param handler
+	 *            the {@link JSONHandler} that receives the parsed structure
+	 * @param charset
+	 *            the {@link Charset} in which the text is encoded
+	 */
+	public JSONAsyncParser(JSONHandler handler, Charset charset) {
+		decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+		parser = new JSONStreamParser(handler, true);
+		collector = handler instanceof ValueCollector ? (ValueCollector) handler : null;
+	}
+	
+	/**
+	 * Parses the next chunk of input. All of the remaining bytes in {@code chunk} are consumed, so the buffer can be reused as soon as this
+	 * method returns.
+	 * 
+	 * @param chunk
+	 *            the chunk to parse
+	 * @throws JSONSyntaxException
+	 *             if the chunk contains a syntax error or bytes that are not valid in the parser's {@link Charset}
+	 */
+	public void feed(ByteBuffer chunk) {
+		while (pending.position() > 0 && chunk.hasRemaining()) { //Finish the character that was split across chunks one byte at a time
+			if (!pending.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+				pending.flip();
+				pending = larger.put(pending);
+			}
+			pending.put(chunk.get());
+			pending.flip();
+			decode(pending, false);
+			pending.compact();
+		}
+		decode(chunk, false);
+		if (chunk.hasRemaining()) {
+			if (pending.remaining() < chunk.remaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(pending.position() + chunk.remaining() + 16);
+				pending.flip();
+				pending = larger.put(pending);
+			}
+			pending.put(chunk);
+		}
+	}
+	
+	/**
+	 * Parses the next chunk of input.
+	 * 
+	 * @param chunk
+	 *            the array containing the chunk to parse
+	 * @param offset
+	 *            the index of the first byte in the chunk
+	 * @param length
+	 *            the number of bytes in the chunk
+	 * @throws JSONSyntaxException
+	 *             if the chunk contains a syntax error or bytes that are not valid in the parser's {@link Charset}
+	 */
+	public void feed(byte[] chunk, int offset, int length) {
+		feed(ByteBuffer.wrap(chunk, offset, length));
+	}
+	
+	/**
+	 * Signals that there is no more input and completes the value that was being read, if any.
+	 * 
+	 * @throws JSONSyntaxException
+	 *             if the input ended partway through a value or a character
+	 */
+	public void endOfInput() {
+		pending.flip();
+		decode(pending, true);
+		pending.clear();
+		CoderResult result;
+		while ((result = decoder.flush(chars)).isOverflow())
+			drain();
+		drain();
+		if (result.isError())
+			throw error(result);
+		parser.finish();
+	}
+	
+	/**
+	 * Resets the parser so that it can read new input. Any partially-parsed value is discarded.
+	 */
+	public void reset() {
+		decoder.reset();
+		parser.reset();
+		if (collector != null)
+			collector.reset();
+		pending.clear();
+		chars.clear();
+		bytes = 0;
+	}
+	
+	/**
+	 * @return the number of bytes that have been decoded since the parser was created or last {@link #reset()}
+	 */
+	public long getByteOffset() {
+		return bytes;
+	}
+	
+	/**
+	 * @return the number of characters that have been parsed since the parser was created or last {@link #reset()}
+	 */
+	public long getOffset() {
+		return parser.getOffset();
+	}
+	
+	private void decode(ByteBuffer in, boolean endOfInput) {
+		while (true) {
+			int start = in.position();
+			CoderResult result = decoder.decode(in, chars, endOfInput);
+			bytes += in.position() - start;
+			drain();
+			if (result.isUnderflow())
+				return;
+			if (result.isError())
+				throw error(result);
+		}
+	}
+	
+	private void drain() {
+		chars.flip();
+		parser.feed(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+		chars.clear();
+	}
+	
+	private JSONSyntaxException error(CoderResult result) {
+		try {
+			result.throwException();
+		}
+		catch (CharacterCodingException e) {
+			return new JSONSyntaxException("Invalid " + decoder.charset().name() + " input at byte offset " + bytes, e);
+		}
+		return new JSONSyntaxException("Invalid " + decoder.charset().name() + " input at byte offset " + bytes);
+	}
+	
+	/**
+	 * Builds each value with a {@link JSONTreeBuilder} and passes it on as soon as its outermost structure is closed.
+	 */
+	private static final class ValueCollector implements JSONHandler {
+		private final Consumer<JSONData<?>> consumer;
+		private final JSONTreeBuilder builder = new JSONTreeBuilder();
+		private int depth = 0;
+		
+		ValueCollector(Consumer<JSONData<?>> consumer) {
+			this.consumer = consumer;
+		}
+		
+		void reset() {
+			builder.reset();
+			depth = 0;
+		}
+		
+		private void completed() {
+			if (depth == 0) {
+				JSONData<?> root = builder.getRoot();
+				builder.reset();
+				consumer.accept(root);
+			}
+		}
+		
+		@Override
+		public void startObject() {
+			depth++;
+			builder.startObject();
+		}
+		
+		@Override
+		public void endObject() {
+			depth--;
+			builder.endObject();
+			completed();
+		}
+		
+		@Override
+		public void startArray() {
+			depth++;
+			builder.startArray();
+		}
+		
+		@Override
+		public void endArray() {
+			depth--;
+			builder.endArray();
+			completed();
+		}
+		
+		@Override
+		public void key(String key) {
+			builder.key(key);
+		}
+		
+		@Override
+		public void stringValue(String value) {
+			builder.stringValue(value);
+			completed();
+		}
+		
+		@Override
+		public void numberValue(Number value) {
+			builder.numberValue(value);
+			completed();
+		}
+		
+		@Override
+		public void booleanValue(boolean value) {
+			builder.booleanValue(value);
+			completed();
+		}
+		
+		@Override
+		public void nullValue() {
+			builder.nullValue();
+			completed();
+		}
+	}
+}
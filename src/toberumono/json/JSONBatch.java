@@ -0,0 +1,124 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs an I/O task for each {@link Path} in a batch with bounded parallelism.<br>
+ * Rather than submitting one task per {@link Path}, this submits one worker per unit of parallelism, and each worker claims {@link Path Paths}
+ * until none are left. This bounds the number of files that are open at once without needing a separate semaphore.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#loadAll(java.util.Collection, Executor, int)
+ * @see JSONSystem#writeAll(Map, Executor, int)
+ */
+final class JSONBatch {
+	/**
+	 * The default parallelism for batch operations. I/O-bound work benefits from having more requests in flight than there are cores.
+	 */
+	static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	
+	private JSONBatch() {/* This class should not be initialized */}
+	
+	@FunctionalInterface
+	interface Task<T> {
+		T run(Path path) throws IOException;
+	}
+	
+	/**
+	 * Holds the default {@link Executor} so that it is only created if a batch operation is actually used.
+	 */
+	private static final class DefaultExecutor {
+		static final ExecutorService INSTANCE = create();
+		
+		private static ExecutorService create() {
+			try { //Virtual threads were added in Java 21, so they can only be accessed reflectively here
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			}
+			catch (ReflectiveOperationException | RuntimeException e) {
+				return Executors.newCachedThreadPool(r -> {
+					Thread thread = new Thread(r, "JSONSystem batch worker");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+		}
+	}
+	
+	/**
+	 * @return the {@link Executor} used when none is specified. This uses virtual threads when they are available
+	 */
+	static Executor defaultExecutor() {
+		return DefaultExecutor.INSTANCE;
+	}
+	
+	static <T> JSONBatchResult<T> run(Iterable<Path> paths, Executor executor, int parallelism, Task<T> task) throws InterruptedException {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("The parallelism must be at least 1");
+		LinkedHashSet<Path> unique = new LinkedHashSet<>();
+		for (Path path : paths)
+			unique.add(path);
+		Path[] batch = unique.toArray(new Path[unique.size()]);
+		Object[] results = new Object[batch.length];
+		Exception[] failures = new Exception[batch.length];
+		AtomicInteger next = new AtomicInteger();
+		int workers = Math.min(parallelism, batch.length);
+		CountDownLatch done = new CountDownLatch(workers);
+		Throwable[] fatal = new Throwable[1];
+		Runnable worker = () -> {
+			try {
+				for (int i; (i = next.getAndIncrement()) < batch.length;) {
+					try {
+						results[i] = task.run(batch[i]);
+					}
+					catch (IOException | RuntimeException e) {
+						failures[i] = e;
+					}
+				}
+			}
+			catch (Throwable t) {
+				synchronized (fatal) {
+					fatal[0] = t;
+				}
+				next.set(batch.length); //Stop the other workers from claiming more work
+			}
+			finally {
+				done.countDown();
+			}
+		};
+		for (int i = 0; i < workers; i++) {
+			try {
+				executor.execute(worker);
+			}
+			catch (RejectedExecutionException e) { //The caller's thread can still make progress
+				worker.run();
+			}
+		}
+		done.await();
+		synchronized (fatal) {
+			if (fatal[0] instanceof Error)
+				throw (Error) fatal[0];
+		}
+		Map<Path, T> succeeded = new LinkedHashMap<>();
+		Map<Path, Exception> failed = new LinkedHashMap<>();
+		for (int i = 0; i < batch.length; i++) {
+			if (failures[i] != null)
+				failed.put(batch[i], failures[i]);
+			else {
+				@SuppressWarnings("unchecked")
+				T result = (T) results[i];
+				succeeded.put(batch[i], result);
+			}
+		}
+		return new JSONBatchResult<>(succeeded, failed);
+	}
+}
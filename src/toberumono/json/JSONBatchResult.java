@@ -0,0 +1,52 @@
+package toberumono.json;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Holds the outcome of a batch operation such as {@link JSONSystem#loadAll(java.util.Collection)}. Every {@link Path} in the batch appears in
+ * exactly one of {@link #getResults()} and {@link #getFailures()}, and both {@link Map Maps} iterate in the order in which the {@link Path Paths}
+ * were given.
+ * 
+ * @author Toberumono
+ * @param <T>
+ *            the type of the result for each {@link Path}
+ * @see JSONSystem#loadAll(java.util.Collection)
+ * @see JSONSystem#writeAll(Map)
+ */
+public final class JSONBatchResult<T> {
+	private final Map<Path, T> results;
+	private final Map<Path, Exception> failures;
+	
+	JSONBatchResult(Map<Path, T> results, Map<Path, Exception> failures) {
+		this.results = Collections.unmodifiableMap(results);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+	
+	/**
+	 * @return an unmodifiable {@link Map} from each {@link Path} that was processed successfully to its result
+	 */
+	public Map<Path, T> getResults() {
+		return results;
+	}
+	
+	/**
+	 * @return an unmodifiable {@link Map} from each {@link Path} that could not be processed to the {@link Exception} that occurred
+	 */
+	public Map<Path, Exception> getFailures() {
+		return failures;
+	}
+	
+	/**
+	 * @return {@code true} if every {@link Path} in the batch was processed successfully
+	 */
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+	
+	@Override
+	public String toString() {
+		return "JSONBatchResult[results=" + results.keySet() + ", failures=" + failures + "]";
+	}
+}
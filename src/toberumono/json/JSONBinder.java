@@ -0,0 +1,849 @@
+package toberumono.json;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import toberumono.json.exceptions.JSONException;
+
+/**
+ * Converts arbitrary Java objects to and from {@link JSONData}.<br>
+ * A codec is built once per {@link Class} and cached in a {@link ClassValue}. Bean codecs access properties through functions that are spun by
+ * {@link LambdaMetafactory} when the members are accessible to this library, and through {@link MethodHandle MethodHandles} otherwise, so
+ * steady-state encoding and decoding does not use core reflection.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#toJSON(Object)
+ * @see JSONSystem#fromJSON(JSONData, Class)
+ */
+final class JSONBinder {
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final Method IS_RECORD, GET_RECORD_COMPONENTS, COMPONENT_NAME, COMPONENT_ACCESSOR, COMPONENT_GENERIC_TYPE, COMPONENT_TYPE;
+	
+	static {
+		Method[] record = new Method[6];
+		try { //Records were added in Java 16, so their API can only be accessed reflectively here
+			record[0] = Class.class.getMethod("isRecord");
+			record[1] = Class.class.getMethod("getRecordComponents");
+			Class<?> component = Class.forName("java.lang.reflect.RecordComponent");
+			record[2] = component.getMethod("getName");
+			record[3] = component.getMethod("getAccessor");
+			record[4] = component.getMethod("getGenericType");
+			record[5] = component.getMethod("getType");
+		}
+		catch (ReflectiveOperationException e) {
+			record = new Method[6];
+		}
+		IS_RECORD = record[0];
+		GET_RECORD_COMPONENTS = record[1];
+		COMPONENT_NAME = record[2];
+		COMPONENT_ACCESSOR = record[3];
+		COMPONENT_GENERIC_TYPE = record[4];
+		COMPONENT_TYPE = record[5];
+	}
+	
+	private static final ClassValue<Codec> codecs = new ClassValue<Codec>() {
+		@Override
+		protected Codec computeValue(Class<?> type) {
+			return createCodec(type);
+		}
+	};
+	
+	private JSONBinder() {/* This is a static class */}
+	
+	/**
+	 * Converts {@code value} into {@link JSONData}.
+	 * 
+	 * @param value
+	 *            the value to convert
+	 * @return the {@link JSONData} representation of {@code value}
+	 */
+	static JSONData<?> toJSON(Object value) {
+		return value == null ? JSONNull.NULL : codecs.get(value.getClass()).encode(value);
+	}
+	
+	/**
+	 * Converts {@code data} into an instance of {@code type}.
+	 * 
+	 * @param data
+	 *            the {@link JSONData} to convert
+	 * @param type
+	 *            the type of the value to produce
+	 * @param <T>
+	 *            the type of the value to produce
+	 * @return the converted value
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T fromJSON(JSONData<?> data, Class<T> type) {
+		if (data == null || data.type() == JSONType.NULL)
+			return null;
+		return (T) codecs.get(type).decode(data);
+	}
+	
+	private abstract static class Codec {
+		abstract JSONData<?> encode(Object value);
+		
+		abstract Object decode(JSONData<?> data);
+	}
+	
+	private static Codec codec(Type type) {
+		if (type instanceof Class)
+			return codecs.get((Class<?>) type);
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterized = (ParameterizedType) type;
+			Class<?> raw = (Class<?>) parameterized.getRawType();
+			Type[] arguments = parameterized.getActualTypeArguments();
+			if (Collection.class.isAssignableFrom(raw))
+				return new CollectionCodec(raw, new LazyCodec(arguments[0]));
+			if (Map.class.isAssignableFrom(raw))
+				return new MapCodec(raw, new LazyCodec(arguments[1]));
+			return codecs.get(raw);
+		}
+		if (type instanceof GenericArrayType)
+			return new ArrayCodec(erase(type).getComponentType(), new LazyCodec(((GenericArrayType) type).getGenericComponentType()));
+		return codecs.get(erase(type));
+	}
+	
+	private static Class<?> erase(Type type) {
+		if (type instanceof Class)
+			return (Class<?>) type;
+		if (type instanceof ParameterizedType)
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		if (type instanceof GenericArrayType)
+			return Array.newInstance(erase(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+		if (type instanceof WildcardType)
+			return erase(((WildcardType) type).getUpperBounds()[0]);
+		if (type instanceof TypeVariable)
+			return erase(((TypeVariable<?>) type).getBounds()[0]);
+		return Object.class;
+	}
+	
+	private static Codec createCodec(Class<?> type) {
+		if (JSONData.class.isAssignableFrom(type))
+			return new DataCodec(type);
+		if (type == Object.class)
+			return ObjectCodec.INSTANCE;
+		if (type.isPrimitive() || Number.class.isAssignableFrom(type) || type == Boolean.class || type == Character.class || type == String.class)
+			return new ScalarCodec(type);
+		if (type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum()))
+			return new EnumCodec(type.isEnum() ? type : type.getSuperclass());
+		if (type.isArray())
+			return new ArrayCodec(type.getComponentType(), codecs.get(type.getComponentType()));
+		if (Collection.class.isAssignableFrom(type))
+			return new CollectionCodec(type, ObjectCodec.INSTANCE);
+		if (Map.class.isAssignableFrom(type))
+			return new MapCodec(type, ObjectCodec.INSTANCE);
+		if (isRecord(type))
+			return new RecordCodec(type);
+		if (JSONRepresentable.class.isAssignableFrom(type) || JSONSerializable.class.isAssignableFrom(type))
+			return new SerializableCodec(type);
+		return new BeanCodec(type);
+	}
+	
+	/**
+	 * Defers creating the {@link Codec} for a property until it is first used so that self-referential types do not recurse while their
+	 * {@link Codec} is being built.
+	 */
+	private static final class LazyCodec extends Codec {
+		private final Type type;
+		private volatile Codec codec = null;
+		
+		LazyCodec(Type type) {
+			this.type = type;
+		}
+		
+		private Codec codec() {
+			Codec c = codec;
+			return c != null ? c : (codec = JSONBinder.codec(type));
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			return value == null ? JSONNull.NULL : codec().encode(value);
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			return data.type() == JSONType.NULL ? null : codec().decode(data);
+		}
+	}
+	
+	private static final class DataCodec extends Codec {
+		private final Class<?> type;
+		
+		DataCodec(Class<?> type) {
+			this.type = type;
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			return (JSONData<?>) value;
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			if (type.isInstance(data))
+				return data;
+			if (type.isInstance(data.value()))
+				return data.value();
+			throw new JSONException("Cannot convert " + data.type() + " to " + type.getName());
+		}
+	}
+	
+	/**
+	 * Used when nothing more is known about a value than that it is an {@link Object}. Encoding dispatches on the value's runtime type, and decoding
+	 * produces {@link String Strings}, {@link Number Numbers}, {@link Boolean Booleans}, {@link List Lists}, and {@link Map Maps}.
+	 */
+	private static final class ObjectCodec extends Codec {
+		static final ObjectCodec INSTANCE = new ObjectCodec();
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			return value == null || value.getClass() == Object.class ? JSONNull.NULL : codecs.get(value.getClass()).encode(value);
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			switch (data.type()) {
+				case ARRAY:
+					List<?> array = (List<?>) data.value();
+					ArrayList<Object> list = new ArrayList<>(array.size());
+					for (Object element : array)
+						list.add(decode((JSONData<?>) element));
+					return list;
+				case OBJECT:
+					@SuppressWarnings("unchecked") Map<String, JSONData<?>> object = (Map<String, JSONData<?>>) data.value();
+					LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+					for (Entry<String, JSONData<?>> e : object.entrySet())
+						map.put(e.getKey(), decode(e.getValue()));
+					return map;
+				default:
+					return data.value();
+			}
+		}
+	}
+	
+	private static final class ScalarCodec extends Codec {
+		private final Class<?> type;
+		
+		ScalarCodec(Class<?> type) {
+			this.type = type;
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			if (value instanceof Number)
+				return new JSONNumber<>((Number) value);
+			if (value instanceof Boolean)
+				return JSONBoolean.valueOf((Boolean) value);
+			return new JSONString(value.toString());
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			Object value = data.value();
+			if (type == String.class)
+				return value instanceof String ? value : data.toJSONString();
+			if (type == boolean.class || type == Boolean.class) {
+				if (value instanceof Boolean)
+					return value;
+				if (value instanceof String)
+					return Boolean.valueOf((String) value);
+			}
+			else if (type == char.class || type == Character.class) {
+				if (value instanceof String && ((String) value).length() == 1)
+					return ((String) value).charAt(0);
+			}
+			else {
+				Number number = value instanceof Number ? (Number) value : value instanceof String ? new BigDecimal((String) value) : null;
+				if (number != null) {
+					if (type.isInstance(number))
+						return number;
+					if (type == int.class || type == Integer.class)
+						return number.intValue();
+					if (type == long.class || type == Long.class)
+						return number.longValue();
+					if (type == double.class || type == Double.class)
+						return number.doubleValue();
+					if (type == float.class || type == Float.class)
+						return number.floatValue();
+					if (type == short.class || type == Short.class)
+						return number.shortValue();
+					if (type == byte.class || type == Byte.class)
+						return number.byteValue();
+					if (type == BigDecimal.class)
+						return number instanceof BigInteger ? new BigDecimal((BigInteger) number) : new BigDecimal(number.toString());
+					if (type == BigInteger.class)
+						return number instanceof BigDecimal ? ((BigDecimal) number).toBigInteger() : new BigDecimal(number.toString()).toBigInteger();
+					if (type == Number.class)
+						return number;
+				}
+			}
+			throw new JSONException("Cannot convert " + data.type() + " to " + type.getName());
+		}
+	}
+	
+	private static final class EnumCodec extends Codec {
+		private final Map<String, Object> constants = new LinkedHashMap<>();
+		
+		EnumCodec(Class<?> type) {
+			for (Object constant : type.getEnumConstants())
+				constants.put(((Enum<?>) constant).name(), constant);
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			return new JSONString(((Enum<?>) value).name());
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			Object constant = constants.get(data.value());
+			if (constant == null)
+				throw new JSONException(data + " is not one of " + constants.keySet());
+			return constant;
+		}
+	}
+	
+	private static final class SerializableCodec extends Codec {
+		private final Class<?> type;
+		
+		SerializableCodec(Class<?> type) {
+			this.type = type;
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			return JSONSystem.wrap(value);
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			if (type.isInstance(data.value()))
+				return data.value();
+			throw new JSONException("Cannot convert " + data.type() + " to " + type.getName());
+		}
+	}
+	
+	private static final class ArrayCodec extends Codec {
+		private final Class<?> component;
+		private final Codec elements;
+		
+		ArrayCodec(Class<?> component, Codec elements) {
+			this.component = component;
+			this.elements = elements;
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			if (component.isPrimitive())
+				return encodePrimitives(value);
+			Object[] array = (Object[]) value;
+			JSONArray out = new JSONArray(array.length);
+			for (Object element : array)
+				out.add(element == null ? JSONNull.NULL : elements.encode(element));
+			return out;
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			List<?> list = asList(data);
+			if (component.isPrimitive())
+				return decodePrimitives(list);
+			Object[] out = (Object[]) Array.newInstance(component, list.size());
+			for (int i = 0; i < out.length; i++) {
+				JSONData<?> element = (JSONData<?>) list.get(i);
+				out[i] = element.type() == JSONType.NULL ? null : elements.decode(element);
+			}
+			return out;
+		}
+		
+		private JSONArray encodePrimitives(Object value) {
+			int length = Array.getLength(value);
+			JSONArray out = new JSONArray(length);
+			if (component == int.class)
+				for (int element : (int[]) value)
+					out.add(JSONNumber.valueOf(element));
+			else if (component == long.class)
+				for (long element : (long[]) value)
+					out.add(JSONNumber.valueOf(element));
+			else if (component == double.class)
+				for (double element : (double[]) value)
+					out.add(JSONNumber.valueOf(element));
+			else if (component == boolean.class)
+				for (boolean element : (boolean[]) value)
+					out.add(JSONBoolean.valueOf(element));
+			else
+				for (int i = 0; i < length; i++)
+					out.add(elements.encode(Array.get(value, i)));
+			return out;
+		}
+		
+		private Object decodePrimitives(List<?> list) {
+			int length = list.size();
+			if (component == int.class) {
+				int[] out = new int[length];
+				for (int i = 0; i < length; i++)
+					out[i] = ((Number) ((JSONData<?>) list.get(i)).value()).intValue();
+				return out;
+			}
+			if (component == long.class) {
+				long[] out = new long[length];
+				for (int i = 0; i < length; i++)
+					out[i] = ((Number) ((JSONData<?>) list.get(i)).value()).longValue();
+				return out;
+			}
+			if (component == double.class) {
+				double[] out = new double[length];
+				for (int i = 0; i < length; i++)
+					out[i] = ((Number) ((JSONData<?>) list.get(i)).value()).doubleValue();
+				return out;
+			}
+			if (component == boolean.class) {
+				boolean[] out = new boolean[length];
+				for (int i = 0; i < length; i++)
+					out[i] = (Boolean) ((JSONData<?>) list.get(i)).value();
+				return out;
+			}
+			Object out = Array.newInstance(component, length);
+			for (int i = 0; i < length; i++)
+				Array.set(out, i, elements.decode((JSONData<?>) list.get(i)));
+			return out;
+		}
+	}
+	
+	private static final class CollectionCodec extends Codec {
+		private final Supplier<Object> constructor;
+		private final Codec elements;
+		
+		CollectionCodec(Class<?> type, Codec elements) {
+			this.elements = elements;
+			if (type.isAssignableFrom(ArrayList.class))
+				constructor = ArrayList::new;
+			else if (type.isAssignableFrom(TreeSet.class) && SortedSet.class.isAssignableFrom(type))
+				constructor = TreeSet::new;
+			else if (type.isAssignableFrom(LinkedHashSet.class))
+				constructor = LinkedHashSet::new;
+			else
+				constructor = noArgConstructor(type);
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			Collection<?> collection = (Collection<?>) value;
+			JSONArray out = new JSONArray(collection.size());
+			for (Object element : collection)
+				out.add(element == null ? JSONNull.NULL : elements.encode(element));
+			return out;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		Object decode(JSONData<?> data) {
+			Collection<Object> out = (Collection<Object>) constructor.get();
+			for (Object element : asList(data))
+				out.add(((JSONData<?>) element).type() == JSONType.NULL ? null : elements.decode((JSONData<?>) element));
+			return out;
+		}
+	}
+	
+	private static final class MapCodec extends Codec {
+		private final Supplier<Object> constructor;
+		private final Codec values;
+		
+		MapCodec(Class<?> type, Codec values) {
+			this.values = values;
+			if (type.isAssignableFrom(LinkedHashMap.class))
+				constructor = LinkedHashMap::new;
+			else if (type.isAssignableFrom(TreeMap.class) && SortedMap.class.isAssignableFrom(type))
+				constructor = TreeMap::new;
+			else
+				constructor = noArgConstructor(type);
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			JSONObject out = new JSONObject();
+			for (Entry<?, ?> e : ((Map<?, ?>) value).entrySet())
+				out.put(String.valueOf(e.getKey()), e.getValue() == null ? JSONNull.NULL : values.encode(e.getValue()));
+			return out;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		Object decode(JSONData<?> data) {
+			Map<String, Object> out = (Map<String, Object>) constructor.get();
+			for (Entry<String, JSONData<?>> e : asObject(data).entrySet())
+				out.put(e.getKey(), e.getValue().type() == JSONType.NULL ? null : values.decode(e.getValue()));
+			return out;
+		}
+	}
+	
+	/**
+	 * A property of a bean or record.
+	 */
+	private static final class Property {
+		final String name;
+		final Codec codec;
+		final Function<Object, Object> getter;
+		final BiConsumer<Object, Object> setter;
+		final Object defaultValue;
+		
+		Property(String name, Type type, Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+			this.name = name;
+			this.codec = new LazyCodec(type);
+			this.getter = getter;
+			this.setter = setter;
+			Class<?> raw = erase(type);
+			this.defaultValue = raw.isPrimitive() ? Array.get(Array.newInstance(raw, 1), 0) : null;
+		}
+	}
+	
+	private static final class BeanCodec extends Codec {
+		private final Class<?> type;
+		private final Property[] properties;
+		private Supplier<Object> constructor = null;
+		
+		BeanCodec(Class<?> type) {
+			this.type = type;
+			LinkedHashMap<String, Property> found = new LinkedHashMap<>();
+			Map<String, Method> setters = new LinkedHashMap<>();
+			for (Method method : type.getMethods())
+				if (!Modifier.isStatic(method.getModifiers()) && method.getName().startsWith("set") && method.getName().length() > 3
+						&& method.getParameterCount() == 1)
+					setters.put(method.getName().substring(3) + ":" + method.getParameterTypes()[0].getName(), method);
+			for (Method method : type.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0 || method.getDeclaringClass() == Object.class)
+					continue;
+				String name = method.getName(), suffix;
+				if (name.startsWith("get") && name.length() > 3 && method.getReturnType() != void.class)
+					suffix = name.substring(3);
+				else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class)
+					suffix = name.substring(2);
+				else
+					continue;
+				Method setter = setters.get(suffix + ":" + method.getReturnType().getName());
+				found.put(decapitalize(suffix), new Property(decapitalize(suffix), method.getGenericReturnType(), getter(method),
+						setter == null ? null : setter(setter)));
+			}
+			for (Field field : type.getFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || found.containsKey(field.getName()))
+					continue;
+				found.put(field.getName(), new Property(field.getName(), field.getGenericType(), fieldGetter(field),
+						Modifier.isFinal(modifiers) ? null : fieldSetter(field)));
+			}
+			properties = order(type, found);
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			JSONObject out = new JSONObject();
+			for (Property property : properties)
+				out.put(property.name, property.codec.encode(property.getter.apply(value)));
+			return out;
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			if (constructor == null) //Lazily resolved so that types that are only ever encoded do not need a no-argument constructor
+				constructor = noArgConstructor(type);
+			Map<String, JSONData<?>> object = asObject(data);
+			Object out = constructor.get();
+			for (Property property : properties) {
+				JSONData<?> value;
+				if (property.setter == null || (value = object.get(property.name)) == null)
+					continue;
+				Object decoded = property.codec.decode(value);
+				if (decoded != null || property.defaultValue == null)
+					property.setter.accept(out, decoded);
+			}
+			return out;
+		}
+	}
+	
+	private static final class RecordCodec extends Codec {
+		private final Property[] properties;
+		private final Function<Object[], Object> constructor;
+		
+		RecordCodec(Class<?> type) {
+			try {
+				Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+				properties = new Property[components.length];
+				Class<?>[] types = new Class<?>[components.length];
+				for (int i = 0; i < components.length; i++) {
+					types[i] = (Class<?>) COMPONENT_TYPE.invoke(components[i]);
+					properties[i] = new Property((String) COMPONENT_NAME.invoke(components[i]), (Type) COMPONENT_GENERIC_TYPE.invoke(components[i]),
+							getter((Method) COMPONENT_ACCESSOR.invoke(components[i])), null);
+				}
+				Constructor<?> canonical = type.getDeclaredConstructor(types);
+				MethodHandle handle = LOOKUP.unreflectConstructor(accessible(canonical)).asSpreader(Object[].class, types.length)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+				constructor = args -> {
+					try {
+						return handle.invokeExact(args);
+					}
+					catch (Throwable t) {
+						throw rethrow(t);
+					}
+				};
+			}
+			catch (ReflectiveOperationException e) {
+				throw new JSONException("Unable to bind " + type.getName(), e);
+			}
+		}
+		
+		@Override
+		JSONData<?> encode(Object value) {
+			JSONObject out = new JSONObject();
+			for (Property property : properties)
+				out.put(property.name, property.codec.encode(property.getter.apply(value)));
+			return out;
+		}
+		
+		@Override
+		Object decode(JSONData<?> data) {
+			Map<String, JSONData<?>> object = asObject(data);
+			Object[] args = new Object[properties.length];
+			for (int i = 0; i < properties.length; i++) {
+				JSONData<?> value = object.get(properties[i].name);
+				Object decoded = value == null ? null : properties[i].codec.decode(value);
+				args[i] = decoded == null ? properties[i].defaultValue : decoded;
+			}
+			return constructor.apply(args);
+		}
+	}
+	
+	private static Property[] order(Class<?> type, LinkedHashMap<String, Property> found) {
+		ArrayList<Property> ordered = new ArrayList<>(found.size());
+		ArrayList<Class<?>> hierarchy = new ArrayList<>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+			hierarchy.add(0, c);
+		for (Class<?> c : hierarchy) //Declaration order of the backing fields is the most natural order for the keys
+			for (Field field : c.getDeclaredFields()) {
+				Property property = found.remove(field.getName());
+				if (property != null)
+					ordered.add(property);
+			}
+		found.keySet().stream().sorted().forEach(name -> ordered.add(found.get(name)));
+		return ordered.toArray(new Property[ordered.size()]);
+	}
+	
+	private static String decapitalize(String name) {
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1)))
+			return name;
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+	
+	private static boolean isRecord(Class<?> type) {
+		try {
+			return IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+		}
+		catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+	
+	private static <T extends AccessibleObject> T accessible(T member) {
+		try {
+			member.setAccessible(true);
+		}
+		catch (RuntimeException e) {} //Public members of public types are still usable
+		return member;
+	}
+	
+	/**
+	 * @return {@code true} if {@link LambdaMetafactory} can spin a class that calls {@code member} directly
+	 */
+	private static boolean isDirectlyAccessible(Class<?> declaring, int modifiers, MethodType type) {
+		if (!Modifier.isPublic(modifiers) || !isVisible(declaring) || !isVisible(type.returnType()))
+			return false;
+		for (Class<?> parameter : type.parameterArray())
+			if (!isVisible(parameter))
+				return false;
+		return true;
+	}
+	
+	private static boolean isVisible(Class<?> type) {
+		while (type.isArray())
+			type = type.getComponentType();
+		if (type.isPrimitive())
+			return true;
+		if (!Modifier.isPublic(type.getModifiers()) || (type.getEnclosingClass() != null && !isVisible(type.getEnclosingClass())))
+			return false;
+		try { //The generated class is defined by this library's ClassLoader, so it must be able to see every type that it uses
+			return Class.forName(type.getName(), false, JSONBinder.class.getClassLoader()) == type;
+		}
+		catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> getter(Method method) {
+		try {
+			MethodHandle handle = LOOKUP.unreflect(accessible(method));
+			if (isDirectlyAccessible(method.getDeclaringClass(), method.getModifiers(), handle.type())) {
+				try {
+					CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+							MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+					return (Function<Object, Object>) site.getTarget().invokeExact();
+				}
+				catch (Throwable t) {} //Fall back to the MethodHandle
+			}
+			MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+			return bean -> {
+				try {
+					return generic.invokeExact(bean);
+				}
+				catch (Throwable t) {
+					throw rethrow(t);
+				}
+			};
+		}
+		catch (IllegalAccessException e) {
+			throw new JSONException("Unable to access " + method, e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> setter(Method method) {
+		try {
+			MethodHandle handle = LOOKUP.unreflect(accessible(method));
+			if (isDirectlyAccessible(method.getDeclaringClass(), method.getModifiers(), handle.type())) {
+				try {
+					CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+							MethodType.methodType(void.class, Object.class, Object.class), handle, handle.type().wrap().changeReturnType(void.class));
+					return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+				}
+				catch (Throwable t) {} //Fall back to the MethodHandle
+			}
+			MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			return (bean, value) -> {
+				try {
+					generic.invokeExact(bean, value);
+				}
+				catch (Throwable t) {
+					throw rethrow(t);
+				}
+			};
+		}
+		catch (IllegalAccessException e) {
+			throw new JSONException("Unable to access " + method, e);
+		}
+	}
+	
+	private static Function<Object, Object> fieldGetter(Field field) {
+		try {
+			MethodHandle generic = LOOKUP.unreflectGetter(accessible(field)).asType(MethodType.methodType(Object.class, Object.class));
+			return bean -> {
+				try {
+					return generic.invokeExact(bean);
+				}
+				catch (Throwable t) {
+					throw rethrow(t);
+				}
+			};
+		}
+		catch (IllegalAccessException e) {
+			throw new JSONException("Unable to access " + field, e);
+		}
+	}
+	
+	private static BiConsumer<Object, Object> fieldSetter(Field field) {
+		try {
+			MethodHandle generic = LOOKUP.unreflectSetter(accessible(field)).asType(MethodType.methodType(void.class, Object.class, Object.class));
+			return (bean, value) -> {
+				try {
+					generic.invokeExact(bean, value);
+				}
+				catch (Throwable t) {
+					throw rethrow(t);
+				}
+			};
+		}
+		catch (IllegalAccessException e) {
+			throw new JSONException("Unable to access " + field, e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Supplier<Object> noArgConstructor(Class<?> type) {
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+			throw new JSONException("Cannot instantiate " + type.getName());
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			MethodHandle handle = LOOKUP.unreflectConstructor(accessible(constructor));
+			if (isDirectlyAccessible(type, constructor.getModifiers(), handle.type())) {
+				try {
+					CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+							handle, handle.type());
+					return (Supplier<Object>) site.getTarget().invokeExact();
+				}
+				catch (Throwable t) {} //Fall back to the MethodHandle
+			}
+			MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+			return () -> {
+				try {
+					return generic.invokeExact();
+				}
+				catch (Throwable t) {
+					throw rethrow(t);
+				}
+			};
+		}
+		catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new JSONException(type.getName() + " does not have an accessible constructor that takes no arguments", e);
+		}
+	}
+	
+	private static List<?> asList(JSONData<?> data) {
+		if (data.type() != JSONType.ARRAY)
+			throw new JSONException("Expected an array but found " + data.type());
+		return (List<?>) data.value();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, JSONData<?>> asObject(JSONData<?> data) {
+		if (data.type() != JSONType.OBJECT)
+			throw new JSONException("Expected an object but found " + data.type());
+		return (Map<String, JSONData<?>>) data.value();
+	}
+	
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException)
+			return (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		return new JSONException(t);
+	}
+}
@@ -1,5 +1,7 @@
 package toberumono.json;
 
+import java.io.IOException;
+
 /**
  * Represents a {@link Boolean} in JSON text.
  * 
@@ -32,6 +34,11 @@ public class JSONBoolean extends JSONValue<Boolean> {
 		return value().toString();
 	}
 	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		generator.value(value().booleanValue());
+	}
+	
 	@Override
 	public JSONBoolean deepCopy() {
 		return this;
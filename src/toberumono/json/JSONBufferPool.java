@@ -0,0 +1,141 @@
+package toberumono.json;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps one {@link StringBuilder} and one {@link ByteBuffer} per thread for serialization so that the buffers that hold the output of
+ * {@link JSONData#toJSONString()} and friends do not have to be regrown from scratch on every call.<br>
+ * A buffer that has grown past the retention limit is dropped when it is released so that a single huge document does not pin its memory for
+ * the life of the thread. If a pooled buffer is already in use on the current thread (for example, when a {@link JSONSerializable} serializes
+ * a nested value via {@link JSONSerializable#toJSONString()}), a fresh buffer is handed out instead.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#getBufferStatistics()
+ */
+final class JSONBufferPool {
+	private static final int INITIAL_CAPACITY = 256;
+	private static final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+	private static final LongAdder acquisitions = new LongAdder(), reuses = new LongAdder(), discards = new LongAdder();
+	private static volatile int maxRetainedSize = Integer.getInteger("json.bufferLimit", 1 << 16);
+	
+	private JSONBufferPool() {/* This class should not be initialized */}
+	
+	/**
+	 * @return an empty {@link StringBuilder}. It should be passed to {@link #release(StringBuilder)} once its contents have been copied out
+	 */
+	static StringBuilder acquire() {
+		acquisitions.increment();
+		Buffers local = buffers.get();
+		if (local.charsInUse)
+			return new StringBuilder(INITIAL_CAPACITY);
+		local.charsInUse = true;
+		if (local.chars == null)
+			local.chars = new StringBuilder(INITIAL_CAPACITY);
+		else
+			reuses.increment();
+		return local.chars;
+	}
+	
+	static void release(StringBuilder sb) {
+		Buffers local = buffers.get();
+		if (sb != local.chars)
+			return;
+		local.charsInUse = false;
+		if (sb.capacity() > maxRetainedSize) {
+			local.chars = null;
+			discards.increment();
+		}
+		else
+			sb.setLength(0);
+	}
+	
+	/**
+	 * Encodes {@code chars} as UTF-8 into the current thread's pooled {@link ByteBuffer}.
+	 * 
+	 * @param chars
+	 *            the characters to encode
+	 * @return a {@link ByteBuffer} that has been flipped so that it holds exactly the encoded bytes. It must be passed to
+	 *         {@link #release(ByteBuffer)} once its contents have been used
+	 * @throws CharacterCodingException
+	 *             if {@code chars} contains unpaired surrogates
+	 */
+	static ByteBuffer encode(CharSequence chars) throws CharacterCodingException {
+		acquisitions.increment();
+		Buffers local = buffers.get();
+		boolean pooled = !local.bytesInUse;
+		ByteBuffer out;
+		if (pooled && local.bytes != null) {
+			reuses.increment();
+			out = local.bytes;
+			out.clear();
+		}
+		else
+			out = ByteBuffer.allocate(Math.max(chars.length() + (chars.length() >> 3), INITIAL_CAPACITY));
+		CharBuffer in = CharBuffer.wrap(chars);
+		CharsetEncoder encoder = local.encoder.reset();
+		CoderResult result;
+		while ((result = encoder.encode(in, out, true)).isOverflow()) {
+			ByteBuffer larger = ByteBuffer.allocate(out.capacity() + Math.max(out.capacity() >> 1, in.remaining() * 3));
+			out.flip();
+			out = larger.put(out);
+		}
+		if (result.isUnderflow())
+			result = encoder.flush(out); //UTF-8 encoders have no trailing state, so this cannot overflow
+		if (pooled) {
+			local.bytes = out;
+			local.bytesInUse = true;
+		}
+		if (result.isError()) {
+			release(out);
+			result.throwException();
+		}
+		out.flip();
+		return out;
+	}
+	
+	static void release(ByteBuffer buffer) {
+		Buffers local = buffers.get();
+		if (buffer != local.bytes)
+			return;
+		local.bytesInUse = false;
+		if (buffer.capacity() > maxRetainedSize) {
+			local.bytes = null;
+			discards.increment();
+		}
+	}
+	
+	static int getMaxRetainedSize() {
+		return maxRetainedSize;
+	}
+	
+	static void setMaxRetainedSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("The maximum retained size cannot be negative");
+		maxRetainedSize = size;
+	}
+	
+	static JSONBufferStatistics getStatistics() {
+		return new JSONBufferStatistics(acquisitions.sum(), reuses.sum(), discards.sum(), maxRetainedSize);
+	}
+	
+	static void resetStatistics() {
+		acquisitions.reset();
+		reuses.reset();
+		discards.reset();
+	}
+	
+	private static final class Buffers {
+		final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		StringBuilder chars = null;
+		ByteBuffer bytes = null;
+		boolean charsInUse = false, bytesInUse = false;
+	}
+}
@@ -0,0 +1,67 @@
+package toberumono.json;
+
+/**
+ * A snapshot of how effectively the per-thread serialization buffers are being reused.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#getBufferStatistics()
+ */
+public final class JSONBufferStatistics {
+	private final long acquisitions, reuses, discards;
+	private final int maxRetainedSize;
+	
+	JSONBufferStatistics(long acquisitions, long reuses, long discards, int maxRetainedSize) {
+		this.acquisitions = acquisitions;
+		this.reuses = reuses;
+		this.discards = discards;
+		this.maxRetainedSize = maxRetainedSize;
+	}
+	
+	/**
+	 * @return the number of times that a buffer was requested for serialization
+	 */
+	public long getAcquisitions() {
+		return acquisitions;
+	}
+	
+	/**
+	 * @return the number of requests that were satisfied with a buffer that had already been allocated
+	 */
+	public long getReuses() {
+		return reuses;
+	}
+	
+	/**
+	 * @return the number of requests that required a new buffer to be allocated
+	 */
+	public long getAllocations() {
+		return acquisitions - reuses;
+	}
+	
+	/**
+	 * @return the number of buffers that were dropped because they had grown past {@link #getMaxRetainedSize()}
+	 */
+	public long getDiscards() {
+		return discards;
+	}
+	
+	/**
+	 * @return the fraction of requests that reused an existing buffer, or 0 if no buffers have been requested
+	 */
+	public double getReuseRate() {
+		return acquisitions == 0 ? 0 : (double) reuses / acquisitions;
+	}
+	
+	/**
+	 * @return the largest capacity (in chars or bytes) that a pooled buffer can have and still be kept for reuse
+	 */
+	public int getMaxRetainedSize() {
+		return maxRetainedSize;
+	}
+	
+	@Override
+	public String toString() {
+		return "JSONBufferStatistics[acquisitions=" + acquisitions + ", reuses=" + reuses + ", discards=" + discards + ", maxRetainedSize="
+				+ maxRetainedSize + "]";
+	}
+}
@@ -0,0 +1,169 @@
+package toberumono.json;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Implements {@link JSONObject#deepCopy()} and {@link JSONArray#deepCopy()} without recursion.<br>
+ * Each container in the copy is allocated once at its final size and filled directly, so the copy does not go through the change checks in
+ * {@link JSONObject#put(String, JSONData)} and {@link JSONArray#set(int, JSONData)}. When a nested container is reached, an empty container of
+ * the right size is put in its place immediately (which keeps the order of the keys) and the work of filling it is pushed onto a stack.<br>
+ * The copy starts on the calling thread. Once it has copied {@link #SEQUENTIAL_NODES} nodes and there is still work on the stack, the rest of
+ * the stack is handed to the common {@link ForkJoinPool}, where the tasks split off half of their pending work whenever there are idle
+ * workers to steal it. Small trees therefore never touch the pool.<br>
+ * Subclasses of {@link JSONArray} are copied by their own {@link JSONData#deepCopy()} methods so that their runtime types are preserved.
+ * 
+ * @author Toberumono
+ */
+final class JSONCopier {
+	private static final int SEQUENTIAL_NODES = 1 << 13, CHUNK = 1 << 10;
+	
+	private JSONCopier() {/* This class should not be initialized */}
+	
+	/**
+	 * @param source
+	 *            the {@link JSONObject} to copy
+	 * @return a deep copy of {@code source}
+	 */
+	static JSONObject copy(JSONObject source) {
+		JSONObject target = (JSONObject) empty(source);
+		copy(new Pending(source, target, 0, source.size()));
+		return target;
+	}
+	
+	/**
+	 * @param source
+	 *            the {@link JSONArray} to copy. This must be exactly a {@link JSONArray} because the copy is always a {@link JSONArray}
+	 * @return a deep copy of {@code source}
+	 */
+	static JSONArray copy(JSONArray source) {
+		JSONArray target = (JSONArray) empty(source);
+		copy(new Pending(source, target, 0, source.size()));
+		return target;
+	}
+	
+	private static void copy(Pending root) {
+		ArrayDeque<Pending> stack = new ArrayDeque<>();
+		push(stack, root);
+		for (long nodes = 0; !stack.isEmpty();) {
+			nodes += stack.pop().fill(stack);
+			if (nodes >= SEQUENTIAL_NODES && !stack.isEmpty() && ForkJoinPool.getCommonPoolParallelism() > 1) {
+				ForkJoinPool.commonPool().invoke(new Task(stack));
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Pushes the work of filling a container, splitting large arrays into chunks that can be filled independently.
+	 */
+	private static void push(ArrayDeque<Pending> stack, Pending pending) {
+		if (pending.source instanceof JSONArray)
+			for (int from = pending.from; from < pending.to; from += CHUNK)
+				stack.push(new Pending(pending.source, pending.target, from, Math.min(pending.to, from + CHUNK)));
+		else
+			stack.push(pending);
+	}
+	
+	/**
+	 * @return {@code true} if {@code value} is copied by the {@link JSONCopier} rather than by its own {@link JSONData#deepCopy()} method
+	 */
+	private static boolean isContainer(JSONData<?> value) {
+		return value instanceof JSONObject || (value != null && value.getClass() == JSONArray.class);
+	}
+	
+	/**
+	 * @return an empty container with the same type and modified flag as {@code source} that can hold all of its values without growing
+	 */
+	private static JSONData<?> empty(JSONData<?> source) {
+		if (source instanceof JSONObject) {
+			JSONObject object = (JSONObject) source, out = new JSONObject((int) (object.size() / 0.75f) + 1);
+			out.copyOwnModified(object);
+			return out;
+		}
+		JSONArray array = (JSONArray) source, out = new JSONArray(array.size());
+		out.fillWithNulls(array.size());
+		out.copyOwnModified(array);
+		return out;
+	}
+	
+	/**
+	 * The work of filling all of a {@link JSONObject} or a range of a {@link JSONArray}.
+	 * 
+	 * @author Toberumono
+	 */
+	private static final class Pending {
+		final JSONData<?> source, target;
+		final int from, to;
+		
+		Pending(JSONData<?> source, JSONData<?> target, int from, int to) {
+			this.source = source;
+			this.target = target;
+			this.from = from;
+			this.to = to;
+		}
+		
+		/**
+		 * Copies the values in this {@link Pending Pending's} range and pushes the work for any nested containers onto {@code stack}.
+		 * 
+		 * @return the number of values that were copied
+		 */
+		int fill(ArrayDeque<Pending> stack) {
+			if (source instanceof JSONObject) {
+				JSONObject object = (JSONObject) target;
+				for (Entry<String, JSONData<?>> entry : ((JSONObject) source).entrySet())
+					object.putDirectly(entry.getKey(), copy(entry.getValue(), stack));
+			}
+			else {
+				JSONArray array = (JSONArray) source, out = (JSONArray) target;
+				for (int i = from; i < to; i++)
+					out.setDirectly(i, copy(array.get(i), stack));
+			}
+			return to - from;
+		}
+		
+		private static JSONData<?> copy(JSONData<?> value, ArrayDeque<Pending> stack) {
+			if (!isContainer(value))
+				return value == null ? null : value.deepCopy();
+			JSONData<?> out = empty(value);
+			push(stack, new Pending(value, out, 0, value instanceof JSONObject ? ((JSONObject) value).size() : ((JSONArray) value).size()));
+			return out;
+		}
+	}
+	
+	/**
+	 * Fills the containers on its stack, splitting off half of its pending work whenever the pool has idle workers.
+	 * 
+	 * @author Toberumono
+	 */
+	private static final class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ArrayDeque<Pending> stack;
+		
+		Task(ArrayDeque<Pending> stack) {
+			this.stack = stack;
+		}
+		
+		@Override
+		protected void compute() {
+			List<Task> forked = new ArrayList<>();
+			while (!stack.isEmpty()) {
+				if (stack.size() > 1 && getSurplusQueuedTaskCount() == 0) {
+					ArrayDeque<Pending> half = new ArrayDeque<>();
+					for (int i = stack.size() / 2; i > 0; i--)
+						half.push(stack.pollLast()); //The oldest entries are the closest to the root and are therefore likely to be the largest
+					Task task = new Task(half);
+					task.fork();
+					forked.add(task);
+				}
+				stack.pop().fill(stack);
+			}
+			for (Task task : forked)
+				task.join();
+		}
+	}
+}
@@ -53,7 +53,13 @@ public interface JSONData<T> extends JSONSerializable {
 	 * @see #toFormattedJSON(StringBuilder)
 	 */
 	public default String toFormattedJSON() {
-		return toFormattedJSON(new StringBuilder()).toString();
+		StringBuilder sb = JSONBufferPool.acquire();
+		try {
+			return toFormattedJSON(sb);
+		}
+		finally {
+			JSONBufferPool.release(sb);
+		}
 	}
 	
 	/**
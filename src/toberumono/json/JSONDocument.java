@@ -0,0 +1,221 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import toberumono.json.exceptions.JSONSyntaxException;
+
+/**
+ * A reusable parser that owns the nodes of the tree that it produces.<br>
+ * Each call to {@link #parse(String)} or {@link #parse(Reader)} first {@link #release() releases} the previous tree and then builds the new
+ * tree out of the {@link JSONObject JSONObjects}, {@link JSONArray JSONArrays}, and string and number holders that the previous trees used,
+ * so a {@link JSONDocument} that parses documents of a similar shape stops allocating nodes after the first few documents (the
+ * {@link String Strings} and {@link Number Numbers} that the nodes hold are still created for every document). The internal buffers of the
+ * parser and the tables of the reused {@link JSONObject JSONObjects} and {@link JSONArray JSONArrays} are reused as well.<br>
+ * <b>Ownership:</b> the tree returned by {@link #parse(String)}, and every {@link JSONData} that is reachable from it, belongs to the
+ * {@link JSONDocument} and is only valid until the next call to {@link #parse(String)}, {@link #parse(Reader)}, or {@link #release()}. After
+ * that, the nodes are emptied and then refilled with the contents of the next document. No reference to any part of the tree may be kept
+ * beyond that point, and no part of the tree may be added to another tree. Use {@link JSONData#deepCopy()} to keep a part of the tree; the
+ * copy is made of ordinary nodes that do not belong to the {@link JSONDocument}.<br>
+ * The limits set in {@link JSONSystem} and whether comments are enabled are captured when the {@link JSONDocument} is constructed.
+ * {@link JSONDocument JSONDocuments} are not thread-safe, so each thread should use its own (e.g. via a {@link ThreadLocal}).<br>
+ * Example Usage:
+ * 
+ * <pre>
+ * {
+ * 	private static final ThreadLocal&lt;JSONDocument&gt; documents = ThreadLocal.withInitial(JSONDocument::new);
+ * 
+ * 	int handle(String payload) {
+ * 		JSONObject request = (JSONObject) documents.get().parse(payload);
+ * 		return request.getInt("id"); //Nothing from request is kept after this returns
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @author Toberumono
+ */
+public final class JSONDocument {
+	/**
+	 * The maximum number of nodes of each kind that are kept for reuse, which bounds the memory that an unusually large document leaves behind
+	 */
+	private static final int MAX_POOLED = 1 << 16;
+	
+	private final Builder builder = new Builder();
+	private final JSONStreamParser parser = new JSONStreamParser(builder);
+	private char[] chunk = null;
+	
+	/**
+	 * Constructs a new {@link JSONDocument} with empty pools.
+	 */
+	public JSONDocument() {/* Nothing to do */}
+	
+	/**
+	 * Parses {@code json}, reusing the nodes of the previous tree.
+	 * 
+	 * @param json
+	 *            the JSON text to parse
+	 * @return the root node in the JSON text. It belongs to this {@link JSONDocument} and is only valid until the next call to
+	 *         {@link #parse(String)}, {@link #parse(Reader)}, or {@link #release()}
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 */
+	public JSONData<?> parse(String json) {
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.PARSE);
+		release();
+		try {
+			parser.feed(json);
+			parser.finish();
+		}
+		catch (RuntimeException e) {
+			release();
+			throw e;
+		}
+		if (span != null)
+			span.end(null, json.length(), builder.getRoot());
+		return builder.getRoot();
+	}
+	
+	/**
+	 * Reads JSON text from a {@link Reader} and parses it, reusing the nodes of the previous tree.
+	 * 
+	 * @param json
+	 *            the {@link Reader} from which to read the JSON text
+	 * @return the root node in the JSON text. It belongs to this {@link JSONDocument} and is only valid until the next call to
+	 *         {@link #parse(String)}, {@link #parse(Reader)}, or {@link #release()}
+	 * @throws IOException
+	 *             if an error occurs while reading from the {@link Reader}
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 */
+	public JSONData<?> parse(Reader json) throws IOException {
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.PARSE);
+		release();
+		if (chunk == null)
+			chunk = new char[8192];
+		try {
+			for (int read; (read = json.read(chunk)) != -1;)
+				parser.feed(chunk, 0, read);
+			parser.finish();
+		}
+		catch (IOException | RuntimeException e) {
+			release();
+			throw e;
+		}
+		if (span != null)
+			span.end(null, parser.getOffset(), builder.getRoot());
+		return builder.getRoot();
+	}
+	
+	/**
+	 * Empties every node of the current tree and returns them to the pools. The tree must not be used after this is called.<br>
+	 * This does not need to be called before parsing the next document, but calling it as soon as the tree is no longer needed allows the
+	 * values that the tree held to be garbage-collected sooner.
+	 */
+	public void release() {
+		parser.reset();
+		builder.release();
+	}
+	
+	/**
+	 * A mutable string holder. Its {@link #deepCopy()} is an ordinary {@link JSONString}.
+	 * 
+	 * @author Toberumono
+	 */
+	private static final class PooledString extends JSONString {
+		private String value;
+		
+		PooledString() {
+			super(null);
+		}
+		
+		@Override
+		public String value() {
+			return value;
+		}
+	}
+	
+	/**
+	 * A mutable number holder. Its {@link #deepCopy()} is an ordinary {@link JSONNumber}.
+	 * 
+	 * @author Toberumono
+	 */
+	private static final class PooledNumber extends JSONNumber<Number> {
+		private Number value;
+		
+		@Override
+		public Number value() {
+			return value;
+		}
+	}
+	
+	/**
+	 * A {@link JSONTreeBuilder} that takes its nodes from pools. The nodes of each kind that are in use are the first {@code used} entries of
+	 * the corresponding pool.
+	 * 
+	 * @author Toberumono
+	 */
+	private static final class Builder extends JSONTreeBuilder {
+		private final ArrayList<JSONObject> objects = new ArrayList<>();
+		private final ArrayList<JSONArray> arrays = new ArrayList<>();
+		private final ArrayList<PooledString> strings = new ArrayList<>();
+		private final ArrayList<PooledNumber> numbers = new ArrayList<>();
+		private int usedObjects = 0, usedArrays = 0, usedStrings = 0, usedNumbers = 0;
+		
+		@Override
+		JSONObject newObject() {
+			if (usedObjects == objects.size())
+				objects.add(new JSONObject());
+			return objects.get(usedObjects++);
+		}
+		
+		@Override
+		JSONArray newArray() {
+			if (usedArrays == arrays.size())
+				arrays.add(new JSONArray());
+			return arrays.get(usedArrays++);
+		}
+		
+		@Override
+		JSONData<?> newString(String value) {
+			if (usedStrings == strings.size())
+				strings.add(new PooledString());
+			PooledString out = strings.get(usedStrings++);
+			out.value = value;
+			return out;
+		}
+		
+		@Override
+		JSONData<?> newNumber(Number value) {
+			if (usedNumbers == numbers.size())
+				numbers.add(new PooledNumber());
+			PooledNumber out = numbers.get(usedNumbers++);
+			out.value = value;
+			return out;
+		}
+		
+		void release() {
+			reset();
+			for (int i = 0; i < usedObjects; i++)
+				objects.get(i).clear();
+			for (int i = 0; i < usedArrays; i++)
+				arrays.get(i).clear();
+			for (int i = 0; i < usedStrings; i++)
+				strings.get(i).value = null;
+			for (int i = 0; i < usedNumbers; i++)
+				numbers.get(i).value = null;
+			usedObjects = usedArrays = usedStrings = usedNumbers = 0;
+			trim(objects);
+			trim(arrays);
+			trim(strings);
+			trim(numbers);
+		}
+		
+		private static void trim(ArrayList<?> pool) {
+			if (pool.size() > MAX_POOLED) {
+				pool.subList(MAX_POOLED, pool.size()).clear();
+				pool.trimToSize();
+			}
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package toberumono.json;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports parse and serialize operations to the installed {@link JSONMetrics} and to JDK Flight Recorder.<br>
+ * The library targets Java 8, so the Flight Recorder events are defined at runtime through {@code jdk.jfr.EventFactory} via reflection. If
+ * the JVM does not have Flight Recorder, only the {@link JSONMetrics} are reported to. Until a recording has been started in the JVM and
+ * while no {@link JSONMetrics} are installed, {@link #start(int)} costs a volatile read and a static call, and nothing is measured.<br>
+ * The events are named {@code toberumono.json.Parse} and {@code toberumono.json.Serialize} and have the fields {@code location},
+ * {@code size}, {@code nodes}, and {@code maxDepth}, in addition to the duration that Flight Recorder adds to every event.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#setMetrics(JSONMetrics)
+ */
+final class JSONEvents {
+	/**
+	 * The kinds of operations
+	 */
+	static final int PARSE = 0, SERIALIZE = 1;
+	private static final MethodHandle isInitialized = findIsInitialized();
+	private static volatile JSONMetrics metrics = null;
+	
+	private JSONEvents() {/* This class should not be initialized */}
+	
+	static JSONMetrics getMetrics() {
+		return metrics;
+	}
+	
+	static void setMetrics(JSONMetrics metrics) {
+		JSONEvents.metrics = metrics;
+	}
+	
+	/**
+	 * Starts timing an operation.
+	 * 
+	 * @param kind
+	 *            either {@link #PARSE} or {@link #SERIALIZE}
+	 * @return a {@link Span} that must be {@link Span#end(Object, long, JSONData) ended} when the operation completes, or {@code null} if
+	 *         nothing is listening for operations of the given kind
+	 */
+	static Span start(int kind) {
+		JSONMetrics metrics = JSONEvents.metrics;
+		Object event = recording() ? Flight.begin(kind) : null;
+		if (metrics == null && event == null)
+			return null;
+		return new Span(kind, metrics, event);
+	}
+	
+	private static boolean recording() {
+		if (isInitialized == null)
+			return false;
+		try {
+			return (boolean) isInitialized.invokeExact();
+		}
+		catch (Throwable t) {
+			return false;
+		}
+	}
+	
+	private static MethodHandle findIsInitialized() {
+		try {
+			return MethodHandles.publicLookup().findStatic(Class.forName("jdk.jfr.FlightRecorder"), "isInitialized", MethodType.methodType(boolean.class));
+		}
+		catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * An operation that is being timed.
+	 * 
+	 * @author Toberumono
+	 */
+	static final class Span {
+		private final int kind;
+		private final JSONMetrics metrics;
+		private final Object event;
+		private final long start = System.nanoTime();
+		
+		private Span(int kind, JSONMetrics metrics, Object event) {
+			this.kind = kind;
+			this.metrics = metrics;
+			this.event = event;
+		}
+		
+		/**
+		 * Reports the completed operation.
+		 * 
+		 * @param location
+		 *            the file or other location that was read from or written to, or {@code null} if the data was in memory
+		 * @param size
+		 *            the number of characters or bytes that were read or written, or -1 if that is not known
+		 * @param root
+		 *            the root of the tree that was produced or serialized
+		 */
+		void end(Object location, long size, JSONData<?> root) {
+			long nanos = System.nanoTime() - start, nodes = 0;
+			if (event != null) //The event's duration has to end before the tree is walked to count its nodes
+				Flight.end(event);
+			int maxDepth = 0;
+			JSONData<?>[] stack = new JSONData<?>[16];
+			int[] depths = new int[16];
+			int top = 0;
+			stack[top++] = root;
+			while (top > 0) {
+				JSONData<?> node = stack[--top];
+				int depth = depths[top];
+				stack[top] = null;
+				nodes++;
+				if (depth > maxDepth)
+					maxDepth = depth;
+				if (node instanceof JSONObjectWrapper)
+					node = ((JSONObjectWrapper<?>) node).value();
+				Iterable<JSONData<?>> children = node instanceof JSONObject ? ((JSONObject) node).values()
+						: node instanceof JSONOverlay ? ((JSONOverlay) node).values() : node instanceof JSONArray ? (JSONArray) node : null;
+				if (children == null)
+					continue;
+				for (JSONData<?> child : children) {
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, top * 2);
+						depths = Arrays.copyOf(depths, top * 2);
+					}
+					depths[top] = depth + 1;
+					stack[top++] = child;
+				}
+			}
+			String where = location == null ? null : location.toString();
+			if (event != null)
+				Flight.commit(event, where, size, nodes, maxDepth);
+			if (metrics != null) {
+				if (kind == PARSE)
+					metrics.parsed(where, size, nodes, maxDepth, nanos);
+				else
+					metrics.serialized(where, size, nodes, maxDepth, nanos);
+			}
+		}
+	}
+	
+	/**
+	 * Holds the Flight Recorder event factories. This is only initialized once a recording has been started so that the event types are not
+	 * registered in JVMs that never use Flight Recorder.
+	 * 
+	 * @author Toberumono
+	 */
+	private static final class Flight {
+		private static final MethodHandle newEvent, isTypeEnabled, begin, set, end, commit;
+		private static final Object[] factories = new Object[2], types = new Object[2];
+		
+		static {
+			MethodHandle[] handles = new MethodHandle[6];
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory"), event = Class.forName("jdk.jfr.Event");
+				handles[0] = lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(event)).asType(MethodType.methodType(Object.class, Object.class));
+				handles[1] = lookup.findVirtual(event, "begin", MethodType.methodType(void.class)).asType(MethodType.methodType(void.class, Object.class));
+				Class<?> eventType = Class.forName("jdk.jfr.EventType");
+				handles[2] = lookup.findVirtual(eventType, "isEnabled", MethodType.methodType(boolean.class)).asType(MethodType.methodType(boolean.class, Object.class));
+				handles[3] = lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class))
+						.asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+				handles[4] = lookup.findVirtual(event, "end", MethodType.methodType(void.class)).asType(MethodType.methodType(void.class, Object.class));
+				handles[5] = lookup.findVirtual(event, "commit", MethodType.methodType(void.class)).asType(MethodType.methodType(void.class, Object.class));
+				factories[PARSE] = createFactory("toberumono.json.Parse", "JSON Parse", "JSON text that was parsed into a tree");
+				factories[SERIALIZE] = createFactory("toberumono.json.Serialize", "JSON Serialize", "A tree that was serialized into JSON text");
+				MethodHandle getEventType = lookup.findVirtual(eventFactory, "getEventType", MethodType.methodType(eventType));
+				for (int i = 0; i < factories.length; i++)
+					types[i] = getEventType.invoke(factories[i]);
+			}
+			catch (Throwable t) { //Flight Recorder is not available
+				Arrays.fill(handles, null);
+				Arrays.fill(factories, null);
+				Arrays.fill(types, null);
+			}
+			newEvent = handles[0];
+			begin = handles[1];
+			isTypeEnabled = handles[2];
+			set = handles[3];
+			end = handles[4];
+			commit = handles[5];
+		}
+		
+		private static Object createFactory(String name, String label, String description) throws ReflectiveOperationException {
+			Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement"), valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+			List<Object> annotations = new ArrayList<>();
+			annotations.add(annotation(annotationElement, "jdk.jfr.Name", name));
+			annotations.add(annotation(annotationElement, "jdk.jfr.Label", label));
+			annotations.add(annotation(annotationElement, "jdk.jfr.Description", description));
+			annotations.add(annotation(annotationElement, "jdk.jfr.Category", new String[]{"JSON"}));
+			List<Object> fields = new ArrayList<>();
+			for (Object[] field : new Object[][]{{String.class, "location", "Location"}, {long.class, "size", "Size"}, {long.class, "nodes", "Nodes"},
+					{int.class, "maxDepth", "Maximum Depth"}})
+				fields.add(valueDescriptor.getConstructor(Class.class, String.class, List.class).newInstance(field[0], field[1],
+						Collections.singletonList(annotation(annotationElement, "jdk.jfr.Label", field[2]))));
+			return Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+		}
+		
+		@SuppressWarnings("unchecked")
+		private static Object annotation(Class<?> annotationElement, String type, Object value) throws ReflectiveOperationException {
+			Class<? extends Annotation> annotation = (Class<? extends Annotation>) Class.forName(type);
+			return annotationElement.getConstructor(Class.class, Object.class).newInstance(annotation, value);
+		}
+		
+		/**
+		 * @return a new event that has been begun, or {@code null} if Flight Recorder is unavailable or the event is not enabled
+		 */
+		static Object begin(int kind) {
+			if (types[kind] == null)
+				return null;
+			try {
+				if (!(boolean) isTypeEnabled.invokeExact(types[kind])) //This avoids allocating events while no recording wants them
+					return null;
+				Object event = newEvent.invokeExact(factories[kind]);
+				begin.invokeExact(event);
+				return event;
+			}
+			catch (Throwable t) {
+				return null;
+			}
+		}
+		
+		/**
+		 * Ends the duration of {@code event}. The event is not recorded until it is {@link #commit(Object, String, long, long, int) committed}.
+		 */
+		static void end(Object event) {
+			try {
+				end.invokeExact(event);
+			}
+			catch (Throwable t) {} //The recording may have been closed in the meantime
+		}
+		
+		static void commit(Object event, String location, long size, long nodes, int maxDepth) {
+			try {
+				set.invokeExact(event, 0, (Object) location);
+				set.invokeExact(event, 1, (Object) size);
+				set.invokeExact(event, 2, (Object) nodes);
+				set.invokeExact(event, 3, (Object) maxDepth);
+				commit.invokeExact(event);
+			}
+			catch (Throwable t) {} //The recording may have been closed in the meantime
+		}
+	}
+}
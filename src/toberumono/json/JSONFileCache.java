@@ -0,0 +1,359 @@
+package toberumono.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+import toberumono.json.exceptions.JSONException;
+
+/**
+ * Caches the parsed trees of JSON files and reloads them when the files change.<br>
+ * Each tree is cached with the modification time and size of its file, and {@link #get(Path)} only reparses a file when one of those has
+ * changed. If watching is enabled, the directories of the cached files are registered with a {@link WatchService}, and files that change are
+ * reparsed in the background and passed to the listeners added via {@link #addListener(BiConsumer)}. The least recently used trees are evicted
+ * once the cache holds more than its capacity, at which point their files are no longer watched.<br>
+ * The cached trees are shared, so they should be treated as read-only. Use {@link JSONData#deepCopy()} to obtain a tree that can be modified.<br>
+ * Example Usage:
+ * 
+ * <pre>
+ * {
+ * 	JSONFileCache configs = new JSONFileCache(64);
+ * 	configs.addListener((path, root) -&gt; System.out.println(path + " was reloaded"));
+ * 	JSONObject config = (JSONObject) configs.get(Paths.get("config.json"));
+ * }
+ * </pre>
+ * 
+ * @author Toberumono
+ */
+public final class JSONFileCache implements Closeable {
+	private final int capacity;
+	private final LinkedHashMap<Path, CachedTree> entries;
+	private final Map<Path, WatchKey> directories = new HashMap<>();
+	private final Map<Path, Integer> watchedFiles = new HashMap<>();
+	private final List<BiConsumer<Path, JSONData<?>>> listeners = new CopyOnWriteArrayList<>();
+	private final boolean watching;
+	private WatchService watcher = null;
+	private boolean closed = false;
+	
+	/**
+	 * Constructs a new {@link JSONFileCache} that watches the files that it caches for changes.
+	 * 
+	 * @param capacity
+	 *            the maximum number of trees to cache
+	 */
+	public JSONFileCache(int capacity) {
+		this(capacity, true);
+	}
+	
+	/**
+	 * Constructs a new {@link JSONFileCache}.
+	 * 
+	 * @param capacity
+	 *            the maximum number of trees to cache
+	 * @param watching
+	 *            if true, the cached files are watched for changes and reloaded in the background. Otherwise, changes are only detected by
+	 *            {@link #get(Path)}
+	 */
+	public JSONFileCache(int capacity, boolean watching) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity must be at least 1");
+		this.capacity = capacity;
+		this.watching = watching;
+		entries = new LinkedHashMap<Path, CachedTree>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, CachedTree> eldest) {
+				if (size() <= JSONFileCache.this.capacity)
+					return false;
+				unwatch(eldest.getKey());
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the parsed tree of the file at {@code path}, reparsing it only if it has been modified since it was cached.
+	 * 
+	 * @param path
+	 *            the {@link Path} to the file
+	 * @return the root node of the file
+	 * @throws IOException
+	 *             if the file cannot be read or watched
+	 * @throws JSONException
+	 *             if the file does not contain valid JSON
+	 * @throws IllegalStateException
+	 *             if the cache has been closed
+	 */
+	public JSONData<?> get(Path path) throws IOException {
+		path = path.toAbsolutePath().normalize();
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		synchronized (this) {
+			checkOpen();
+			CachedTree entry = entries.get(path);
+			if (entry != null && entry.matches(attributes))
+				return entry.root;
+		}
+		JSONData<?> root = JSONSystem.loadJSON(path); //Parsing happens outside of the lock so that other files can be read in the meantime
+		synchronized (this) {
+			checkOpen();
+			if (entries.put(path, new CachedTree(root, attributes)) == null)
+				watch(path);
+		}
+		return root;
+	}
+	
+	/**
+	 * Removes the cached tree for the file at {@code path} (if there is one) so that it is reparsed the next time that it is requested.
+	 * 
+	 * @param path
+	 *            the {@link Path} to the file
+	 */
+	public synchronized void invalidate(Path path) {
+		path = path.toAbsolutePath().normalize();
+		if (entries.remove(path) != null)
+			unwatch(path);
+	}
+	
+	/**
+	 * Removes all of the cached trees.
+	 */
+	public synchronized void clear() {
+		for (Path path : new ArrayList<>(entries.keySet()))
+			invalidate(path);
+	}
+	
+	/**
+	 * @return the number of trees that are currently cached
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return the maximum number of trees that the cache holds
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Adds a listener that is called with the {@link Path} and new root node whenever a cached file is reloaded because it changed. If the file
+	 * was deleted, the root node is {@code null}.<br>
+	 * Listeners are called on the cache's background thread, and are only called if watching is enabled.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addListener(BiConsumer<Path, JSONData<?>> listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener that was added via {@link #addListener(BiConsumer)}.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeListener(BiConsumer<Path, JSONData<?>> listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Stops watching for changes and empties the cache.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs while closing the {@link WatchService}
+	 */
+	@Override
+	public void close() throws IOException {
+		WatchService watcher;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			entries.clear();
+			directories.clear();
+			watchedFiles.clear();
+			watcher = this.watcher;
+			this.watcher = null;
+		}
+		if (watcher != null)
+			watcher.close(); //This also stops the background thread
+	}
+	
+	private void checkOpen() {
+		if (closed)
+			throw new IllegalStateException("This JSONFileCache has been closed");
+	}
+	
+	private void watch(Path path) throws IOException {
+		if (!watching)
+			return;
+		Path directory = path.getParent();
+		Integer count = watchedFiles.get(directory);
+		if (count != null) {
+			watchedFiles.put(directory, count + 1);
+			return;
+		}
+		if (watcher == null) {
+			watcher = FileSystems.getDefault().newWatchService();
+			Thread thread = new Thread(new Watcher(watcher), "JSONFileCache watcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		try {
+			directories.put(directory, directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE));
+		}
+		catch (IOException | RuntimeException e) {
+			entries.remove(path);
+			throw e;
+		}
+		watchedFiles.put(directory, 1);
+	}
+	
+	private void unwatch(Path path) {
+		if (!watching)
+			return;
+		Path directory = path.getParent();
+		Integer count = watchedFiles.get(directory);
+		if (count == null)
+			return;
+		if (count > 1)
+			watchedFiles.put(directory, count - 1);
+		else {
+			watchedFiles.remove(directory);
+			WatchKey key = directories.remove(directory);
+			if (key != null)
+				key.cancel();
+		}
+	}
+	
+	/**
+	 * Reparses the file at {@code path} if it is cached and has changed, and notifies the listeners.
+	 */
+	private void refresh(Path path) {
+		CachedTree entry;
+		synchronized (this) {
+			entry = entries.get(path);
+		}
+		if (entry == null)
+			return;
+		JSONData<?> root;
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			if (entry.matches(attributes))
+				return;
+			root = JSONSystem.loadJSON(path);
+			synchronized (this) {
+				if (entries.get(path) != entry) //The file was evicted, invalidated, or requested while it was being parsed
+					return;
+				entries.put(path, new CachedTree(root, attributes));
+			}
+		}
+		catch (NoSuchFileException e) {
+			invalidate(path);
+			root = null;
+		}
+		catch (IOException | RuntimeException e) { //The file may be only partially written, so it stays watched and is reparsed when it next changes
+			synchronized (this) {
+				if (entries.get(path) == entry)
+					entries.put(path, entry.stale());
+			}
+			return;
+		}
+		for (BiConsumer<Path, JSONData<?>> listener : listeners) {
+			try {
+				listener.accept(path, root);
+			}
+			catch (RuntimeException e) { //One failing listener should neither stop the others nor the background thread
+				Thread current = Thread.currentThread();
+				current.getUncaughtExceptionHandler().uncaughtException(current, e);
+			}
+		}
+	}
+	
+	private void refreshDirectory(Path directory) {
+		List<Path> paths = new ArrayList<>();
+		synchronized (this) {
+			for (Path path : entries.keySet())
+				if (directory.equals(path.getParent()))
+					paths.add(path);
+		}
+		for (Path path : paths)
+			refresh(path);
+	}
+	
+	private final class Watcher implements Runnable {
+		private final WatchService watcher;
+		
+		Watcher(WatchService watcher) {
+			this.watcher = watcher;
+		}
+		
+		@Override
+		public void run() {
+			while (true) {
+				WatchKey key;
+				try {
+					key = watcher.take();
+				}
+				catch (InterruptedException | ClosedWatchServiceException e) {
+					return;
+				}
+				Path directory = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+						refreshDirectory(directory);
+					else
+						refresh(directory.resolve((Path) event.context()));
+				}
+				key.reset();
+			}
+		}
+	}
+	
+	private static final class CachedTree {
+		final JSONData<?> root;
+		final FileTime modified;
+		final long size;
+		
+		CachedTree(JSONData<?> root, BasicFileAttributes attributes) {
+			this(root, attributes.lastModifiedTime(), attributes.size());
+		}
+		
+		private CachedTree(JSONData<?> root, FileTime modified, long size) {
+			this.root = root;
+			this.modified = modified;
+			this.size = size;
+		}
+		
+		/**
+		 * @return a copy of this entry that does not match any version of its file, so that the file is reparsed when it is next requested or
+		 *         modified
+		 */
+		CachedTree stale() {
+			return new CachedTree(root, null, -1);
+		}
+		
+		boolean matches(BasicFileAttributes attributes) {
+			return modified != null && size == attributes.size() && modified.equals(attributes.lastModifiedTime());
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Implements {@link JSONSystem#writeJSON(JSONData, Path, boolean, JSONWriteOption...)}.
+ * 
+ * @author Toberumono
+ */
+final class JSONFileWriter {
+	
+	private JSONFileWriter() {/* This class should not be initialized */}
+	
+	static boolean write(JSONData<?> root, Path path, boolean formatting, JSONWriteOption... flags) throws IOException {
+		EnumSet<JSONWriteOption> options = EnumSet.noneOf(JSONWriteOption.class);
+		options.addAll(Arrays.asList(flags));
+		if (options.contains(JSONWriteOption.SKIP_IF_UNMODIFIED) && root instanceof ModifiableJSONData && !((ModifiableJSONData) root).isModified()
+				&& Files.exists(path))
+			return false;
+		if (!options.contains(JSONWriteOption.SKIP_IF_UNCHANGED) && !options.contains(JSONWriteOption.ATOMIC)) {
+			writeDirectly(root, path, formatting);
+			clearModified(root);
+			return true;
+		}
+		StringBuilder sb = JSONBufferPool.acquire();
+		ByteBuffer bytes;
+		try {
+			root.writeJSON(new JSONGenerator(sb, formatting));
+			if (formatting)
+				sb.append(System.lineSeparator()); //This is to keep a terminating newline
+			bytes = JSONBufferPool.encode(sb);
+		}
+		finally {
+			JSONBufferPool.release(sb);
+		}
+		try {
+			if (options.contains(JSONWriteOption.SKIP_IF_UNCHANGED) && contains(path, bytes)) {
+				clearModified(root);
+				return false;
+			}
+			if (options.contains(JSONWriteOption.ATOMIC))
+				writeAtomically(path, bytes);
+			else {
+				try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					writeFully(channel, bytes);
+				}
+			}
+		}
+		finally {
+			JSONBufferPool.release(bytes);
+		}
+		clearModified(root);
+		return true;
+	}
+	
+	/**
+	 * Implements {@link JSONSystem#writeJSON(JSONData, Path, boolean)}.
+	 * 
+	 * @return the number of bytes that were written
+	 */
+	static long writeDirectly(JSONData<?> root, Path path, boolean formatting) throws IOException {
+		try (OutputStream out = Files.newOutputStream(path)) {
+			JSONUTF8Output utf8 = new JSONUTF8Output(out);
+			root.writeJSON(new JSONGenerator(utf8, formatting));
+			if (formatting)
+				utf8.append(System.lineSeparator()); //This is to keep a terminating newline
+			utf8.flush();
+			return utf8.getWritten();
+		}
+	}
+	
+	private static void clearModified(JSONData<?> root) {
+		if (root instanceof ModifiableJSONData)
+			((ModifiableJSONData) root).clearModified();
+	}
+	
+	/**
+	 * @return {@code true} if the file at {@code path} exists and its contents are exactly the remaining bytes in {@code bytes}
+	 */
+	private static boolean contains(Path path, ByteBuffer bytes) throws IOException {
+		try {
+			if (Files.size(path) != bytes.remaining())
+				return false;
+			try (InputStream in = Files.newInputStream(path)) {
+				byte[] chunk = new byte[Math.min(bytes.remaining(), 8192)];
+				int base = bytes.arrayOffset() + bytes.position();
+				for (int offset = 0, read; offset < bytes.remaining(); offset += read) {
+					read = in.read(chunk, 0, Math.min(chunk.length, bytes.remaining() - offset));
+					if (read < 0 || !rangeEquals(chunk, bytes.array(), base + offset, read))
+						return false;
+				}
+				return in.read() < 0;
+			}
+		}
+		catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+	
+	private static boolean rangeEquals(byte[] chunk, byte[] bytes, int offset, int length) {
+		for (int i = 0; i < length; i++)
+			if (chunk[i] != bytes[offset + i])
+				return false;
+		return true;
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+		ByteBuffer buffer = bytes.duplicate();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+	
+	private static void writeAtomically(Path path, ByteBuffer bytes) throws IOException {
+		Path absolute = path.toAbsolutePath(), directory = absolute.getParent();
+		Path temp = Files.createTempFile(directory, "." + absolute.getFileName(), ".tmp");
+		try {
+			copyPermissions(absolute, temp);
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				writeFully(channel, bytes);
+				channel.force(true);
+			}
+			Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING); //Throws AtomicMoveNotSupportedException rather than falling back
+		}
+		catch (IOException | RuntimeException | Error e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		forceDirectory(directory);
+	}
+	
+	/**
+	 * Temporary files are only readable by their owner, so the permissions of the file being replaced are carried over where the file system
+	 * supports it.
+	 */
+	private static void copyPermissions(Path source, Path target) throws IOException {
+		PosixFileAttributeView view = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+		if (view == null)
+			return;
+		try {
+			Files.setPosixFilePermissions(target, view.readAttributes().permissions());
+		}
+		catch (NoSuchFileException e) {} //There is no file to replace yet
+	}
+	
+	/**
+	 * Makes the rename itself durable. Not every platform allows directories to be opened, so this is best-effort.
+	 */
+	private static void forceDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+		catch (IOException | RuntimeException e) {}
+	}
+}
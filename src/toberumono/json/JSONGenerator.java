@@ -0,0 +1,529 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import toberumono.json.exceptions.JSONSerializationException;
+
+/**
+ * Writes JSON text directly to an {@link Appendable} as a sequence of calls. This is what the library uses to serialize {@link JSONData}, and it
+ * can be passed to {@link JSONSerializable#writeJSON(JSONGenerator)} so that objects can write their fields without first building a
+ * {@link JSONObject}.<br>
+ * The output is laid out exactly as {@link JSONData#toJSONString()} and {@link JSONData#toFormattedJSON()} lay it out.<br>
+ * Example Usage:
+ * 
+ * <pre>
+ * {
+ * 	JSONGenerator generator = new JSONGenerator(writer, true);
+ * 	generator.beginObject().key("name").value("foo").key("sizes").beginArray().value(1).value(2).endArray().endObject();
+ * }
+ * </pre>
+ * 
+ * @author Toberumono
+ * @see JSONSerializable#writeJSON(JSONGenerator)
+ */
+public final class JSONGenerator {
+	private static final String lineSeparator = System.lineSeparator();
+	
+	private final Appendable out;
+	private final boolean formatting;
+	private final String baseIndentation, indentation;
+	private String[] indents = new String[8];
+	private boolean[] objects = new boolean[8], containers = new boolean[8];
+	private int[] counts = new int[8];
+	private int depth = 0;
+	private char[] digits = null;
+	private boolean afterKey = false;
+	
+	/**
+	 * Constructs a new {@link JSONGenerator} that writes to the given {@link Appendable}.
+	 * 
+	 * @param out
+	 *            the {@link Appendable} to which the JSON text should be written
+	 * @param formatting
+	 *            if true, then the nicer formatting used by {@link JSONData#toFormattedJSON()} is used
+	 */
+	public JSONGenerator(Appendable out, boolean formatting) {
+		this(out, formatting, "");
+	}
+	
+	/**
+	 * Constructs a new {@link JSONGenerator} that writes to the given {@link Appendable}.
+	 * 
+	 * @param out
+	 *            the {@link Appendable} to which the JSON text should be written
+	 * @param formatting
+	 *            if true, then the nicer formatting used by {@link JSONData#toFormattedJSON()} is used
+	 * @param indentation
+	 *            the indentation of the enclosing structure. Only used when {@code formatting} is true
+	 */
+	JSONGenerator(Appendable out, boolean formatting, String indentation) {
+		this.out = out;
+		this.formatting = formatting;
+		this.baseIndentation = indentation;
+		this.indentation = JSONSystem.getIndentation();
+	}
+	
+	/**
+	 * Serializes {@code value} into a {@link String} by calling {@link JSONSerializable#writeJSON(JSONGenerator)}.
+	 * 
+	 * @param value
+	 *            the value to serialize
+	 * @param formatting
+	 *            if true, then the nicer formatting used by {@link JSONData#toFormattedJSON()} is used
+	 * @return the JSON text
+	 * @throws JSONSerializationException
+	 *             if an error occurs during serialization
+	 */
+	static String toJSONString(JSONSerializable value, boolean formatting) {
+		StringBuilder sb = JSONBufferPool.acquire();
+		try {
+			value.writeJSON(new JSONGenerator(sb, formatting));
+			return sb.toString();
+		}
+		catch (IOException e) { //StringBuilders do not throw IOExceptions
+			throw new JSONSerializationException(e);
+		}
+		finally {
+			JSONBufferPool.release(sb);
+		}
+	}
+	
+	/**
+	 * Starts a new object.
+	 * 
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator beginObject() throws IOException {
+		beforeValue(true);
+		out.append('{');
+		push(true);
+		return this;
+	}
+	
+	/**
+	 * Ends the current object.
+	 * 
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 * @throws IllegalStateException
+	 *             if the current structure is not an object or a key is waiting for its value
+	 */
+	public JSONGenerator endObject() throws IOException {
+		if (depth == 0 || !objects[depth - 1] || afterKey)
+			throw new IllegalStateException("There is no object to end");
+		if (counts[--depth] == 0)
+			out.append(" }");
+		else {
+			out.append(lineSeparator);
+			if (formatting)
+				out.append(indent(depth));
+			out.append('}');
+		}
+		return this;
+	}
+	
+	/**
+	 * Starts a new array.
+	 * 
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator beginArray() throws IOException {
+		beforeValue(true);
+		out.append('[');
+		push(false);
+		return this;
+	}
+	
+	/**
+	 * Ends the current array.
+	 * 
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 * @throws IllegalStateException
+	 *             if the current structure is not an array
+	 */
+	public JSONGenerator endArray() throws IOException {
+		if (depth == 0 || objects[depth - 1])
+			throw new IllegalStateException("There is no array to end");
+		depth--;
+		if (!formatting)
+			out.append(']');
+		else if (counts[depth] == 0 || !containers[depth])
+			out.append(" ]");
+		else
+			out.append(lineSeparator).append(indent(depth)).append(']');
+		return this;
+	}
+	
+	/**
+	 * Writes the key of the next key-value pair in the current object.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 * @throws IllegalStateException
+	 *             if the current structure is not an object or the previous key has not been given a value
+	 */
+	public JSONGenerator key(String key) throws IOException {
+		beforeKey();
+		if (out instanceof JSONUTF8Output)
+			((JSONUTF8Output) out).key(key);
+		else
+			string(key);
+		return afterKey();
+	}
+	
+	/**
+	 * Writes a key using its cached escaped form.
+	 * 
+	 * @param key
+	 *            the key to write
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 * @throws IllegalStateException
+	 *             if the current structure is not an object or the previous key has not been given a value
+	 */
+	public JSONGenerator key(JSONKey key) throws IOException {
+		beforeKey();
+		if (out instanceof JSONUTF8Output)
+			((JSONUTF8Output) out).key(key);
+		else
+			out.append(key.escaped());
+		return afterKey();
+	}
+	
+	private void beforeKey() throws IOException {
+		if (depth == 0 || !objects[depth - 1] || afterKey)
+			throw new IllegalStateException("A key can only be written within an object");
+		if (counts[depth - 1]++ > 0)
+			out.append(',');
+		out.append(lineSeparator);
+		if (formatting)
+			out.append(indent(depth));
+	}
+	
+	private JSONGenerator afterKey() throws IOException {
+		out.append(" : ");
+		afterKey = true;
+		return this;
+	}
+	
+	/**
+	 * Writes a {@link String} value.
+	 * 
+	 * @param value
+	 *            the {@link String} to write. {@code null} is written as {@code null}
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator value(String value) throws IOException {
+		if (value == null)
+			return nullValue();
+		beforeValue(false);
+		string(value);
+		return this;
+	}
+	
+	/**
+	 * Writes a number with the writer set via {@link JSONSystem#setNumberHandlers(Class, Function, Function)}. If no writer has been set,
+	 * {@link Double Doubles} and {@link Float Floats} are written with the shortest decimal that parses back to the same value.
+	 * 
+	 * @param value
+	 *            the number to write. {@code null} is written as {@code null}
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONGenerator value(Number value) throws IOException {
+		if (value == null)
+			return nullValue();
+		beforeValue(false);
+		Function<? extends Object, String> writer = JSONSystem.getWriter();
+		if (writer != JSONSystem.defaultWriter)
+			out.append(((Function<Number, String>) writer).apply(value));
+		else {
+			int length = JSONNumberWriter.format(value, digits(), 0);
+			if (length < 0)
+				out.append(value.toString());
+			else
+				writeDigits(length);
+		}
+		return this;
+	}
+	
+	/**
+	 * Writes a number. If a writer has been set via {@link JSONSystem#setNumberHandlers(Class, Function, Function)}, it receives an
+	 * {@link Integer}.
+	 * 
+	 * @param value
+	 *            the number to write
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator value(int value) throws IOException {
+		if (JSONSystem.getWriter() != JSONSystem.defaultWriter)
+			return value((Number) value);
+		beforeValue(false);
+		writeDigits(JSONNumberWriter.format(value, digits(), 0));
+		return this;
+	}
+	
+	/**
+	 * Writes a number. If a writer has been set via {@link JSONSystem#setNumberHandlers(Class, Function, Function)}, it receives a
+	 * {@link Long}.
+	 * 
+	 * @param value
+	 *            the number to write
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator value(long value) throws IOException {
+		if (JSONSystem.getWriter() != JSONSystem.defaultWriter)
+			return value((Number) value);
+		beforeValue(false);
+		writeDigits(JSONNumberWriter.format(value, digits(), 0));
+		return this;
+	}
+	
+	/**
+	 * Writes a number. Unless a writer has been set via {@link JSONSystem#setNumberHandlers(Class, Function, Function)}, this writes the
+	 * shortest decimal that parses back to {@code value}.
+	 * 
+	 * @param value
+	 *            the number to write
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator value(double value) throws IOException {
+		if (JSONSystem.getWriter() != JSONSystem.defaultWriter)
+			return value((Number) value);
+		beforeValue(false);
+		writeDigits(JSONNumberWriter.format(value, digits(), 0));
+		return this;
+	}
+	
+	/**
+	 * Writes a boolean.
+	 * 
+	 * @param value
+	 *            the boolean to write
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator value(boolean value) throws IOException {
+		beforeValue(false);
+		out.append(value ? "true" : "false");
+		return this;
+	}
+	
+	/**
+	 * Writes {@code null}.
+	 * 
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator nullValue() throws IOException {
+		beforeValue(false);
+		out.append("null");
+		return this;
+	}
+	
+	/**
+	 * Writes a {@link JSONSerializable} value by calling its {@link JSONSerializable#writeJSON(JSONGenerator) writeJSON} method. This is also how
+	 * {@link JSONData} values are written.
+	 * 
+	 * @param value
+	 *            the value to write. {@code null} is written as {@code null}
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator value(JSONSerializable value) throws IOException {
+		if (value == null)
+			return nullValue();
+		value.writeJSON(this);
+		return this;
+	}
+	
+	/**
+	 * Writes a tree of {@link JSONData} with an explicit stack instead of recursion, so deeply-nested trees cannot exhaust the call stack.
+	 * {@link JSONObject JSONObjects}, {@link JSONOverlay JSONOverlays}, and {@link JSONArray JSONArrays} (including {@code root} itself, even if
+	 * it is a subclass of {@link JSONArray}) are written directly. All other values, including subclasses of {@link JSONArray} below the root,
+	 * are written via their {@link JSONSerializable#writeJSON(JSONGenerator) writeJSON} methods.
+	 * 
+	 * @param root
+	 *            the root of the tree to write
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	void tree(JSONData<?> root) throws IOException {
+		Iterator<?>[] stack = new Iterator<?>[8];
+		int top = 0;
+		JSONData<?> node = root;
+		while (true) {
+			if (node instanceof JSONObjectWrapper)
+				node = ((JSONObjectWrapper<?>) node).value();
+			if (node instanceof JSONObject || node instanceof JSONOverlay) {
+				beginObject();
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, top * 2);
+				stack[top++] = ((Map<?, ?>) node).entrySet().iterator();
+			}
+			else if (node instanceof JSONArray && (node == root || node.getClass() == JSONArray.class)) {
+				beginArray();
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, top * 2);
+				stack[top++] = ((JSONArray) node).iterator();
+			}
+			else
+				value(node);
+			for (node = null; node == null && top > 0;) {
+				Iterator<?> iterator = stack[top - 1];
+				if (iterator.hasNext()) {
+					Object next = iterator.next();
+					if (objects[depth - 1]) {
+						Entry<?, ?> entry = (Entry<?, ?>) next;
+						JSONKey known = JSONKey.lookup((String) entry.getKey());
+						if (known != null)
+							key(known);
+						else
+							key((String) entry.getKey());
+						next = entry.getValue();
+					}
+					if (next == null) //Null elements are written as null rather than stopping the walk
+						nullValue();
+					else
+						node = (JSONData<?>) next;
+				}
+				else {
+					stack[--top] = null;
+					if (objects[depth - 1])
+						endObject();
+					else
+						endArray();
+				}
+			}
+			if (node == null)
+				return;
+		}
+	}
+	
+	/**
+	 * Writes text that is already valid JSON without escaping or checking it.
+	 * 
+	 * @param json
+	 *            the JSON text to write
+	 * @return this {@link JSONGenerator}
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link Appendable}
+	 */
+	public JSONGenerator rawValue(CharSequence json) throws IOException {
+		beforeValue(false);
+		out.append(json);
+		return this;
+	}
+	
+	/**
+	 * @return the current nesting depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	private void beforeValue(boolean container) throws IOException {
+		if (depth == 0)
+			return;
+		int top = depth - 1;
+		if (objects[top]) {
+			if (!afterKey)
+				throw new IllegalStateException("A value within an object must be preceded by a key");
+			afterKey = false;
+			return;
+		}
+		if (counts[top]++ > 0)
+			out.append(formatting ? "," : ", ");
+		if (formatting) {
+			if (container)
+				out.append(lineSeparator).append(indent(depth));
+			else
+				out.append(' ');
+		}
+		containers[top] = container;
+	}
+	
+	private void string(String value) throws IOException {
+		if (out instanceof StringBuilder) //Escaping directly into the buffer avoids building a String for every key and value
+			JSONString.appendJSONString((StringBuilder) out, value);
+		else if (out instanceof JSONUTF8Output)
+			((JSONUTF8Output) out).string(value);
+		else
+			out.append(JSONString.toJSONString(value));
+	}
+	
+	private char[] digits() {
+		if (digits == null)
+			digits = new char[JSONNumberWriter.MAX_LENGTH];
+		return digits;
+	}
+	
+	/**
+	 * Writes the first {@code length} characters of {@link #digits} without creating a {@link String} when the {@link Appendable} allows it.
+	 */
+	private void writeDigits(int length) throws IOException {
+		if (out instanceof StringBuilder)
+			((StringBuilder) out).append(digits, 0, length);
+		else if (out instanceof JSONUTF8Output)
+			((JSONUTF8Output) out).ascii(digits, length);
+		else if (out instanceof Writer)
+			((Writer) out).write(digits, 0, length);
+		else
+			out.append(new String(digits, 0, length));
+	}
+	
+	private void push(boolean object) {
+		if (depth == objects.length) {
+			objects = Arrays.copyOf(objects, depth * 2);
+			containers = Arrays.copyOf(containers, depth * 2);
+			counts = Arrays.copyOf(counts, depth * 2);
+		}
+		objects[depth] = object;
+		counts[depth] = 0;
+		containers[depth] = false;
+		depth++;
+	}
+	
+	private String indent(int level) {
+		if (level >= indents.length)
+			indents = Arrays.copyOf(indents, Math.max(level + 1, indents.length * 2));
+		String indent = indents[level];
+		if (indent == null) {
+			StringBuilder sb = new StringBuilder(baseIndentation);
+			for (int i = 0; i < level; i++)
+				sb.append(indentation);
+			indents[level] = indent = sb.toString();
+		}
+		return indent;
+	}
+}
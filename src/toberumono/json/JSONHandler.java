@@ -0,0 +1,70 @@
+package toberumono.json;
+
+/**
+ * Receives the structure of JSON text from a {@link JSONStreamParser} as a sequence of events.<br>
+ * Events are delivered in document order. Every call to {@link #startObject()} is matched by a call to {@link #endObject()}, every call to
+ * {@link #startArray()} is matched by a call to {@link #endArray()}, and every value within an object is preceded by a call to
+ * {@link #key(String)}.
+ * 
+ * @author Toberumono
+ * @see JSONStreamParser
+ */
+public interface JSONHandler {
+	
+	/**
+	 * Called when a '{' is read.
+	 */
+	public void startObject();
+	
+	/**
+	 * Called when the '}' that closes the current object is read.
+	 */
+	public void endObject();
+	
+	/**
+	 * Called when a '[' is read.
+	 */
+	public void startArray();
+	
+	/**
+	 * Called when the ']' that closes the current array is read.
+	 */
+	public void endArray();
+	
+	/**
+	 * Called when the key of a key-value pair has been read.
+	 * 
+	 * @param key
+	 *            the unescaped key
+	 */
+	public void key(String key);
+	
+	/**
+	 * Called when a {@link String} value has been read.
+	 * 
+	 * @param value
+	 *            the unescaped {@link String}
+	 */
+	public void stringValue(String value);
+	
+	/**
+	 * Called when a number has been read.
+	 * 
+	 * @param value
+	 *            the number as produced by the reader set via {@link JSONSystem#setNumberHandlers(Class, java.util.function.Function, java.util.function.Function)}
+	 */
+	public void numberValue(Number value);
+	
+	/**
+	 * Called when a boolean has been read.
+	 * 
+	 * @param value
+	 *            the boolean
+	 */
+	public void booleanValue(boolean value);
+	
+	/**
+	 * Called when a {@code null} has been read.
+	 */
+	public void nullValue();
+}
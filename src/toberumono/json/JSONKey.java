@@ -0,0 +1,96 @@
+package toberumono.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A canonical handle for a key that is used to access {@link JSONObject JSONObjects} repeatedly (e.g. a constant in a request handler).<br>
+ * There is exactly one {@link JSONKey} for each name (see {@link #of(String)}), and it holds the canonical instance of the name, its escaped
+ * JSON form, and the UTF-8 bytes of its escaped JSON form. Keys that are put into a {@link JSONObject} via a {@link JSONKey}, as well as keys
+ * that match a {@link JSONKey} and are read by the parser, are stored as the canonical instance of the name. Because {@link String}
+ * caches its hash code and {@link java.util.HashMap HashMap} compares keys by identity before calling {@link String#equals(Object)},
+ * lookups via {@link JSONObject#get(JSONKey)} then never compare the characters of the key. {@link JSONGenerator} writes the keys of
+ * {@link JSONObject JSONObjects} that match a {@link JSONKey} from its cached forms.<br>
+ * {@link JSONKey JSONKeys} are never discarded, so they should only be created for a fixed set of names.
+ * 
+ * @author Toberumono
+ */
+public final class JSONKey {
+	private static final ConcurrentHashMap<String, JSONKey> keys = new ConcurrentHashMap<>();
+	
+	private final String name, escaped;
+	private final byte[] utf8;
+	
+	private JSONKey(String name) {
+		this.name = name;
+		escaped = JSONString.toJSONString(name);
+		utf8 = escaped.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Returns the {@link JSONKey} for {@code name}, creating it if it does not already exist.
+	 * 
+	 * @param name
+	 *            the name of the key
+	 * @return the {@link JSONKey} for {@code name}
+	 */
+	public static JSONKey of(String name) {
+		JSONKey key = keys.get(name);
+		return key != null ? key : keys.computeIfAbsent(name, JSONKey::new);
+	}
+	
+	/**
+	 * @param name
+	 *            the name of the key
+	 * @return the {@link JSONKey} for {@code name} if one has been created, otherwise {@code null}
+	 */
+	static JSONKey lookup(String name) {
+		return keys.isEmpty() ? null : keys.get(name);
+	}
+	
+	/**
+	 * @param name
+	 *            the name of the key
+	 * @return the canonical instance of {@code name} if a {@link JSONKey} has been created for it, otherwise {@code name}
+	 */
+	static String canonical(String name) {
+		JSONKey key = lookup(name);
+		return key == null ? name : key.name;
+	}
+	
+	/**
+	 * @return the name of the key
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the name of the key as an escaped and quoted JSON string
+	 */
+	String escaped() {
+		return escaped;
+	}
+	
+	/**
+	 * @return the UTF-8 encoding of {@link #escaped()}. This must not be modified
+	 */
+	byte[] utf8() {
+		return utf8;
+	}
+	
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o == this; //JSONKeys are canonical
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+}
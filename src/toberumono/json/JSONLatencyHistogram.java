@@ -0,0 +1,102 @@
+package toberumono.json;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of the distribution of the durations of a kind of operation.<br>
+ * Bucket {@code i} counts the operations that took less than 2<sup>i</sup> nanoseconds and at least 2<sup>i - 1</sup> nanoseconds, so
+ * percentiles are accurate to within a factor of two.
+ * 
+ * @author Toberumono
+ * @see JSONMetricsCollector
+ */
+public final class JSONLatencyHistogram {
+	static final int BUCKETS = 64;
+	private final long[] counts;
+	private final long count, totalNanos;
+	
+	JSONLatencyHistogram(long[] counts, long totalNanos) {
+		this.counts = counts;
+		this.totalNanos = totalNanos;
+		long count = 0;
+		for (long c : counts)
+			count += c;
+		this.count = count;
+	}
+	
+	/**
+	 * @return the index of the bucket that counts an operation that took {@code nanos} nanoseconds
+	 */
+	static int bucket(long nanos) {
+		return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+	
+	/**
+	 * @return the number of operations in the histogram
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the total duration of the operations in the histogram in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	/**
+	 * @return the mean duration of the operations in the histogram in nanoseconds, or 0 if there are none
+	 */
+	public double getMeanNanos() {
+		return count == 0 ? 0 : (double) totalNanos / count;
+	}
+	
+	/**
+	 * @return the number of buckets in the histogram
+	 */
+	public int getBucketCount() {
+		return counts.length;
+	}
+	
+	/**
+	 * @param bucket
+	 *            the index of the bucket
+	 * @return the number of operations in the given bucket
+	 */
+	public long getCount(int bucket) {
+		return counts[bucket];
+	}
+	
+	/**
+	 * @param bucket
+	 *            the index of the bucket
+	 * @return the exclusive upper bound of the durations counted by the given bucket in nanoseconds
+	 */
+	public long getUpperBound(int bucket) {
+		return bucket >= 63 ? Long.MAX_VALUE : 1L << bucket;
+	}
+	
+	/**
+	 * @param percentile
+	 *            the percentile to compute, between 0 and 100 (inclusive)
+	 * @return the upper bound of the bucket containing the given percentile in nanoseconds, or 0 if the histogram is empty
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("The percentile must be between 0 and 100");
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100)), seen = 0;
+		for (int i = 0; i < counts.length; i++)
+			if ((seen += counts[i]) >= rank)
+				return getUpperBound(i);
+		return getUpperBound(counts.length - 1);
+	}
+	
+	@Override
+	public String toString() {
+		return "count=" + count + ", mean=" + getMeanNanos() + "ns, p50<" + getPercentile(50) + "ns, p99<" + getPercentile(99) + "ns, buckets="
+				+ Arrays.toString(counts);
+	}
+}
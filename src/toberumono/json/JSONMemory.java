@@ -0,0 +1,235 @@
+package toberumono.json;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Estimates the amount of heap that a {@link JSONData} tree retains.<br>
+ * The shallow sizes of objects are computed from their declared fields and the layout of the running JVM (header size, reference size, and
+ * 8-byte alignment), so they track the JDK's own classes. The capacities of the {@link java.util.HashMap HashMap} tables and
+ * {@link java.util.ArrayList ArrayList} backing arrays are not visible, so they are derived from the number of elements assuming that the
+ * containers grew one element at a time (as they do when they are parsed).<br>
+ * Objects that are known to be shared ({@link JSONBoolean#TRUE}, {@link JSONBoolean#FALSE}, {@link JSONNull#NULL}, and cached boxed values) are
+ * not counted, and a key {@link String} that is shared between several {@link JSONObject JSONObjects} is only counted once.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#estimateRetainedBytes(JSONData)
+ */
+final class JSONMemory {
+	private static final int REFERENCE, HEADER, ARRAY_HEADER;
+	private static final boolean COMPACT_STRINGS;
+	private static final ClassValue<Long> shallowSizes = new ClassValue<Long>() {
+		@Override
+		protected Long computeValue(Class<?> type) {
+			long size = HEADER;
+			for (Class<?> c = type; c != null; c = c.getSuperclass())
+				for (Field field : c.getDeclaredFields())
+					if (!Modifier.isStatic(field.getModifiers()))
+						size += fieldSize(field.getType());
+			return align(size);
+		}
+	};
+	private static final long ENTRY;
+	
+	static {
+		if ("32".equals(System.getProperty("sun.arch.data.model"))) {
+			REFERENCE = 4;
+			HEADER = 8;
+		}
+		else if (Runtime.getRuntime().maxMemory() < 32L << 30) { //Compressed references are enabled by default below 32GB
+			REFERENCE = 4;
+			HEADER = 12;
+		}
+		else {
+			REFERENCE = 8;
+			HEADER = 16;
+		}
+		ARRAY_HEADER = HEADER + 4;
+		boolean compact;
+		try {
+			String.class.getDeclaredField("coder");
+			compact = true;
+		}
+		catch (NoSuchFieldException e) {
+			compact = false;
+		}
+		COMPACT_STRINGS = compact;
+		long entry;
+		try {
+			entry = shallowSizes.get(Class.forName("java.util.LinkedHashMap$Entry"));
+		}
+		catch (ClassNotFoundException e) {
+			entry = align(HEADER + 4 + 5 * REFERENCE);
+		}
+		ENTRY = entry;
+	}
+	
+	private JSONMemory() {/* This class should not be initialized */}
+	
+	/**
+	 * Estimates the number of bytes that {@code root} and everything reachable from it retain.
+	 * 
+	 * @param root
+	 *            the root of the tree
+	 * @param sampleSize
+	 *            the maximum number of children to walk in each {@link JSONObject} or {@link JSONArray}. Containers with more children than
+	 *            this have an evenly-spaced sample of their children walked and the result scaled up. Use {@link Integer#MAX_VALUE} to walk the
+	 *            whole tree
+	 * @return the estimated number of bytes
+	 */
+	static long estimate(JSONData<?> root, int sampleSize) {
+		if (sampleSize < 1)
+			throw new IllegalArgumentException("The sample size must be positive");
+		JSONData<?>[] nodes = new JSONData<?>[16];
+		double[] weights = new double[16];
+		int top = 0;
+		nodes[top] = root;
+		weights[top++] = 1;
+		Set<String> keys = Collections.newSetFromMap(new IdentityHashMap<>());
+		double total = 0;
+		while (top > 0) {
+			JSONData<?> node = nodes[--top];
+			double weight = weights[top];
+			nodes[top] = null;
+			if (node instanceof JSONObjectWrapper) {
+				total += weight * shallowSizes.get(node.getClass());
+				node = ((JSONObjectWrapper<?>) node).value();
+			}
+			if (node instanceof JSONObject) {
+				JSONObject object = (JSONObject) node;
+				int size = object.size(), stride = stride(size, sampleSize), sampled = (size + stride - 1) / stride;
+				double childWeight = weight * size / Math.max(sampled, 1);
+				total += weight * (shallowSizes.get(JSONObject.class) + (size == 0 ? 0 : array(REFERENCE, hashCapacity(size))) + size * ENTRY);
+				if (nodes.length - top < sampled) {
+					nodes = Arrays.copyOf(nodes, top + sampled + 16);
+					weights = Arrays.copyOf(weights, nodes.length);
+				}
+				Iterator<Entry<String, JSONData<?>>> entries = object.entrySet().iterator();
+				for (int i = 0; entries.hasNext(); i++) {
+					Entry<String, JSONData<?>> entry = entries.next();
+					if (i % stride != 0)
+						continue;
+					if (keys.add(entry.getKey()))
+						total += childWeight * string(entry.getKey());
+					nodes[top] = entry.getValue();
+					weights[top++] = childWeight;
+				}
+			}
+			else if (node instanceof JSONArray) {
+				JSONArray array = (JSONArray) node;
+				int size = array.size(), stride = stride(size, sampleSize), sampled = (size + stride - 1) / stride;
+				double childWeight = weight * size / Math.max(sampled, 1);
+				total += weight * (shallowSizes.get(node.getClass()) + (size == 0 ? 0 : array(REFERENCE, listCapacity(size))));
+				if (nodes.length - top < sampled) {
+					nodes = Arrays.copyOf(nodes, top + sampled + 16);
+					weights = Arrays.copyOf(weights, nodes.length);
+				}
+				for (int i = 0; i < size; i += stride) {
+					nodes[top] = array.get(i);
+					weights[top++] = childWeight;
+				}
+			}
+			else
+				total += weight * leaf(node);
+		}
+		return Math.round(total);
+	}
+	
+	/**
+	 * @return the size of a value that has no {@link JSONData} children
+	 */
+	private static long leaf(JSONData<?> node) {
+		if (node == null || node == JSONNull.NULL || node == JSONBoolean.TRUE || node == JSONBoolean.FALSE)
+			return 0;
+		long size = shallowSizes.get(node.getClass());
+		if (node instanceof JSONString)
+			return size + string(((JSONString) node).value());
+		if (node.getClass() == JSONNumber.class) //The other JSONNumber classes store their values as primitives
+			return size + number(((JSONNumber<?>) node).value());
+		return size;
+	}
+	
+	private static long string(String value) {
+		if (value == null)
+			return 0;
+		int length = value.length();
+		if (!COMPACT_STRINGS)
+			return shallowSizes.get(String.class) + array(2, length);
+		for (int i = 0; i < length; i++)
+			if (value.charAt(i) > 0xFF)
+				return shallowSizes.get(String.class) + array(2, length);
+		return shallowSizes.get(String.class) + array(1, length);
+	}
+	
+	private static long number(Number value) {
+		if (value == null)
+			return 0;
+		if ((value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) && value.longValue() >= -128
+				&& value.longValue() <= 127)
+			return 0; //These are cached by valueOf
+		long size = shallowSizes.get(value.getClass());
+		if (value instanceof BigInteger)
+			return size + array(4, ((BigInteger) value).bitLength() / 32 + 1);
+		if (value instanceof BigDecimal && ((BigDecimal) value).precision() > 18) { //BigDecimal only keeps a BigInteger if the value does not fit in a long
+			BigInteger unscaled = ((BigDecimal) value).unscaledValue();
+			return size + shallowSizes.get(BigInteger.class) + array(4, unscaled.bitLength() / 32 + 1);
+		}
+		return size;
+	}
+	
+	/**
+	 * @return the number of children to skip between each child that is walked
+	 */
+	private static int stride(int size, int sampleSize) {
+		return size <= sampleSize ? 1 : (size + sampleSize - 1) / sampleSize;
+	}
+	
+	/**
+	 * @return the length of the table of a {@link java.util.HashMap HashMap} with the default load factor after {@code size} insertions
+	 */
+	private static int hashCapacity(int size) {
+		int capacity = 16;
+		while (capacity < 1 << 30 && size > capacity * 3 / 4)
+			capacity <<= 1;
+		return capacity;
+	}
+	
+	/**
+	 * @return the length of the backing array of an {@link java.util.ArrayList ArrayList} after {@code size} calls to
+	 *         {@link java.util.ArrayList#add(Object) add}
+	 */
+	private static int listCapacity(int size) {
+		long capacity = 10;
+		while (capacity < size)
+			capacity += capacity >> 1;
+		return (int) Math.min(capacity, Integer.MAX_VALUE - 8);
+	}
+	
+	private static long array(int elementSize, int length) {
+		return align(ARRAY_HEADER + (long) elementSize * length);
+	}
+	
+	private static long fieldSize(Class<?> type) {
+		if (!type.isPrimitive())
+			return REFERENCE;
+		if (type == long.class || type == double.class)
+			return 8;
+		if (type == int.class || type == float.class)
+			return 4;
+		if (type == short.class || type == char.class)
+			return 2;
+		return 1;
+	}
+	
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
@@ -0,0 +1,46 @@
+package toberumono.json;
+
+/**
+ * Receives a report of every parse and serialize operation performed through {@link JSONSystem}.<br>
+ * Install an implementation with {@link JSONSystem#setMetrics(JSONMetrics)}. While no {@link JSONMetrics} are installed (and no Flight Recorder
+ * recording is running), the operations are not measured at all. Implementations are called on the thread that performed the operation and
+ * must therefore be thread-safe and fast. {@link JSONMetricsCollector} is a ready-made implementation that keeps cumulative totals and latency
+ * histograms.
+ * 
+ * @author Toberumono
+ * @see JSONMetricsCollector
+ */
+public interface JSONMetrics {
+	
+	/**
+	 * Called after JSON text has been parsed via one of the {@code parseJSON}, {@code readJSON}, or {@code loadJSON} methods.
+	 * 
+	 * @param source
+	 *            the file from which the text was read, or {@code null} if it was not read from a file
+	 * @param size
+	 *            the number of characters that were parsed
+	 * @param nodes
+	 *            the number of {@link JSONData} nodes in the resulting tree
+	 * @param maxDepth
+	 *            the depth of the deepest node in the resulting tree (the root is at depth 0)
+	 * @param nanos
+	 *            the time the operation took in nanoseconds
+	 */
+	public void parsed(String source, long size, long nodes, int maxDepth, long nanos);
+	
+	/**
+	 * Called after a tree has been written via one of the {@code writeJSON} methods.
+	 * 
+	 * @param target
+	 *            the file to which the text was written, or {@code null} if it was not written to a file
+	 * @param size
+	 *            the number of characters or bytes that were written, or -1 if the destination does not allow this to be determined
+	 * @param nodes
+	 *            the number of {@link JSONData} nodes in the tree
+	 * @param maxDepth
+	 *            the depth of the deepest node in the tree (the root is at depth 0)
+	 * @param nanos
+	 *            the time the operation took in nanoseconds
+	 */
+	public void serialized(String target, long size, long nodes, int maxDepth, long nanos);
+}
@@ -0,0 +1,119 @@
+package toberumono.json;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link JSONMetrics} implementation that keeps cumulative operation counts, sizes, and latency histograms.<br>
+ * The histograms have one bucket per power of two nanoseconds, so recording an operation is a handful of uncontended atomic increments.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#setMetrics(JSONMetrics)
+ */
+public final class JSONMetricsCollector implements JSONMetrics {
+	private final Counters parses = new Counters(), serializations = new Counters();
+	
+	@Override
+	public void parsed(String source, long size, long nodes, int maxDepth, long nanos) {
+		parses.record(size, nodes, nanos);
+	}
+	
+	@Override
+	public void serialized(String target, long size, long nodes, int maxDepth, long nanos) {
+		serializations.record(size, nodes, nanos);
+	}
+	
+	/**
+	 * @return the number of parse operations that have been recorded
+	 */
+	public long getParseCount() {
+		return parses.count.sum();
+	}
+	
+	/**
+	 * @return the total number of characters that have been parsed
+	 */
+	public long getParsedSize() {
+		return parses.size.sum();
+	}
+	
+	/**
+	 * @return the total number of {@link JSONData} nodes that have been produced by parsing
+	 */
+	public long getParsedNodes() {
+		return parses.nodes.sum();
+	}
+	
+	/**
+	 * @return a snapshot of the distribution of the durations of parse operations
+	 */
+	public JSONLatencyHistogram getParseLatencies() {
+		return parses.histogram();
+	}
+	
+	/**
+	 * @return the number of serialize operations that have been recorded
+	 */
+	public long getSerializeCount() {
+		return serializations.count.sum();
+	}
+	
+	/**
+	 * @return the total number of characters or bytes that have been written. Writes whose size could not be determined are not included
+	 */
+	public long getSerializedSize() {
+		return serializations.size.sum();
+	}
+	
+	/**
+	 * @return the total number of {@link JSONData} nodes that have been serialized
+	 */
+	public long getSerializedNodes() {
+		return serializations.nodes.sum();
+	}
+	
+	/**
+	 * @return a snapshot of the distribution of the durations of serialize operations
+	 */
+	public JSONLatencyHistogram getSerializeLatencies() {
+		return serializations.histogram();
+	}
+	
+	/**
+	 * Resets all of the counts and histograms to 0.
+	 */
+	public void reset() {
+		parses.reset();
+		serializations.reset();
+	}
+	
+	private static final class Counters {
+		final LongAdder count = new LongAdder(), size = new LongAdder(), nodes = new LongAdder(), nanos = new LongAdder();
+		final AtomicLongArray buckets = new AtomicLongArray(JSONLatencyHistogram.BUCKETS);
+		
+		void record(long size, long nodes, long nanos) {
+			count.increment();
+			if (size > 0)
+				this.size.add(size);
+			this.nodes.add(nodes);
+			this.nanos.add(nanos);
+			buckets.incrementAndGet(JSONLatencyHistogram.bucket(nanos));
+		}
+		
+		JSONLatencyHistogram histogram() {
+			long[] counts = new long[buckets.length()];
+			for (int i = 0; i < counts.length; i++)
+				counts[i] = buckets.get(i);
+			return new JSONLatencyHistogram(counts, nanos.sum());
+		}
+		
+		void reset() {
+			count.reset();
+			size.reset();
+			nodes.reset();
+			nanos.reset();
+			for (int i = 0; i < buckets.length(); i++)
+				buckets.set(i, 0);
+		}
+	}
+}
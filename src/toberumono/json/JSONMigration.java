@@ -0,0 +1,410 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import toberumono.json.exceptions.JSONException;
+
+/**
+ * A declarative plan for upgrading JSON documents from one layout to another.<br>
+ * A plan is a list of steps that mirror {@link JSONSystem#renameField(JSONObject, JSONData, String...)},
+ * {@link JSONSystem#transferField(String, JSONData, JSONObject...)}, and
+ * {@link JSONSystem#renameAndTransferField(JSONData, JSONObject[], String[])}, plus defaults and removals. Containers are identified by JSON
+ * Pointers (RFC 6901) such as {@code ""} (the root) or {@code "/server/ssl"}.<br>
+ * The first time that a plan is applied, it is compiled: every container that it mentions is assigned a slot, and each slot is resolved from
+ * its parent's slot. Applying the compiled plan therefore looks up each container once per document no matter how many steps refer to it, and
+ * then runs the steps against the resolved containers. When a step adds, moves, or removes a field, only the slots at or below that field are
+ * resolved again, so later steps always see the current layout. Containers that a step writes to are created if they do not exist.<br>
+ * Example Usage:
+ * 
+ * <pre>
+ * {
+ * 	JSONMigration migration = new JSONMigration().rename("/server", null, "hostname", "host").transfer("timeout", new JSONNumber&lt;&gt;(30), "",
+ * "/server")
+ * 			.setDefault("/server", "port", new JSONNumber&lt;&gt;(8080)).remove("", "legacy");
+ * 	JSONBatchResult&lt;List&lt;String&gt;&gt; changes = migration.applyAll(configDirectory);
+ * }
+ * </pre>
+ * 
+ * @author Toberumono
+ */
+public final class JSONMigration {
+	private final List<Step> steps = new ArrayList<>();
+	private volatile Compiled compiled = null;
+	
+	/**
+	 * Constructs an empty {@link JSONMigration}.
+	 */
+	public JSONMigration() {/* Steps are added via the builder methods */}
+	
+	/**
+	 * Renames a field within a single container. This is the plan equivalent of {@link JSONSystem#renameField(JSONObject, JSONData, String...)}.
+	 * 
+	 * @param container
+	 *            the JSON Pointer to the container in which the field is to be renamed
+	 * @param defaultValue
+	 *            the value to use if the field is not identified by any of the names. If this is {@code null}, the field is only renamed if it
+	 *            exists
+	 * @param nameChain
+	 *            the names from oldest to newest by which the field could be identified. The last name is the target name of the field
+	 * @return this {@link JSONMigration}
+	 */
+	public JSONMigration rename(String container, JSONData<?> defaultValue, String... nameChain) {
+		return renameAndTransfer(defaultValue, new String[]{container}, nameChain);
+	}
+	
+	/**
+	 * Moves a field from one container to another. This is the plan equivalent of {@link JSONSystem#transferField(String, JSONData, JSONObject...)}.
+	 * 
+	 * @param name
+	 *            the name of the field to be transferred
+	 * @param defaultValue
+	 *            the value to use if the field is not found in any of the containers. If this is {@code null}, the field is only moved if it
+	 *            exists
+	 * @param containerChain
+	 *            the JSON Pointers from oldest to newest to the containers wherein the field could be found. The last container is the target
+	 *            location of the field
+	 * @return this {@link JSONMigration}
+	 */
+	public JSONMigration transfer(String name, JSONData<?> defaultValue, String... containerChain) {
+		return renameAndTransfer(defaultValue, containerChain, new String[]{name});
+	}
+	
+	/**
+	 * Renames a field and moves it to another container. This is the plan equivalent of
+	 * {@link JSONSystem#renameAndTransferField(JSONData, JSONObject[], String[])}, and uses the same prioritization: the value identified by the
+	 * newest name wins, and if a name is found in several containers, the value in the newest container wins.
+	 * 
+	 * @param defaultValue
+	 *            the value to use if the field is not found. If this is {@code null}, the field is only moved if it exists
+	 * @param containerChain
+	 *            the JSON Pointers from oldest to newest to the containers wherein the field could be found. The last container is the target
+	 *            location of the field
+	 * @param nameChain
+	 *            the names from oldest to newest by which the field could be identified. The last name is the target name of the field
+	 * @return this {@link JSONMigration}
+	 */
+	public synchronized JSONMigration renameAndTransfer(JSONData<?> defaultValue, String[] containerChain, String[] nameChain) {
+		if (containerChain.length == 0 || nameChain.length == 0)
+			throw new IllegalArgumentException("At least one container and one name are required");
+		for (String container : containerChain)
+			checkPointer(container);
+		steps.add(new Step(containerChain.clone(), nameChain.clone(), defaultValue, false));
+		compiled = null;
+		return this;
+	}
+	
+	/**
+	 * Adds a field to a container if the container does not already have a field with that name.
+	 * 
+	 * @param container
+	 *            the JSON Pointer to the container
+	 * @param name
+	 *            the name of the field
+	 * @param value
+	 *            the value of the field. Each document receives its own copy
+	 * @return this {@link JSONMigration}
+	 */
+	public JSONMigration setDefault(String container, String name, JSONData<?> value) {
+		if (value == null)
+			throw new NullPointerException("The default value cannot be null");
+		return renameAndTransfer(value, new String[]{container}, new String[]{name});
+	}
+	
+	/**
+	 * Removes a field from a container.
+	 * 
+	 * @param container
+	 *            the JSON Pointer to the container
+	 * @param name
+	 *            the name of the field to remove
+	 * @return this {@link JSONMigration}
+	 */
+	public synchronized JSONMigration remove(String container, String name) {
+		checkPointer(container);
+		steps.add(new Step(new String[]{container}, new String[]{name}, null, true));
+		compiled = null;
+		return this;
+	}
+	
+	/**
+	 * Applies this plan to a document in place.
+	 * 
+	 * @param root
+	 *            the root of the document
+	 * @return a description of each change that was made, in the order in which they were made. This is empty if the document already had the
+	 *         target layout
+	 * @throws JSONException
+	 *             if a container that the plan writes to exists but is not a {@link JSONObject}
+	 */
+	public List<String> apply(JSONObject root) {
+		Compiled plan = compiled;
+		if (plan == null) {
+			synchronized (this) {
+				if ((plan = compiled) == null)
+					compiled = plan = new Compiled(steps);
+			}
+		}
+		return plan.apply(root);
+	}
+	
+	/**
+	 * Applies this plan to each JSON file in {@code directory} (files whose names end with {@code .json}) concurrently. Files that are changed are
+	 * written back atomically.
+	 * 
+	 * @param directory
+	 *            the directory containing the files
+	 * @return a {@link JSONBatchResult} that maps each file to either the changes made to it or the {@link Exception} that occurred
+	 * @throws IOException
+	 *             if the directory cannot be listed
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the files to be migrated
+	 * @see #applyAll(Collection, Executor, int)
+	 */
+	public JSONBatchResult<List<String>> applyAll(Path directory) throws IOException, InterruptedException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+			for (Path file : stream)
+				if (Files.isRegularFile(file))
+					files.add(file);
+		}
+		Collections.sort(files);
+		return applyAll(files, JSONBatch.defaultExecutor(), JSONBatch.DEFAULT_PARALLELISM);
+	}
+	
+	/**
+	 * Applies this plan to each of the given files concurrently on the given {@link Executor}. Files that are changed are written back atomically
+	 * (see {@link JSONWriteOption#ATOMIC}).
+	 * 
+	 * @param files
+	 *            the {@link Path Paths} of the files to migrate
+	 * @param executor
+	 *            the {@link Executor} on which to migrate the files
+	 * @param parallelism
+	 *            the maximum number of files to migrate at once
+	 * @return a {@link JSONBatchResult} that maps each file to either the changes made to it or the {@link Exception} that occurred
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the files to be migrated
+	 */
+	public JSONBatchResult<List<String>> applyAll(Collection<Path> files, Executor executor, int parallelism) throws InterruptedException {
+		return JSONBatch.run(files, executor, parallelism, path -> {
+			JSONData<?> root = JSONSystem.loadJSON(path);
+			if (!(root instanceof JSONObject))
+				throw new JSONException("The root of " + path + " is not an object");
+			List<String> changes = apply((JSONObject) root);
+			if (!changes.isEmpty())
+				JSONSystem.writeJSON(root, path, true, JSONWriteOption.ATOMIC);
+			return changes;
+		});
+	}
+	
+	private static void checkPointer(String pointer) {
+		if (!pointer.isEmpty() && pointer.charAt(0) != '/')
+			throw new IllegalArgumentException("Invalid JSON pointer: " + pointer);
+	}
+	
+	private static final class Step {
+		final String[] containers, names;
+		final JSONData<?> defaultValue;
+		final boolean remove;
+		
+		Step(String[] containers, String[] names, JSONData<?> defaultValue, boolean remove) {
+			this.containers = containers;
+			this.names = names;
+			this.defaultValue = defaultValue;
+			this.remove = remove;
+		}
+	}
+	
+	/**
+	 * The compiled form of a plan. Containers are numbered so that every container's parent has a lower number than it does, which lets them be
+	 * resolved in a single forward pass.
+	 */
+	private static final class Compiled {
+		private final String[] paths, tokens;
+		private final int[] parents;
+		private final Operation[] operations;
+		
+		Compiled(List<Step> steps) {
+			Map<String, Integer> slots = new LinkedHashMap<>();
+			List<String> tokens = new ArrayList<>();
+			List<Integer> parents = new ArrayList<>();
+			List<Operation> operations = new ArrayList<>();
+			for (Step step : steps) {
+				int[] containers = new int[step.containers.length];
+				for (int i = 0; i < containers.length; i++)
+					containers[i] = slot(step.containers[i], slots, tokens, parents);
+				operations.add(new Operation(containers, step.names, step.defaultValue, step.remove));
+			}
+			paths = slots.keySet().toArray(new String[slots.size()]);
+			this.tokens = tokens.toArray(new String[tokens.size()]);
+			this.parents = new int[parents.size()];
+			for (int i = 0; i < this.parents.length; i++)
+				this.parents[i] = parents.get(i);
+			this.operations = operations.toArray(new Operation[operations.size()]);
+		}
+		
+		private static int slot(String path, Map<String, Integer> slots, List<String> tokens, List<Integer> parents) {
+			Integer slot = slots.get(path);
+			if (slot != null)
+				return slot;
+			int parent = -1;
+			String token = null;
+			if (!path.isEmpty()) {
+				int split = path.lastIndexOf('/');
+				parent = slot(path.substring(0, split), slots, tokens, parents);
+				token = JSONPatch.unescape(path.substring(split + 1));
+			}
+			slot = slots.size();
+			slots.put(path, slot);
+			tokens.add(token);
+			parents.add(parent);
+			return slot;
+		}
+		
+		List<String> apply(JSONObject root) {
+			Run run = new Run(root, paths.length);
+			for (int i = 1; i < paths.length; i++)
+				resolve(run, i);
+			for (Operation operation : operations) {
+				operation.apply(this, run);
+				if (!run.touchedSlots.isEmpty())
+					refresh(run);
+			}
+			return run.changes;
+		}
+		
+		private void resolve(Run run, int slot) {
+			JSONObject parent = run.resolved[parents[slot]];
+			JSONData<?> child = parent == null ? null : parent.get(tokens[slot]);
+			run.resolved[slot] = child instanceof JSONObject ? (JSONObject) child : null;
+		}
+		
+		/**
+		 * Re-resolves every slot whose container was renamed, moved, added, or removed by the last step, along with all of their descendants.
+		 * Parents always have lower numbers than their children, so a single forward pass suffices.
+		 */
+		private void refresh(Run run) {
+			boolean[] stale = new boolean[paths.length];
+			for (int i = 1; i < paths.length; i++) {
+				stale[i] = stale[parents[i]];
+				for (int j = 0; !stale[i] && j < run.touchedSlots.size(); j++)
+					stale[i] = run.touchedSlots.get(j) == parents[i] && run.touchedNames.get(j).equals(tokens[i]);
+				if (stale[i])
+					resolve(run, i);
+			}
+			run.touchedSlots.clear();
+			run.touchedNames.clear();
+		}
+		
+		/**
+		 * Resolves the container in {@code slot}, creating it and any of its missing parents.
+		 */
+		JSONObject create(Run run, int slot) {
+			if (run.resolved[slot] != null)
+				return run.resolved[slot];
+			JSONObject parent = create(run, parents[slot]);
+			JSONData<?> existing = parent.get(tokens[slot]);
+			if (existing != null)
+				throw new JSONException("Expected an object at " + paths[slot] + " but found " + existing.type());
+			parent.put(tokens[slot], run.resolved[slot] = new JSONObject());
+			run.changes.add("created " + paths[slot]);
+			return run.resolved[slot];
+		}
+		
+		String path(int slot, String name) {
+			return paths[slot] + "/" + JSONPatch.escape(name);
+		}
+	}
+	
+	private static final class Operation {
+		private final int[] containers;
+		private final String[] names;
+		private final JSONData<?> defaultValue;
+		private final boolean remove;
+		
+		Operation(int[] containers, String[] names, JSONData<?> defaultValue, boolean remove) {
+			this.containers = containers;
+			this.names = names;
+			this.defaultValue = defaultValue;
+			this.remove = remove;
+		}
+		
+		void apply(Compiled plan, Run run) {
+			int target = containers[containers.length - 1];
+			String name = names[names.length - 1];
+			if (remove) {
+				if (run.resolved[target] != null && run.resolved[target].remove(name) != null) {
+					run.touch(target, name);
+					run.changes.add("removed " + plan.path(target, name));
+				}
+				return;
+			}
+			//Later names win over earlier ones, and for the same name, later containers win over earlier ones
+			JSONData<?> value = null;
+			String source = null;
+			List<String> discarded = new ArrayList<>();
+			for (int j = 0; j < names.length; j++) {
+				for (int i = 0; i < containers.length; i++) {
+					JSONObject container = run.resolved[containers[i]];
+					if (container == null || (i == containers.length - 1 && j == names.length - 1) || !container.containsKey(names[j]))
+						continue;
+					if (source != null)
+						discarded.add(source);
+					value = container.remove(names[j]);
+					run.touch(containers[i], names[j]);
+					source = plan.path(containers[i], names[j]);
+				}
+			}
+			JSONObject destination = run.resolved[target];
+			if (destination != null && destination.containsKey(name)) {
+				if (source != null)
+					discarded.add(source);
+			}
+			else if (source != null) {
+				plan.create(run, target).put(name, value);
+				run.touch(target, name);
+				run.changes.add("moved " + source + " to " + plan.path(target, name));
+			}
+			else if (defaultValue != null) {
+				plan.create(run, target).put(name, defaultValue.deepCopy());
+				run.touch(target, name);
+				run.changes.add("added " + plan.path(target, name));
+			}
+			for (String path : discarded)
+				run.changes.add("removed " + path);
+		}
+	}
+	
+	/**
+	 * The state of a single application of a {@link Compiled} plan.
+	 */
+	private static final class Run {
+		final JSONObject[] resolved;
+		final List<String> changes = new ArrayList<>();
+		/**
+		 * The containers and names of the fields that the current step added or removed
+		 */
+		final List<Integer> touchedSlots = new ArrayList<>();
+		final List<String> touchedNames = new ArrayList<>();
+		
+		Run(JSONObject root, int slots) {
+			resolved = new JSONObject[slots];
+			resolved[0] = root;
+		}
+		
+		void touch(int slot, String name) {
+			touchedSlots.add(slot);
+			touchedNames.add(name);
+		}
+	}
+}
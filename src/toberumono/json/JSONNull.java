@@ -1,5 +1,7 @@
 package toberumono.json;
 
+import java.io.IOException;
+
 /**
  * Represents a {@code null} value in JSON text.
  * 
@@ -17,6 +19,11 @@ public class JSONNull implements JSONData<Void> {
 		return "null";
 	}
 	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		generator.nullValue();
+	}
+	
 	/**
 	 * @return {@code null}
 	 */
@@ -1,9 +1,11 @@
 package toberumono.json;
 
-import java.util.function.Function;
+import java.io.IOException;
 
 /**
- * Represents a number in JSON text.
+ * Represents a number in JSON text.<br>
+ * The {@link #valueOf(int)}, {@link #valueOf(long)}, and {@link #valueOf(double)} factories return {@link JSONNumber JSONNumbers} that store
+ * their values as primitives, so {@link #intValue()}, {@link #longValue()}, and {@link #doubleValue()} do not need to unbox them.
  * 
  * @author Toberumono
  * @param <T>
@@ -20,15 +22,209 @@ public class JSONNumber<T extends Number> extends JSONValue<T> {
 	public JSONNumber(T value) {
 		super(value, JSONType.NUMBER);
 	}
-
+	
+	/**
+	 * Used by subclasses that store their value as a primitive and therefore override {@link #value()}.
+	 */
+	JSONNumber() {
+		super(null, JSONType.NUMBER);
+	}
+	
+	/**
+	 * @return the value of this {@link JSONNumber} as an {@code int} as if by {@link Number#intValue()}
+	 */
+	public int intValue() {
+		return value().intValue();
+	}
+	
+	/**
+	 * @return the value of this {@link JSONNumber} as a {@code long} as if by {@link Number#longValue()}
+	 */
+	public long longValue() {
+		return value().longValue();
+	}
+	
+	/**
+	 * @return the value of this {@link JSONNumber} as a {@code double} as if by {@link Number#doubleValue()}
+	 */
+	public double doubleValue() {
+		return value().doubleValue();
+	}
+	
 	@Override
 	public JSONNumber<T> deepCopy() {
 		return new JSONNumber<>(value());
 	}
 	
 	@Override
-	@SuppressWarnings("unchecked")
 	public String toJSONString() {
-		return ((Function<Number, String>) JSONSystem.getWriter()).apply(value());
+		return JSONNumberWriter.toString(value());
+	}
+	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		generator.value(value());
+	}
+	
+	/**
+	 * Returns a {@link JSONNumber} that stores {@code value} as an {@code int}. Its {@link #value()} is an {@link Integer}.
+	 * 
+	 * @param value
+	 *            the value to wrap
+	 * @return a {@link JSONNumber} that represents {@code value}
+	 */
+	public static JSONNumber<Integer> valueOf(int value) {
+		return new IntNumber(value);
+	}
+	
+	/**
+	 * Returns a {@link JSONNumber} that stores {@code value} as a {@code long}. Its {@link #value()} is a {@link Long}.
+	 * 
+	 * @param value
+	 *            the value to wrap
+	 * @return a {@link JSONNumber} that represents {@code value}
+	 */
+	public static JSONNumber<Long> valueOf(long value) {
+		return new LongNumber(value);
+	}
+	
+	/**
+	 * Returns a {@link JSONNumber} that stores {@code value} as a {@code double}. Its {@link #value()} is a {@link Double}.
+	 * 
+	 * @param value
+	 *            the value to wrap
+	 * @return a {@link JSONNumber} that represents {@code value}
+	 */
+	public static JSONNumber<Double> valueOf(double value) {
+		return new DoubleNumber(value);
+	}
+	
+	private static final class IntNumber extends JSONNumber<Integer> {
+		private final int value;
+		
+		IntNumber(int value) {
+			this.value = value;
+		}
+		
+		@Override
+		public Integer value() {
+			return value;
+		}
+		
+		@Override
+		public int intValue() {
+			return value;
+		}
+		
+		@Override
+		public long longValue() {
+			return value;
+		}
+		
+		@Override
+		public double doubleValue() {
+			return value;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Integer.hashCode(value);
+		}
+		
+		@Override
+		public JSONNumber<Integer> deepCopy() {
+			return this; //Immutable
+		}
+		
+		@Override
+		public void writeJSON(JSONGenerator generator) throws IOException {
+			generator.value(value);
+		}
+	}
+	
+	private static final class LongNumber extends JSONNumber<Long> {
+		private final long value;
+		
+		LongNumber(long value) {
+			this.value = value;
+		}
+		
+		@Override
+		public Long value() {
+			return value;
+		}
+		
+		@Override
+		public int intValue() {
+			return (int) value;
+		}
+		
+		@Override
+		public long longValue() {
+			return value;
+		}
+		
+		@Override
+		public double doubleValue() {
+			return value;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Long.hashCode(value);
+		}
+		
+		@Override
+		public JSONNumber<Long> deepCopy() {
+			return this; //Immutable
+		}
+		
+		@Override
+		public void writeJSON(JSONGenerator generator) throws IOException {
+			generator.value(value);
+		}
+	}
+	
+	private static final class DoubleNumber extends JSONNumber<Double> {
+		private final double value;
+		
+		DoubleNumber(double value) {
+			this.value = value;
+		}
+		
+		@Override
+		public Double value() {
+			return value;
+		}
+		
+		@Override
+		public int intValue() {
+			return (int) value;
+		}
+		
+		@Override
+		public long longValue() {
+			return (long) value;
+		}
+		
+		@Override
+		public double doubleValue() {
+			return value;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Double.hashCode(value);
+		}
+		
+		@Override
+		public JSONNumber<Double> deepCopy() {
+			return this; //Immutable
+		}
+		
+		@Override
+		public void writeJSON(JSONGenerator generator) throws IOException {
+			generator.value(value);
+		}
 	}
 }
@@ -0,0 +1,244 @@
+package toberumono.json;
+
+import java.math.BigInteger;
+
+/**
+ * The library's built-in number parser, which is used whenever the reader set via
+ * {@link JSONSystem#setNumberHandlers(Class, java.util.function.Function, java.util.function.Function)} is {@link JSONSystem#defaultReader}.
+ * <br>
+ * It reads numbers straight out of the {@code char[]} buffers of the parser. Integers that fit in an {@code int} are returned as
+ * {@link Integer Integers} and everything else is returned as a {@link Double}.<br>
+ * Decimals are converted with the Eisel-Lemire algorithm (as described in Daniel Lemire's "Number Parsing at a Gigabyte per Second"), which
+ * is exact whenever the significand fits in 19 digits. Longer significands are truncated to 19 digits, and if rounding the truncated value up
+ * and down would give different results, the number is handed to {@link Double#parseDouble(String)} instead. Invalid input is reported by
+ * returning {@code null} rather than by throwing, so neither valid nor invalid numbers involve exceptions.
+ * 
+ * @author Toberumono
+ */
+final class JSONNumberReader {
+	private static final int SMALLEST_POWER = -342, LARGEST_POWER = 308, MANTISSA_BITS = 52, MINIMUM_EXPONENT = -1023, INFINITE_POWER = 0x7FF;
+	private static final int MAX_DIGITS = 19;
+	private static final double[] EXACT_POWERS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+			1e18, 1e19, 1e20, 1e21, 1e22};
+	
+	private JSONNumberReader() {/* This class should not be initialized */}
+	
+	/**
+	 * Implements {@link JSONSystem#defaultReader}. Text that is not a plain decimal number is passed to {@link Double#parseDouble(String)}
+	 * so that the forms that it accepts (such as {@code Infinity}) are still accepted.
+	 * 
+	 * @param text
+	 *            the number's text
+	 * @return an {@link Integer} if the text is an integer that fits in an {@code int}, otherwise a {@link Double}
+	 * @throws NumberFormatException
+	 *             if {@code text} is not a valid number
+	 */
+	static Number read(String text) {
+		Number number = read(text.toCharArray(), 0, text.length());
+		return number != null ? number : Double.parseDouble(text);
+	}
+	
+	/**
+	 * Parses a number as {@link JSONSystem#defaultReader} would.
+	 * 
+	 * @param text
+	 *            the array containing the number's text
+	 * @param offset
+	 *            the index of the first character of the number
+	 * @param length
+	 *            the number of characters in the number
+	 * @return an {@link Integer} if the text is an integer that fits in an {@code int}, a {@link Double} if it is any other decimal number, or
+	 *         {@code null} if it is not a valid number
+	 */
+	static Number read(char[] text, int offset, int length) {
+		int end = offset + length, i = offset;
+		boolean negative = false;
+		if (i < end && (text[i] == '-' || text[i] == '+'))
+			negative = text[i++] == '-';
+		long w = 0;
+		int digits = 0, significant = 0, dropped = 0, exponent = 0;
+		boolean integral = true;
+		for (; i < end && text[i] >= '0' && text[i] <= '9'; i++, digits++) {
+			if (significant < MAX_DIGITS) {
+				if ((w = w * 10 + (text[i] - '0')) != 0)
+					significant++;
+			}
+			else
+				dropped++;
+		}
+		if (i < end && text[i] == '.') {
+			integral = false;
+			for (i++; i < end && text[i] >= '0' && text[i] <= '9'; i++, digits++) {
+				if (significant < MAX_DIGITS) {
+					if ((w = w * 10 + (text[i] - '0')) != 0)
+						significant++;
+					exponent--;
+				}
+			}
+		}
+		if (digits == 0)
+			return null;
+		if (i < end && (text[i] == 'e' || text[i] == 'E')) {
+			integral = false;
+			boolean negativeExponent = false;
+			if (++i < end && (text[i] == '-' || text[i] == '+'))
+				negativeExponent = text[i++] == '-';
+			int start = i, value = 0;
+			for (; i < end && text[i] >= '0' && text[i] <= '9'; i++)
+				if (value < 100_000) //Anything larger than this is already out of range
+					value = value * 10 + (text[i] - '0');
+			if (i == start)
+				return null;
+			exponent += negativeExponent ? -value : value;
+		}
+		if (i != end)
+			return null;
+		if (integral && dropped == 0 && (negative ? w <= 1L << 31 : w < 1L << 31) && w >= 0)
+			return (int) (negative ? -w : w);
+		double value = toDouble(w, exponent + dropped, significant == MAX_DIGITS && hasMoreDigits(text, offset, end));
+		if (Double.isNaN(value)) //A hard case
+			return Double.parseDouble(new String(text, offset, length));
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Checks whether text has the syntax that {@link #read(char[], int, int)} accepts without converting it.
+	 * 
+	 * @param text
+	 *            the array containing the number's text
+	 * @param offset
+	 *            the index of the first character of the number
+	 * @param length
+	 *            the number of characters in the number
+	 * @return {@code true} if the text is a valid number
+	 */
+	static boolean isValid(char[] text, int offset, int length) {
+		int end = offset + length, i = offset, digits = 0;
+		if (i < end && (text[i] == '-' || text[i] == '+'))
+			i++;
+		for (; i < end && text[i] >= '0' && text[i] <= '9'; i++)
+			digits++;
+		if (i < end && text[i] == '.')
+			for (i++; i < end && text[i] >= '0' && text[i] <= '9'; i++)
+				digits++;
+		if (digits == 0)
+			return false;
+		if (i < end && (text[i] == 'e' || text[i] == 'E')) {
+			if (++i < end && (text[i] == '-' || text[i] == '+'))
+				i++;
+			int start = i;
+			while (i < end && text[i] >= '0' && text[i] <= '9')
+				i++;
+			if (i == start)
+				return false;
+		}
+		return i == end;
+	}
+	
+	/**
+	 * Digits in the fractional part are not counted as dropped, so this checks whether any non-zero digits were skipped after the first 19
+	 * significant ones.
+	 */
+	private static boolean hasMoreDigits(char[] text, int offset, int end) {
+		int significant = 0;
+		for (int i = offset; i < end && text[i] != 'e' && text[i] != 'E'; i++) {
+			char c = text[i];
+			if (c >= '0' && c <= '9' && (significant > 0 || c != '0') && ++significant > MAX_DIGITS && c != '0')
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Computes w&times;10<sup>q</sup>, treating {@code w} as unsigned.
+	 * 
+	 * @param truncated
+	 *            whether digits were dropped from the end of {@code w}, in which case the true value lies in (w, w + 1)&times;10<sup>q</sup>
+	 * @return the closest {@code double} or {@link Double#NaN} if the result could not be determined without the full text
+	 */
+	static double toDouble(long w, int q, boolean truncated) {
+		if (!truncated && w >= 0 && w <= 1L << 53 && -22 <= q && q <= 22) //Clinger's fast path: both operands are exact, so one rounding is exact
+			return q >= 0 ? w * EXACT_POWERS[q] : w / EXACT_POWERS[-q];
+		long bits = eiselLemire(w, q);
+		if (truncated && bits != eiselLemire(w + 1, q))
+			return Double.NaN;
+		return Double.longBitsToDouble(bits);
+	}
+	
+	/**
+	 * @return the bits of the {@code double} closest to w&times;10<sup>q</sup>
+	 */
+	private static long eiselLemire(long w, int q) {
+		if (w == 0 || q < SMALLEST_POWER)
+			return 0;
+		if (q > LARGEST_POWER)
+			return (long) INFINITE_POWER << MANTISSA_BITS;
+		int lz = Long.numberOfLeadingZeros(w);
+		w <<= lz;
+		int index = 2 * (q - SMALLEST_POWER);
+		long high = unsignedMultiplyHigh(w, Powers.table[index]), low = w * Powers.table[index];
+		long precisionMask = -1L >>> (MANTISSA_BITS + 3);
+		if ((high & precisionMask) == precisionMask) { //The lower bits might be affected by the rest of the power of 5, so include it
+			long secondHigh = unsignedMultiplyHigh(w, Powers.table[index + 1]);
+			low += secondHigh;
+			if (Long.compareUnsigned(secondHigh, low) > 0)
+				high++;
+		}
+		int upperBit = (int) (high >>> 63), shift = upperBit + 64 - MANTISSA_BITS - 3;
+		long mantissa = high >>> shift;
+		int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz - MINIMUM_EXPONENT;
+		if (power2 <= 0) { //Subnormal
+			if (-power2 + 1 >= 64)
+				return 0;
+			mantissa >>>= -power2 + 1;
+			mantissa += mantissa & 1;
+			mantissa >>>= 1;
+			power2 = mantissa < 1L << MANTISSA_BITS ? 0 : 1;
+			return (long) power2 << MANTISSA_BITS | mantissa & ((1L << MANTISSA_BITS) - 1);
+		}
+		if ((low == 0 || low == 1) && q >= -4 && q <= 23 && (mantissa & 3) == 1 && mantissa << shift == high)
+			mantissa &= ~1L; //Exactly halfway between two doubles, so round to even instead of up
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if (mantissa >= 2L << MANTISSA_BITS) {
+			mantissa = 1L << MANTISSA_BITS;
+			power2++;
+		}
+		mantissa &= ~(1L << MANTISSA_BITS);
+		if (power2 >= INFINITE_POWER)
+			return (long) INFINITE_POWER << MANTISSA_BITS;
+		return (long) power2 << MANTISSA_BITS | mantissa;
+	}
+	
+	private static long unsignedMultiplyHigh(long x, long y) {
+		return JSONNumberWriter.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+	
+	/**
+	 * Holds the 128-bit approximations of 5<sup>q</sup> for q in [-342, 308], normalized so that their highest bit is set. They are only
+	 * computed the first time that a number which is not handled by the fast path is parsed.
+	 */
+	private static final class Powers {
+		static final long[] table = new long[(LARGEST_POWER - SMALLEST_POWER + 1) * 2];
+		
+		static {
+			BigInteger five = BigInteger.valueOf(5), power = five, top = BigInteger.ONE.shiftLeft(128);
+			for (int q = -1; q >= SMALLEST_POWER; q--, power = power.multiply(five)) { //power = 5^-q
+				int z = power.subtract(BigInteger.ONE).bitLength(); //The smallest z such that 2^z >= 5^-q
+				int b = q >= -27 ? z + 127 : 2 * z + 128;
+				BigInteger c = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+				if (c.compareTo(top) >= 0)
+					c = c.shiftRight(c.bitLength() - 128);
+				set(q, c);
+			}
+			power = BigInteger.ONE;
+			for (int q = 0; q <= LARGEST_POWER; q++, power = power.multiply(five))
+				set(q, power.shiftLeft(128 - power.bitLength()));
+		}
+		
+		private static void set(int q, BigInteger value) {
+			table[2 * (q - SMALLEST_POWER)] = value.shiftRight(64).longValue();
+			table[2 * (q - SMALLEST_POWER) + 1] = value.longValue();
+		}
+	}
+}
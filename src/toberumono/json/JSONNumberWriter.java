@@ -0,0 +1,405 @@
+package toberumono.json;
+
+import java.math.BigInteger;
+import java.util.function.Function;
+
+/**
+ * The library's built-in number formatter, which is used whenever the writer set via
+ * {@link JSONSystem#setNumberHandlers(Class, Function, Function)} is {@link JSONSystem#defaultWriter}.<br>
+ * {@code double} and {@code float} values are written with the shortest decimal that parses back to the same value (using Raffaello
+ * Giulietti's Schubfach algorithm), and integral values are written without going through {@link Long#toString(long)}. All of the methods
+ * write into a caller-supplied {@code char[]}, so formatting a number does not allocate.<br>
+ * The layout matches {@link Double#toString(double)}: values in [10<sup>-3</sup>, 10<sup>7</sup>) are written as plain decimals that always
+ * have a fractional part (so that whole numbers are still read back as floating-point values), and everything else is written in scientific
+ * notation. Unlike {@link Double#toString(double)}, a single-digit significand is not padded with {@code ".0"} in scientific notation, so
+ * 10<sup>10</sup> is written as {@code 1E10} instead of {@code 1.0E10}.
+ * 
+ * @author Toberumono
+ */
+final class JSONNumberWriter {
+	/**
+	 * The most characters that any of the format methods write.
+	 */
+	static final int MAX_LENGTH = 26;
+	
+	private static final long MASK_63 = (1L << 63) - 1, MASK_32 = (1L << 32) - 1;
+	private static final char[] LONG_MIN = "-9223372036854775808".toCharArray();
+	private static final char[] DIGIT_PAIRS = new char[200];
+	
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGIT_PAIRS[i * 2] = (char) ('0' + i / 10);
+			DIGIT_PAIRS[i * 2 + 1] = (char) ('0' + i % 10);
+		}
+	}
+	
+	private JSONNumberWriter() {/* This class should not be initialized */}
+	
+	/**
+	 * Formats {@code value} with the current number writer.
+	 * 
+	 * @param value
+	 *            the number to format
+	 * @return the JSON text for {@code value}
+	 */
+	@SuppressWarnings("unchecked")
+	static String toString(Number value) {
+		Function<? extends Object, String> writer = JSONSystem.getWriter();
+		if (writer != JSONSystem.defaultWriter)
+			return ((Function<Number, String>) writer).apply(value);
+		char[] buffer = new char[MAX_LENGTH];
+		int length = format(value, buffer, 0);
+		return length < 0 ? value.toString() : new String(buffer, 0, length);
+	}
+	
+	/**
+	 * Formats {@link Double}, {@link Float}, {@link Long}, {@link Integer}, {@link Short}, and {@link Byte} values.
+	 * 
+	 * @param value
+	 *            the number to format
+	 * @param buffer
+	 *            the buffer into which the characters should be written. It must have room for {@link #MAX_LENGTH} characters after
+	 *            {@code offset}
+	 * @param offset
+	 *            the index at which to start writing
+	 * @return the index just past the last character that was written or -1 if {@code value} is of another type
+	 */
+	static int format(Number value, char[] buffer, int offset) {
+		if (value instanceof Double)
+			return format(value.doubleValue(), buffer, offset);
+		if (value instanceof Float)
+			return format(value.floatValue(), buffer, offset);
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+			return format(value.longValue(), buffer, offset);
+		return -1;
+	}
+	
+	/**
+	 * Writes the decimal form of {@code value}.
+	 * 
+	 * @param value
+	 *            the value to format
+	 * @param buffer
+	 *            the buffer into which the characters should be written
+	 * @param offset
+	 *            the index at which to start writing
+	 * @return the index just past the last character that was written
+	 */
+	static int format(long value, char[] buffer, int offset) {
+		if (value == Long.MIN_VALUE) {
+			System.arraycopy(LONG_MIN, 0, buffer, offset, LONG_MIN.length);
+			return offset + LONG_MIN.length;
+		}
+		if (value < 0) {
+			buffer[offset++] = '-';
+			value = -value;
+		}
+		int end = offset + length(value);
+		writeDigits(value, buffer, end);
+		return end;
+	}
+	
+	/**
+	 * Writes the shortest decimal that parses back to {@code value}.
+	 * 
+	 * @param value
+	 *            the value to format
+	 * @param buffer
+	 *            the buffer into which the characters should be written
+	 * @param offset
+	 *            the index at which to start writing
+	 * @return the index just past the last character that was written
+	 */
+	static int format(double value, char[] buffer, int offset) {
+		long bits = Double.doubleToRawLongBits(value);
+		long t = bits & DoubleFormat.T_MASK;
+		int bq = (int) (bits >>> DoubleFormat.P - 1) & DoubleFormat.BQ_MASK;
+		if (bq == DoubleFormat.BQ_MASK)
+			return special(t != 0, bits < 0, buffer, offset);
+		if (bits < 0)
+			buffer[offset++] = '-';
+		if (bq != 0) {
+			int mq = -DoubleFormat.Q_MIN + 1 - bq;
+			long c = DoubleFormat.C_MIN | t;
+			if (0 < mq & mq < DoubleFormat.P) { //Integers below 2^53 are their own shortest decimals
+				long f = c >> mq;
+				if (f << mq == c)
+					return layout(f, 0, buffer, offset);
+			}
+			return DoubleFormat.toDecimal(-mq, c, 0, buffer, offset);
+		}
+		if (t != 0)
+			return t < DoubleFormat.C_TINY ? DoubleFormat.toDecimal(DoubleFormat.Q_MIN, 10 * t, -1, buffer, offset)
+					: DoubleFormat.toDecimal(DoubleFormat.Q_MIN, t, 0, buffer, offset);
+		return layout(0, 0, buffer, offset);
+	}
+	
+	/**
+	 * Writes the shortest decimal that parses back to {@code value} as a {@code float}.
+	 * 
+	 * @param value
+	 *            the value to format
+	 * @param buffer
+	 *            the buffer into which the characters should be written
+	 * @param offset
+	 *            the index at which to start writing
+	 * @return the index just past the last character that was written
+	 */
+	static int format(float value, char[] buffer, int offset) {
+		int bits = Float.floatToRawIntBits(value);
+		int t = bits & FloatFormat.T_MASK;
+		int bq = (bits >>> FloatFormat.P - 1) & FloatFormat.BQ_MASK;
+		if (bq == FloatFormat.BQ_MASK)
+			return special(t != 0, bits < 0, buffer, offset);
+		if (bits < 0)
+			buffer[offset++] = '-';
+		if (bq != 0) {
+			int mq = -FloatFormat.Q_MIN + 1 - bq;
+			int c = FloatFormat.C_MIN | t;
+			if (0 < mq & mq < FloatFormat.P) {
+				int f = c >> mq;
+				if (f << mq == c)
+					return layout(f, 0, buffer, offset);
+			}
+			return FloatFormat.toDecimal(-mq, c, 0, buffer, offset);
+		}
+		if (t != 0)
+			return t < FloatFormat.C_TINY ? FloatFormat.toDecimal(FloatFormat.Q_MIN, 10 * t, -1, buffer, offset)
+					: FloatFormat.toDecimal(FloatFormat.Q_MIN, t, 0, buffer, offset);
+		return layout(0, 0, buffer, offset);
+	}
+	
+	private static int special(boolean nan, boolean negative, char[] buffer, int offset) {
+		String text = nan ? "NaN" : negative ? "-Infinity" : "Infinity";
+		text.getChars(0, text.length(), buffer, offset);
+		return offset + text.length();
+	}
+	
+	/**
+	 * Writes {@code f}&times;10<sup>{@code e}</sup> in the layout described in the class documentation.
+	 */
+	private static int layout(long f, int e, char[] buffer, int offset) {
+		if (f == 0) {
+			buffer[offset] = '0';
+			buffer[offset + 1] = '.';
+			buffer[offset + 2] = '0';
+			return offset + 3;
+		}
+		while (f % 10 == 0) {
+			f /= 10;
+			e++;
+		}
+		int length = length(f), point = length + e; //The value is 0.[digits] * 10^point
+		if (0 < point && point <= 7) {
+			if (length <= point) {
+				writeDigits(f, buffer, offset += length);
+				for (int i = length; i < point; i++)
+					buffer[offset++] = '0';
+				buffer[offset++] = '.';
+				buffer[offset++] = '0';
+				return offset;
+			}
+			int end = offset + length + 1;
+			writeDigits(f, buffer, end);
+			System.arraycopy(buffer, offset + 1, buffer, offset, point); //Shift the integer part left to make room for the point
+			buffer[offset + point] = '.';
+			return end;
+		}
+		if (-3 < point && point <= 0) {
+			buffer[offset++] = '0';
+			buffer[offset++] = '.';
+			for (int i = point; i < 0; i++)
+				buffer[offset++] = '0';
+			writeDigits(f, buffer, offset += length);
+			return offset;
+		}
+		int end = offset + length + (length > 1 ? 1 : 0);
+		writeDigits(f, buffer, end);
+		if (length > 1) {
+			buffer[offset] = buffer[offset + 1];
+			buffer[offset + 1] = '.';
+		}
+		buffer[end++] = 'E';
+		return format((long) (point - 1), buffer, end);
+	}
+	
+	private static int length(long value) {
+		int length = 1;
+		for (long limit = 10; length < 19 && value >= limit; limit *= 10)
+			length++;
+		return length;
+	}
+	
+	/**
+	 * Writes the digits of the non-negative {@code value} so that the last digit is at {@code end - 1}.
+	 */
+	private static void writeDigits(long value, char[] buffer, int end) {
+		while (value >= 100) {
+			int pair = (int) (value % 100) * 2;
+			value /= 100;
+			buffer[--end] = DIGIT_PAIRS[pair + 1];
+			buffer[--end] = DIGIT_PAIRS[pair];
+		}
+		if (value >= 10) {
+			buffer[--end] = DIGIT_PAIRS[(int) value * 2 + 1];
+			buffer[--end] = DIGIT_PAIRS[(int) value * 2];
+		}
+		else
+			buffer[--end] = (char) ('0' + value);
+	}
+	
+	/**
+	 * @return &lfloor;{@code e}&middot;log<sub>10</sub>2&rfloor; for |{@code e}| &le; 5456721
+	 */
+	private static int flog10pow2(int e) {
+		return (int) (e * 661_971_961_083L >> 41);
+	}
+	
+	/**
+	 * @return &lfloor;log<sub>10</sub>(3/4&middot;2<sup>{@code e}</sup>)&rfloor; for |{@code e}| &le; 2^18
+	 */
+	private static int flog10threeQuartersPow2(int e) {
+		return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+	}
+	
+	/**
+	 * @return &lfloor;{@code e}&middot;log<sub>2</sub>10&rfloor; for |{@code e}| &le; 1233
+	 */
+	private static int flog2pow10(int e) {
+		return (int) (e * 913_124_641_741L >> 38);
+	}
+	
+	/**
+	 * {@link Math#multiplyHigh(long, long)} is not available in Java 8.
+	 */
+	static long multiplyHigh(long x, long y) {
+		long x1 = x >> 32, x2 = x & MASK_32, y1 = y >> 32, y2 = y & MASK_32;
+		long z2 = x2 * y2;
+		long t = x1 * y2 + (z2 >>> 32);
+		long z1 = (t & MASK_32) + x2 * y1;
+		return x1 * y1 + (t >> 32) + (z1 >> 32);
+	}
+	
+	/**
+	 * Holds the 126-bit approximations of the powers of ten that Schubfach multiplies by. They are only computed the first time that a
+	 * floating-point value that is not an integer is formatted.
+	 */
+	private static final class Powers {
+		static final int K_MIN = -324, K_MAX = 292;
+		static final long[] g = new long[(K_MAX - K_MIN + 1) * 2];
+		
+		static {
+			BigInteger five = BigInteger.valueOf(5), power = BigInteger.ONE;
+			for (int k = 0; k >= K_MIN; k--, power = power.multiply(five)) //power = 5^-k
+				set(k, power.shiftLeft(shift(k)));
+			power = five;
+			for (int k = 1; k <= K_MAX; k++, power = power.multiply(five)) //power = 5^k
+				set(k, BigInteger.ONE.shiftLeft(shift(k)).divide(power));
+		}
+		
+		/**
+		 * g = &lfloor;10<sup>-k</sup>&middot;2<sup>-r</sup>&rfloor; + 1 where r = flog2pow10(-k) - 125, so 2<sup>125</sup> &le; g &lt;
+		 * 2<sup>126</sup>. 10<sup>-k</sup>&middot;2<sup>-r</sup> = 5<sup>-k</sup>&middot;2<sup>-k-r</sup>, and this returns -k-r.
+		 */
+		private static int shift(int k) {
+			return -k - (flog2pow10(-k) - 125);
+		}
+		
+		private static void set(int k, BigInteger floor) {
+			BigInteger value = floor.add(BigInteger.ONE);
+			g[(k - K_MIN) * 2] = value.shiftRight(63).longValue();
+			g[(k - K_MIN) * 2 + 1] = value.longValue() & MASK_63;
+		}
+		
+		static long g1(int k) {
+			return g[(k - K_MIN) * 2];
+		}
+		
+		static long g0(int k) {
+			return g[(k - K_MIN) * 2 + 1];
+		}
+	}
+	
+	private static final class DoubleFormat {
+		static final int P = 53, W = 11, Q_MIN = (-1 << W - 1) - P + 3, BQ_MASK = (1 << W) - 1;
+		static final long C_MIN = 1L << P - 1, T_MASK = C_MIN - 1, C_TINY = 3;
+		
+		static int toDecimal(int q, long c, int dk, char[] buffer, int offset) {
+			int out = (int) c & 0x1;
+			long cb = c << 2, cbr = cb + 2, cbl;
+			int k;
+			if (c != C_MIN | q == Q_MIN) {
+				cbl = cb - 2;
+				k = flog10pow2(q);
+			}
+			else { //The gap below c is half of the gap above it
+				cbl = cb - 1;
+				k = flog10threeQuartersPow2(q);
+			}
+			int h = q + flog2pow10(-k) + 2;
+			long g1 = Powers.g1(k), g0 = Powers.g0(k);
+			long vb = rop(g1, g0, cb << h), vbl = rop(g1, g0, cbl << h), vbr = rop(g1, g0, cbr << h);
+			long s = vb >> 2;
+			if (s >= 100) { //Try for one fewer digit first
+				long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4), tp10 = sp10 + 10;
+				boolean upin = vbl + out <= sp10 << 2, wpin = (tp10 << 2) + out <= vbr;
+				if (upin != wpin)
+					return layout(upin ? sp10 : tp10, k, buffer, offset);
+			}
+			long t = s + 1;
+			boolean uin = vbl + out <= s << 2, win = (t << 2) + out <= vbr;
+			if (uin != win)
+				return layout(uin ? s : t, k + dk, buffer, offset);
+			long cmp = vb - (s + t << 1); //Both candidates are in the rounding interval, so pick the closer one
+			return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buffer, offset);
+		}
+		
+		private static long rop(long g1, long g0, long cp) {
+			long x1 = multiplyHigh(g0, cp), y0 = g1 * cp, y1 = multiplyHigh(g1, cp);
+			long z = (y0 >>> 1) + x1;
+			long vbp = y1 + (z >>> 63);
+			return vbp | (z & MASK_63) + MASK_63 >>> 63;
+		}
+	}
+	
+	private static final class FloatFormat {
+		static final int P = 24, W = 8, Q_MIN = (-1 << W - 1) - P + 3, BQ_MASK = (1 << W) - 1, C_MIN = 1 << P - 1, T_MASK = C_MIN - 1,
+				C_TINY = 8;
+		
+		static int toDecimal(int q, int c, int dk, char[] buffer, int offset) {
+			int out = c & 0x1;
+			long cb = (long) c << 2, cbr = cb + 2, cbl;
+			int k;
+			if (c != C_MIN | q == Q_MIN) {
+				cbl = cb - 2;
+				k = flog10pow2(q);
+			}
+			else {
+				cbl = cb - 1;
+				k = flog10threeQuartersPow2(q);
+			}
+			int h = q + flog2pow10(-k) + 33;
+			long g = Powers.g1(k) + 1;
+			int vb = rop(g, cb << h), vbl = rop(g, cbl << h), vbr = rop(g, cbr << h);
+			int s = vb >> 2;
+			if (s >= 100) {
+				int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34), tp10 = sp10 + 10;
+				boolean upin = vbl + out <= sp10 << 2, wpin = (tp10 << 2) + out <= vbr;
+				if (upin != wpin)
+					return layout(upin ? sp10 : tp10, k, buffer, offset);
+			}
+			int t = s + 1;
+			boolean uin = vbl + out <= s << 2, win = (t << 2) + out <= vbr;
+			if (uin != win)
+				return layout(uin ? s : t, k + dk, buffer, offset);
+			int cmp = vb - (s + t << 1);
+			return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buffer, offset);
+		}
+		
+		private static int rop(long g, long cp) {
+			long x1 = multiplyHigh(g, cp);
+			long vbp = x1 >>> 31;
+			return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+		}
+	}
+}
@@ -1,10 +1,12 @@
 package toberumono.json;
 
-import java.util.Iterator;
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import toberumono.json.exceptions.JSONException;
+
 /**
  * Represents a bracketed group of key-value pairs in a JSON file.<br>
  * This does not support {@code null} keys or values.
@@ -21,6 +23,16 @@ public final class JSONObject extends LinkedHashMap<String, JSONData<?>> impleme
 		super();
 	}
 	
+	/**
+	 * Constructs an empty {@link JSONObject} with the specified initial capacity.
+	 * 
+	 * @param initialCapacity
+	 *            the initial capacity of the {@link JSONObject}
+	 */
+	public JSONObject(int initialCapacity) {
+		super(initialCapacity);
+	}
+	
 	/**
 	 * Constructs a new {@link JSONObject} with the key-value pairs specified in {@code m}. Also serves as the copy
 	 * constructor.
@@ -44,15 +56,10 @@ public final class JSONObject extends LinkedHashMap<String, JSONData<?>> impleme
 	public JSONType type() {
 		return JSONType.OBJECT;
 	}
-
+	
 	@Override
 	public JSONObject deepCopy() {
-		JSONObject out = (JSONObject) clone();
-		for (Entry<String, JSONData<?>> element : out.entrySet())
-			out.put(element.getKey(), element.getValue().deepCopy());
-		if (!isModified()) //We can take advantage of out already being flagged as modifiable to avoid having to copy the "modifiable" field
-			out.clearModified();
-		return out;
+		return JSONCopier.copy(this);
 	}
 	
 	@Override
@@ -83,6 +90,90 @@ public final class JSONObject extends LinkedHashMap<String, JSONData<?>> impleme
 		return put(key, JSONSystem.wrap(value));
 	}
 	
+	/**
+	 * Associates {@code value} with {@code key} without boxing it. The value is stored as an {@link Integer}, just as the parser stores
+	 * integers that fit in an {@code int}, so putting a parsed value back into its tree does not flag the tree as modified.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 * @see JSONNumber#valueOf(int)
+	 */
+	public JSONData<?> put(String key, int value) {
+		return put(key, JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Associates {@code value} with {@code key} as a single-character {@link JSONString}. Without this overload, {@code char} values would be
+	 * widened to {@code int} and stored as numbers.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 */
+	public JSONData<?> put(String key, char value) {
+		return put(key, new JSONString(String.valueOf(value)));
+	}
+	
+	/**
+	 * Associates {@code value} with {@code key} without boxing it.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 * @see JSONNumber#valueOf(long)
+	 */
+	public JSONData<?> put(String key, long value) {
+		return put(key, JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Associates {@code value} with {@code key} without boxing it.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 * @see JSONNumber#valueOf(double)
+	 */
+	public JSONData<?> put(String key, double value) {
+		return put(key, JSONNumber.valueOf(value));
+	}
+	
+	/**
+	 * Associates {@code value} with {@code key} as a {@link Float}, so it is written as the shortest decimal that parses back to the same
+	 * {@code float} rather than being widened to a {@code double}.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 */
+	public JSONData<?> put(String key, float value) {
+		return put(key, new JSONNumber<>(value));
+	}
+	
+	/**
+	 * Associates {@code value} with {@code key}.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 */
+	public JSONData<?> put(String key, boolean value) {
+		return put(key, JSONBoolean.valueOf(value));
+	}
+	
 	@Override
 	public JSONData<?> put(String key, JSONData<?> value) {
 		if (key == null || value == null)
@@ -93,6 +184,242 @@ public final class JSONObject extends LinkedHashMap<String, JSONData<?>> impleme
 		return old;
 	}
 	
+	/**
+	 * Associates {@code value} with the canonical instance of {@code key}'s name so that later lookups via {@link #get(JSONKey)} match it by
+	 * identity.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 * @see #put(String, JSONData)
+	 */
+	public JSONData<?> put(JSONKey key, JSONData<?> value) {
+		return put(key.getName(), value);
+	}
+	
+	/**
+	 * This method calls {@link JSONSystem#wrap(Object)} on {@code value}, and assigns the result to {@code key} by forwarding to
+	 * {@link #put(JSONKey, JSONData)}
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be wrapped and associated with the specified key
+	 * @return the previous value associated with key, or null if there was no mapping for key
+	 */
+	public JSONData<?> put(JSONKey key, Object value) {
+		return put(key.getName(), JSONSystem.wrap(value));
+	}
+	
+	/**
+	 * Retrieves the value for {@code key}. If the stored key is the canonical instance of {@code key}'s name (which is the case if it was put
+	 * via a {@link JSONKey} or parsed after the {@link JSONKey} was created), the stored key is matched by identity.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @return the value for {@code key}, or {@code null} if there is no value for {@code key}
+	 */
+	public JSONData<?> get(JSONKey key) {
+		return super.get(key.getName());
+	}
+	
+	/**
+	 * @param key
+	 *            the key to check
+	 * @return {@code true} if this {@link JSONObject} has a value for {@code key}
+	 * @see #get(JSONKey)
+	 */
+	public boolean containsKey(JSONKey key) {
+		return super.containsKey(key.getName());
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as an {@code int} as if by {@link Number#intValue()}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @return the value for {@code key}
+	 * @throws JSONException
+	 *             if there is no value for {@code key} or it is not a {@link JSONNumber}
+	 */
+	public int getInt(String key) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).intValue();
+		throw JSONAccessors.mismatch(value, "a number", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as an {@code int} as if by {@link Number#intValue()}, or {@code defaultValue} if there is no value for
+	 * {@code key} or the value is {@code null}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value for {@code key}
+	 * @return the value for {@code key} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value for {@code key} is neither {@code null} nor a {@link JSONNumber}
+	 */
+	public int getInt(String key, int defaultValue) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).intValue();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a number", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@code long} as if by {@link Number#longValue()}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @return the value for {@code key}
+	 * @throws JSONException
+	 *             if there is no value for {@code key} or it is not a {@link JSONNumber}
+	 */
+	public long getLong(String key) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).longValue();
+		throw JSONAccessors.mismatch(value, "a number", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@code long} as if by {@link Number#longValue()}, or {@code defaultValue} if there is no value
+	 * for {@code key} or the value is {@code null}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value for {@code key}
+	 * @return the value for {@code key} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value for {@code key} is neither {@code null} nor a {@link JSONNumber}
+	 */
+	public long getLong(String key, long defaultValue) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).longValue();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a number", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@code double} as if by {@link Number#doubleValue()}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @return the value for {@code key}
+	 * @throws JSONException
+	 *             if there is no value for {@code key} or it is not a {@link JSONNumber}
+	 */
+	public double getDouble(String key) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).doubleValue();
+		throw JSONAccessors.mismatch(value, "a number", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@code double} as if by {@link Number#doubleValue()}, or {@code defaultValue} if there is no
+	 * value for {@code key} or the value is {@code null}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value for {@code key}
+	 * @return the value for {@code key} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value for {@code key} is neither {@code null} nor a {@link JSONNumber}
+	 */
+	public double getDouble(String key, double defaultValue) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONNumber)
+			return ((JSONNumber<?>) value).doubleValue();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a number", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@code boolean}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @return the value for {@code key}
+	 * @throws JSONException
+	 *             if there is no value for {@code key} or it is not a {@link JSONBoolean}
+	 */
+	public boolean getBoolean(String key) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONBoolean)
+			return ((JSONBoolean) value).value();
+		throw JSONAccessors.mismatch(value, "a boolean", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@code boolean}, or {@code defaultValue} if there is no value for {@code key} or the value is
+	 * {@code null}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value for {@code key}
+	 * @return the value for {@code key} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value for {@code key} is neither {@code null} nor a {@link JSONBoolean}
+	 */
+	public boolean getBoolean(String key, boolean defaultValue) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONBoolean)
+			return ((JSONBoolean) value).value();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a boolean", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@link String}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @return the value for {@code key}
+	 * @throws JSONException
+	 *             if there is no value for {@code key} or it is not a {@link JSONString}
+	 */
+	public String getString(String key) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONString)
+			return ((JSONString) value).value();
+		throw JSONAccessors.mismatch(value, "a string", key);
+	}
+	
+	/**
+	 * Retrieves the value for {@code key} as a {@link String}, or {@code defaultValue} if there is no value for {@code key} or the value is
+	 * {@code null}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value to return if there is no value for {@code key}
+	 * @return the value for {@code key} or {@code defaultValue}
+	 * @throws JSONException
+	 *             if the value for {@code key} is neither {@code null} nor a {@link JSONString}
+	 */
+	public String getString(String key, String defaultValue) {
+		JSONData<?> value = get(key);
+		if (value instanceof JSONString)
+			return ((JSONString) value).value();
+		if (JSONAccessors.isAbsent(value))
+			return defaultValue;
+		throw JSONAccessors.mismatch(value, "a string", key);
+	}
+	
 	@Override
 	public JSONData<?> remove(Object key) {
 		JSONData<?> out = super.remove(key);
@@ -103,35 +430,21 @@ public final class JSONObject extends LinkedHashMap<String, JSONData<?>> impleme
 	
 	@Override
 	public String toJSONString() {
-		if (size() == 0)
-			return "{ }";
-		final StringBuilder sb = new StringBuilder();
-		sb.append('{');
-		Entry<String, JSONData<?>> e;
-		for (Iterator<Entry<String, JSONData<?>>> iter = entrySet().iterator(); iter.hasNext();) {
-			e = iter.next();
-			sb.append(System.lineSeparator()).append(JSONString.toJSONString(e.getKey())).append(" : ").append(e.getValue().toJSONString());
-			if (iter.hasNext())
-				sb.append(',');
-		}
-		return sb.append(System.lineSeparator()).append('}').toString();
+		return JSONGenerator.toJSONString(this, false);
 	}
 	
 	@Override
 	public StringBuilder toFormattedJSON(final StringBuilder sb, String indentation) {
-		if (size() == 0)
-			return sb.append("{ }");
-		String innerIndentation = indentation + JSONSystem.getIndentation();
-		sb.append('{');
-		Entry<String, JSONData<?>> e;
-		for (Iterator<Entry<String, JSONData<?>>> iter = entrySet().iterator(); iter.hasNext();) {
-			e = iter.next();
-			sb.append(System.lineSeparator()).append(innerIndentation).append(JSONString.toJSONString(e.getKey())).append(" : ");
-			e.getValue().toFormattedJSON(sb, innerIndentation);
-			if (iter.hasNext())
-				sb.append(',');
+		try {
+			writeJSON(new JSONGenerator(sb, true, indentation));
 		}
-		return sb.append(System.lineSeparator()).append(indentation).append('}');
+		catch (IOException e) {} //StringBuilders do not throw IOExceptions
+		return sb;
+	}
+	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		generator.tree(this);
 	}
 	
 	/**
@@ -158,6 +471,42 @@ public final class JSONObject extends LinkedHashMap<String, JSONData<?>> impleme
 		return modified;
 	}
 	
+	/**
+	 * Clears the modified flag of this {@link JSONObject} without checking its values. This is only correct when none of its values are
+	 * modified, which is the case while a parser is building the tree from the bottom up.
+	 */
+	void clearOwnModified() {
+		modified = false;
+	}
+	
+	/**
+	 * Sets the modified flag of this {@link JSONObject} to that of {@code source} without checking the values of either.
+	 */
+	void copyOwnModified(JSONObject source) {
+		modified = source.modified;
+	}
+	
+	/**
+	 * @return the modified flag of this {@link JSONObject} without checking its values
+	 */
+	boolean isOwnModified() {
+		return modified;
+	}
+	
+	/**
+	 * Sets the modified flag of this {@link JSONObject} without checking its values.
+	 */
+	void setOwnModified(boolean modified) {
+		this.modified = modified;
+	}
+	
+	/**
+	 * Associates {@code value} with {@code key} without updating the modified flag. Used when the modified flag is set separately.
+	 */
+	void putDirectly(String key, JSONData<?> value) {
+		super.put(key, value);
+	}
+	
 	@Override
 	public void clearModified() {
 		if (!modified)
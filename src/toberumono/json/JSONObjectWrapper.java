@@ -1,11 +1,13 @@
 package toberumono.json;
 
+import java.io.IOException;
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -88,7 +90,7 @@ public final class JSONObjectWrapper<T> implements Map<String, T>, JSONData<JSON
 	
 	@Override
 	public void putAll(Map<? extends String, ? extends T> m) {
-		m.forEach((k, v) -> put(k, JSONSystem.wrap(v)));
+		m.forEach((k, v) -> back.put(k, JSONSystem.wrap(v)));
 	}
 	
 	@Override
@@ -96,6 +98,16 @@ public final class JSONObjectWrapper<T> implements Map<String, T>, JSONData<JSON
 		back.clear();
 	}
 	
+	/**
+	 * {@inheritDoc}<br>
+	 * This iterates over the backing {@link JSONObject} directly, so no {@link Map.Entry Entries} are created.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void forEach(BiConsumer<? super String, ? super T> action) {
+		back.forEach((k, v) -> action.accept(k, (T) v.value()));
+	}
+	
 	@Override
 	public Set<String> keySet() {
 		return back.keySet();
@@ -243,4 +255,14 @@ public final class JSONObjectWrapper<T> implements Map<String, T>, JSONData<JSON
 	public String toJSONString() {
 		return back.toJSONString();
 	}
+	
+	@Override
+	public StringBuilder toFormattedJSON(StringBuilder sb, String indentation) {
+		return back.toFormattedJSON(sb, indentation);
+	}
+	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		back.writeJSON(generator);
+	}
 }
@@ -0,0 +1,373 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A read-through view of a stack of {@link JSONObject JSONObjects} (layers) that behaves like the {@link JSONObject} that would result from
+ * copying the bottom layer and putting each of the layers above it on top, without copying anything.<br>
+ * Keys are resolved from the top layer down. If the first value found for a key is a {@link JSONObject}, the {@link JSONObject JSONObjects}
+ * for that key in the layers below it are overlaid as well (until a layer with a value of a different type is reached), and the result is
+ * returned as a nested {@link JSONOverlay}. Any other value in a higher layer completely replaces the value in the lower layers.<br>
+ * All writes go into the top layer (including writes to nested {@link JSONOverlay JSONOverlays}, which create the {@link JSONObject} that
+ * they write into in the top layer the first time that they are written to), so the lower layers are never modified by the
+ * {@link JSONOverlay}. However, values other than {@link JSONObject JSONObjects} are returned as-is, so a {@link JSONArray} that is
+ * returned from a lower layer should be replaced via {@link #put(String, JSONData)} rather than modified in place.<br>
+ * Keys are iterated in the order in which they first appear when going from the bottom layer up, which is the order that they would have in
+ * the equivalent {@link JSONObject}. Use {@link #flatten()} to create that {@link JSONObject}.<br>
+ * {@link JSONOverlay JSONOverlays} can be passed to {@link JSONSystem#diff(JSONData, JSONData)} and {@link JSONSystem#patch(JSONData, JSONArray)}.
+ * Patches write into the top layer, so a patch that removes a key that is also in a lower layer fails.<br>
+ * Like {@link JSONObject}, this is not thread-safe.
+ * 
+ * @author Toberumono
+ */
+public final class JSONOverlay extends AbstractMap<String, JSONData<?>> implements JSONData<Map<String, JSONData<?>>>, ModifiableJSONData {
+	/**
+	 * The layers from the top down. The top layer is {@code null} in a nested {@link JSONOverlay} until the first write.
+	 */
+	private final JSONObject[] layers;
+	final JSONOverlay parent;
+	private final String key;
+	private Set<Entry<String, JSONData<?>>> entrySet = null;
+	
+	/**
+	 * Constructs a {@link JSONOverlay} from the given layers.
+	 * 
+	 * @param top
+	 *            the top layer, into which all writes go
+	 * @param lower
+	 *            the lower layers, from highest to lowest priority (e.g. the site and then the defaults)
+	 */
+	public JSONOverlay(JSONObject top, JSONObject... lower) {
+		layers = new JSONObject[lower.length + 1];
+		layers[0] = Objects.requireNonNull(top, "The top layer cannot be null");
+		for (int i = 0; i < lower.length; i++)
+			layers[i + 1] = Objects.requireNonNull(lower[i], "The layers cannot be null");
+		parent = null;
+		key = null;
+	}
+	
+	/**
+	 * Constructs a {@link JSONOverlay} from the given layers.
+	 * 
+	 * @param layers
+	 *            the layers from highest to lowest priority. The first layer is the top layer, into which all writes go
+	 * @throws IllegalArgumentException
+	 *             if {@code layers} is empty
+	 */
+	public JSONOverlay(List<JSONObject> layers) {
+		if (layers.isEmpty())
+			throw new IllegalArgumentException("A JSONOverlay must have at least one layer");
+		this.layers = new JSONObject[layers.size()];
+		for (int i = 0; i < this.layers.length; i++)
+			this.layers[i] = Objects.requireNonNull(layers.get(i), "The layers cannot be null");
+		parent = null;
+		key = null;
+	}
+	
+	private JSONOverlay(JSONObject[] layers, JSONOverlay parent, String key) {
+		this.layers = layers;
+		this.parent = parent;
+		this.key = key;
+	}
+	
+	/**
+	 * @return {@code value} as a {@link JSONObject} if it is a {@link JSONObject} or a {@link JSONObjectWrapper}, otherwise {@code null}
+	 */
+	private static JSONObject asObject(JSONData<?> value) {
+		if (value instanceof JSONObject)
+			return (JSONObject) value;
+		if (value instanceof JSONObjectWrapper)
+			return ((JSONObjectWrapper<?>) value).value();
+		return null;
+	}
+	
+	/**
+	 * @return the top layer, creating it in the parent's top layer if this is a nested {@link JSONOverlay} that has not been written to yet
+	 */
+	JSONObject top() {
+		if (layers[0] == null) {
+			JSONObject parentTop = parent.top(), existing = asObject(parentTop.get(key));
+			if (existing == null)
+				parentTop.put(key, existing = new JSONObject());
+			layers[0] = existing;
+		}
+		return layers[0];
+	}
+	
+	/**
+	 * @return the number of layers in this {@link JSONOverlay}
+	 */
+	public int getLayerCount() {
+		return layers.length;
+	}
+	
+	/**
+	 * @param index
+	 *            the index of the layer, where 0 is the top layer
+	 * @return the layer at {@code index}. If this is a nested {@link JSONOverlay}, this can be {@code null} if the corresponding layer of the
+	 *         parent does not have a {@link JSONObject} for this {@link JSONOverlay JSONOverlay's} key
+	 */
+	public JSONObject getLayer(int index) {
+		return layers[index];
+	}
+	
+	@Override
+	public JSONOverlay value() {
+		return this;
+	}
+	
+	@Override
+	public JSONType type() {
+		return JSONType.OBJECT;
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		for (JSONObject layer : layers)
+			if (layer != null && layer.containsKey(key))
+				return true;
+		return false;
+	}
+	
+	@Override
+	public JSONData<?> get(Object key) {
+		for (int i = 0; i < layers.length; i++) {
+			if (layers[i] == null || !layers[i].containsKey(key))
+				continue;
+			JSONData<?> value = layers[i].get(key);
+			JSONObject object = asObject(value);
+			if (object == null)
+				return value;
+			int end = i + 1;
+			while (end < layers.length && (layers[end] == null || !layers[end].containsKey(key) || asObject(layers[end].get(key)) != null))
+				end++;
+			if (i == 0 && !hasObject(key, 1, end)) //Only the top layer has a JSONObject for key, so writes into it are already correct
+				return value;
+			JSONObject[] nested = new JSONObject[end];
+			for (int j = i; j < end; j++)
+				nested[j] = layers[j] == null ? null : asObject(layers[j].get(key));
+			return new JSONOverlay(nested, this, (String) key);
+		}
+		return null;
+	}
+	
+	private boolean hasObject(Object key, int from, int to) {
+		for (int i = from; i < to; i++)
+			if (layers[i] != null && asObject(layers[i].get(key)) != null)
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Associates {@code value} with {@code key} in the top layer.
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be associated with the specified key
+	 * @return the previous value associated with key in the top layer, or {@code null} if the top layer had no mapping for key. Values in
+	 *         the lower layers are not affected.
+	 */
+	@Override
+	public JSONData<?> put(String key, JSONData<?> value) {
+		return top().put(key, value);
+	}
+	
+	/**
+	 * This method calls {@link JSONSystem#wrap(Object)} on {@code value}, and assigns the result to {@code key} by forwarding to
+	 * {@link #put(String, JSONData)}
+	 * 
+	 * @param key
+	 *            key with which the specified value is to be associated
+	 * @param value
+	 *            value to be wrapped and associated with the specified key
+	 * @return the previous value associated with key in the top layer, or {@code null} if the top layer had no mapping for key
+	 * @see #put(String, JSONData)
+	 */
+	public JSONData<?> put(String key, Object value) {
+		return put(key, JSONSystem.wrap(value));
+	}
+	
+	/**
+	 * Removes {@code key} from the top layer.<br>
+	 * <b>The lower layers are not modified, so if any of them has a value for {@code key}, {@code key} will still be present in this
+	 * {@link JSONOverlay}.</b> To hide a value from a lower layer, put a different value for its key instead.
+	 * 
+	 * @param key
+	 *            the key to remove
+	 * @return the value that was associated with {@code key} in the top layer, or {@code null} if there was none
+	 */
+	@Override
+	public JSONData<?> remove(Object key) {
+		return layers[0] == null ? null : layers[0].remove(key);
+	}
+	
+	/**
+	 * Removes all of the values in the top layer.<br>
+	 * <b>The lower layers are not modified.</b>
+	 */
+	@Override
+	public void clear() {
+		if (layers[0] != null)
+			layers[0].clear();
+	}
+	
+	@Override
+	public Set<Entry<String, JSONData<?>>> entrySet() {
+		Set<Entry<String, JSONData<?>>> es;
+		return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+	}
+	
+	/**
+	 * @return {@code true} if {@code key} does not appear in any of the layers below the layer at {@code index}
+	 */
+	private boolean firstAppearance(String key, int index) {
+		for (int i = index + 1; i < layers.length; i++)
+			if (layers[i] != null && layers[i].containsKey(key))
+				return false;
+		return true;
+	}
+	
+	final class EntrySet extends AbstractSet<Entry<String, JSONData<?>>> {
+		
+		@Override
+		public final int size() {
+			int size = 0;
+			for (int i = layers.length - 1; i >= 0; i--)
+				if (layers[i] != null)
+					for (String key : layers[i].keySet())
+						if (firstAppearance(key, i))
+							size++;
+			return size;
+		}
+		
+		@Override
+		public final void clear() {
+			JSONOverlay.this.clear();
+		}
+		
+		@Override
+		public final Iterator<Entry<String, JSONData<?>>> iterator() {
+			return new EntryIterator();
+		}
+	}
+	
+	/**
+	 * Iterates over the keys of the layers from the bottom layer up, skipping the keys that appeared in a lower layer.
+	 * 
+	 * @author Toberumono
+	 */
+	final class EntryIterator implements Iterator<Entry<String, JSONData<?>>> {
+		private int layer = layers.length;
+		private Iterator<String> keys = null;
+		private String next = null;
+		
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				while (keys == null || !keys.hasNext()) {
+					if (--layer < 0)
+						return false;
+					if (layers[layer] != null)
+						keys = layers[layer].keySet().iterator();
+				}
+				String key = keys.next();
+				if (firstAppearance(key, layer))
+					next = key;
+			}
+			return true;
+		}
+		
+		@Override
+		public Entry<String, JSONData<?>> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			String key = next;
+			next = null;
+			return new SimpleImmutableEntry<>(key, get(key));
+		}
+	}
+	
+	/**
+	 * Creates the {@link JSONObject} that this {@link JSONOverlay} is a view of.<br>
+	 * The result does not share any {@link JSONData} with the layers, so it can be modified freely.
+	 * 
+	 * @return a new {@link JSONObject} with the contents of this {@link JSONOverlay}
+	 */
+	public JSONObject flatten() {
+		JSONObject out = new JSONObject();
+		ArrayDeque<Object[]> stack = new ArrayDeque<>();
+		stack.push(new Object[]{this, out});
+		while (!stack.isEmpty()) {
+			Object[] pending = stack.pop();
+			JSONObject target = (JSONObject) pending[1];
+			for (Entry<String, JSONData<?>> entry : ((JSONOverlay) pending[0]).entrySet()) {
+				JSONData<?> value = entry.getValue();
+				if (value instanceof JSONOverlay) {
+					JSONObject nested = new JSONObject();
+					target.put(entry.getKey(), nested);
+					stack.push(new Object[]{value, nested});
+				}
+				else
+					target.put(entry.getKey(), value.deepCopy());
+			}
+		}
+		out.clearModified();
+		return out;
+	}
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * The copy is a {@link JSONOverlay} over deep copies of the layers. Use {@link #flatten()} to get a single {@link JSONObject}.
+	 */
+	@Override
+	public JSONOverlay deepCopy() {
+		JSONObject[] copies = new JSONObject[layers.length];
+		for (int i = 0; i < layers.length; i++)
+			copies[i] = layers[i] == null ? new JSONObject() : layers[i].deepCopy();
+		return new JSONOverlay(copies, null, null);
+	}
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * Only the top layer is considered because it is the only layer that a {@link JSONOverlay} modifies.
+	 */
+	@Override
+	public boolean isModified() {
+		return layers[0] != null && layers[0].isModified();
+	}
+	
+	@Override
+	public void clearModified() {
+		if (layers[0] != null)
+			layers[0].clearModified();
+	}
+	
+	@Override
+	public String toJSONString() {
+		return JSONGenerator.toJSONString(this, false);
+	}
+	
+	@Override
+	public StringBuilder toFormattedJSON(final StringBuilder sb, String indentation) {
+		try {
+			writeJSON(new JSONGenerator(sb, true, indentation));
+		}
+		catch (IOException e) {} //StringBuilders do not throw IOExceptions
+		return sb;
+	}
+	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		generator.tree(this);
+	}
+}
@@ -0,0 +1,531 @@
+package toberumono.json;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import toberumono.json.exceptions.JSONException;
+
+/**
+ * Computes and applies JSON Patch (RFC 6902) documents.<br>
+ * Diffs compare subtrees by structural hashes that are computed once per node and cached for the duration of the diff, so equal subtrees are
+ * skipped without being walked more than once. Arrays are aligned with Myers' O(ND) algorithm after their common prefix and suffix are trimmed,
+ * so small edits to large arrays produce small patches.<br>
+ * Patches are applied in place. If an operation fails, every container that was changed by the patch is restored (including its modified flag)
+ * before the {@link JSONException} is thrown.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#diff(JSONData, JSONData)
+ * @see JSONSystem#patch(JSONData, JSONArray)
+ */
+final class JSONPatch {
+	/**
+	 * The largest edit distance for which arrays are aligned with Myers' algorithm. Beyond this, the arrays are diffed position by position.
+	 */
+	private static final int MAX_EDIT_DISTANCE = 1024;
+	private static final byte KEEP = 0, DELETE = 1, INSERT = 2;
+	
+	private final IdentityHashMap<JSONData<?>, Integer> hashes = new IdentityHashMap<>();
+	private final JSONArray patch = new JSONArray();
+	
+	private JSONPatch() {/* Instances only live for the duration of a diff */}
+	
+	static JSONArray diff(JSONData<?> source, JSONData<?> target) {
+		JSONPatch diff = new JSONPatch();
+		diff.diff(source, target, "");
+		diff.patch.clearModified();
+		return diff.patch;
+	}
+	
+	static JSONData<?> apply(JSONData<?> root, JSONArray patch) {
+		return new Applier(root).apply(patch);
+	}
+	
+	private void diff(JSONData<?> source, JSONData<?> target, String path) {
+		if (source == target || (hash(source) == hash(target) && equal(source, target)))
+			return;
+		if (source.type() == JSONType.OBJECT && target.type() == JSONType.OBJECT)
+			diffObjects(asObject(source), asObject(target), path);
+		else if (source.type() == JSONType.ARRAY && target.type() == JSONType.ARRAY)
+			diffArrays(asArray(source), asArray(target), path);
+		else
+			operation("replace", path).put("value", target.deepCopy());
+	}
+	
+	private void diffObjects(Map<String, JSONData<?>> source, Map<String, JSONData<?>> target, String path) {
+		for (String key : source.keySet())
+			if (!target.containsKey(key))
+				operation("remove", path + "/" + escape(key));
+		for (Entry<String, JSONData<?>> e : target.entrySet()) {
+			JSONData<?> original = source.get(e.getKey());
+			if (original == null)
+				operation("add", path + "/" + escape(e.getKey())).put("value", e.getValue().deepCopy());
+			else
+				diff(original, e.getValue(), path + "/" + escape(e.getKey()));
+		}
+	}
+	
+	private void diffArrays(List<JSONData<?>> source, List<JSONData<?>> target, String path) {
+		int start = 0, sourceEnd = source.size(), targetEnd = target.size();
+		while (start < sourceEnd && start < targetEnd && hash(source.get(start)) == hash(target.get(start)))
+			start++;
+		while (sourceEnd > start && targetEnd > start && hash(source.get(sourceEnd - 1)) == hash(target.get(targetEnd - 1))) {
+			sourceEnd--;
+			targetEnd--;
+		}
+		int[] a = new int[sourceEnd - start], b = new int[targetEnd - start];
+		for (int i = 0; i < a.length; i++)
+			a[i] = hash(source.get(start + i));
+		for (int i = 0; i < b.length; i++)
+			b[i] = hash(target.get(start + i));
+		byte[] script = align(a, b);
+		
+		//Matching hashes are confirmed by the recursive diff, so a collision costs patch size rather than correctness
+		for (int i = 0; i < start; i++)
+			diff(source.get(i), target.get(i), path + "/" + i);
+		int index = start, x = start, y = start;
+		for (int i = 0; i < script.length;) {
+			if (script[i] == KEEP) {
+				diff(source.get(x++), target.get(y++), path + "/" + index++);
+				i++;
+				continue;
+			}
+			int deletes = 0, inserts = 0;
+			for (; i < script.length && script[i] != KEEP; i++) {
+				if (script[i] == DELETE)
+					deletes++;
+				else
+					inserts++;
+			}
+			int paired = Math.min(deletes, inserts);
+			for (int j = 0; j < paired; j++)
+				diff(source.get(x++), target.get(y++), path + "/" + index++);
+			for (int j = paired; j < deletes; j++, x++)
+				operation("remove", path + "/" + index);
+			for (int j = paired; j < inserts; j++)
+				operation("add", path + "/" + index++).put("value", target.get(y++).deepCopy());
+		}
+		for (; x < source.size(); x++, y++)
+			diff(source.get(x), target.get(y), path + "/" + index++);
+	}
+	
+	/**
+	 * Aligns {@code a} and {@code b} with Myers' algorithm.
+	 * 
+	 * @return the edit script that transforms {@code a} into {@code b}
+	 */
+	private static byte[] align(int[] a, int[] b) {
+		int n = a.length, m = b.length, max = n + m;
+		if (max == 0)
+			return new byte[0];
+		int limit = Math.min(max, MAX_EDIT_DISTANCE), offset = limit + 1;
+		int[] v = new int[2 * limit + 3];
+		int[][] trace = new int[limit + 1][];
+		for (int d = 0; d <= limit; d++) {
+			trace[d] = Arrays.copyOfRange(v, offset - d, offset + d + 1);
+			for (int k = -d; k <= d; k += 2) {
+				int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) ? v[offset + k + 1] : v[offset + k - 1] + 1, y = x - k;
+				while (x < n && y < m && a[x] == b[y]) {
+					x++;
+					y++;
+				}
+				v[offset + k] = x;
+				if (x >= n && y >= m)
+					return backtrack(trace, d, n, m);
+			}
+		}
+		//The arrays are too different for the alignment to be worth its cost, so they are compared position by position
+		byte[] script = new byte[Math.max(n, m) * 2 - Math.min(n, m)];
+		int i = 0;
+		for (int j = Math.min(n, m); j > 0; j--) {
+			script[i++] = DELETE;
+			script[i++] = INSERT;
+		}
+		for (int j = n; j > m; j--)
+			script[i++] = DELETE;
+		for (int j = m; j > n; j--)
+			script[i++] = INSERT;
+		return script;
+	}
+	
+	private static byte[] backtrack(int[][] trace, int distance, int n, int m) {
+		byte[] script = new byte[n + m - (n + m - distance) / 2];
+		int i = script.length, x = n, y = m;
+		for (int d = distance; d > 0; d--) {
+			int[] v = trace[d];
+			int k = x - y;
+			int previousK = (k == -d || (k != d && v[k - 1 + d] < v[k + 1 + d])) ? k + 1 : k - 1;
+			int previousX = v[previousK + d], previousY = previousX - previousK;
+			for (; x > previousX && y > previousY; x--, y--)
+				script[--i] = KEEP;
+			script[--i] = previousK == k + 1 ? INSERT : DELETE;
+			x = previousX;
+			y = previousY;
+		}
+		for (; x > 0; x--)
+			script[--i] = KEEP;
+		return script;
+	}
+	
+	private JSONObject operation(String op, String path) {
+		JSONObject operation = new JSONObject();
+		operation.put("op", new JSONString(op));
+		operation.put("path", new JSONString(path));
+		patch.add(operation);
+		return operation;
+	}
+	
+	private int hash(JSONData<?> data) {
+		Integer cached = hashes.get(data);
+		if (cached != null)
+			return cached;
+		int hash;
+		switch (data.type()) {
+			case OBJECT:
+				hash = 1;
+				for (Entry<String, JSONData<?>> e : asObject(data).entrySet())
+					hash += e.getKey().hashCode() ^ hash(e.getValue());
+				break;
+			case ARRAY:
+				hash = 2;
+				for (JSONData<?> element : asArray(data))
+					hash = 31 * hash + hash(element);
+				break;
+			case NUMBER:
+				Number number = (Number) data.value();
+				hash = isIntegral(number) ? Long.hashCode(number.longValue()) : isFloatingPoint(number) ? Double.hashCode(number.doubleValue()) : number.hashCode();
+				break;
+			case NULL:
+				hash = 0;
+				break;
+			default:
+				hash = data.type().ordinal() * 31 + data.value().hashCode();
+		}
+		hashes.put(data, hash);
+		return hash;
+	}
+	
+	/**
+	 * Unlike {@link JSONData#equals(Object)}, this treats all {@code nulls} as equal and compares numbers by value when both are integral or both
+	 * are floating point.
+	 */
+	static boolean equal(JSONData<?> a, JSONData<?> b) {
+		if (a == b)
+			return true;
+		if (a.type() != b.type())
+			return false;
+		switch (a.type()) {
+			case OBJECT:
+				Map<String, JSONData<?>> first = asObject(a), second = asObject(b);
+				if (first.size() != second.size())
+					return false;
+				for (Entry<String, JSONData<?>> e : first.entrySet()) {
+					JSONData<?> other = second.get(e.getKey());
+					if (other == null || !equal(e.getValue(), other))
+						return false;
+				}
+				return true;
+			case ARRAY:
+				List<JSONData<?>> left = asArray(a), right = asArray(b);
+				if (left.size() != right.size())
+					return false;
+				for (int i = 0; i < left.size(); i++)
+					if (!equal(left.get(i), right.get(i)))
+						return false;
+				return true;
+			case NUMBER:
+				Number x = (Number) a.value(), y = (Number) b.value();
+				if (isIntegral(x) && isIntegral(y))
+					return x.longValue() == y.longValue();
+				if (isFloatingPoint(x) && isFloatingPoint(y))
+					return Double.compare(x.doubleValue(), y.doubleValue()) == 0;
+				return x.equals(y);
+			case NULL:
+				return true;
+			default:
+				return a.value().equals(b.value());
+		}
+	}
+	
+	private static boolean isIntegral(Number number) {
+		return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+	}
+	
+	private static boolean isFloatingPoint(Number number) {
+		return number instanceof Double || number instanceof Float;
+	}
+	
+	/**
+	 * {@link JSONObject JSONObjects}, {@link JSONObjectWrapper JSONObjectWrappers}, and {@link JSONOverlay JSONOverlays} all have a
+	 * {@link JSONType#OBJECT} value that is a {@link Map}, but only the first two have a {@link JSONObject} value.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, JSONData<?>> asObject(JSONData<?> data) {
+		return (Map<String, JSONData<?>>) data.value();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<JSONData<?>> asArray(JSONData<?> data) {
+		return (List<JSONData<?>>) data.value();
+	}
+	
+	static String escape(String key) {
+		if (key.indexOf('~') < 0 && key.indexOf('/') < 0)
+			return key;
+		return key.replace("~", "~0").replace("/", "~1");
+	}
+	
+	static String unescape(String token) {
+		if (token.indexOf('~') < 0)
+			return token;
+		return token.replace("~1", "/").replace("~0", "~");
+	}
+	
+	/**
+	 * Applies a patch in place. Each container is snapshotted the first time that an operation changes it so that a failed patch can be undone.
+	 */
+	private static final class Applier {
+		private final JSONData<?> originalRoot;
+		private JSONData<?> root;
+		private final IdentityHashMap<Object, Object> snapshots = new IdentityHashMap<>();
+		/**
+		 * The modified flag that each snapshotted container had before the patch. These are read and restored directly because
+		 * {@link ModifiableJSONData#isModified()} caches the flags of the children in their parents.
+		 */
+		private final IdentityHashMap<Object, Boolean> flags = new IdentityHashMap<>();
+		
+		Applier(JSONData<?> root) {
+			this.originalRoot = this.root = root;
+		}
+		
+		JSONData<?> apply(JSONArray patch) {
+			int i = 0;
+			try {
+				for (; i < patch.size(); i++) {
+					JSONData<?> operation = patch.get(i);
+					if (operation.type() != JSONType.OBJECT)
+						throw new JSONException("Expected an object but found " + operation.type());
+					apply(operation instanceof JSONOverlay ? ((JSONOverlay) operation).flatten() : (JSONObject) operation.value());
+				}
+				return root;
+			}
+			catch (JSONException e) {
+				rollback();
+				throw new JSONException("Patch operation " + i + " failed: " + e.getMessage(), e);
+			}
+			catch (RuntimeException e) { //For example, an UnsupportedOperationException from copying a wrapped value
+				rollback();
+				throw e;
+			}
+		}
+		
+		private void apply(JSONObject operation) {
+			String op = operation.getString("op"), path = operation.getString("path");
+			switch (op) {
+				case "add":
+					add(path, value(operation));
+					break;
+				case "remove":
+					remove(path);
+					break;
+				case "replace":
+					replace(path, value(operation));
+					break;
+				case "move":
+					String from = operation.getString("from");
+					if (from.equals(path))
+						break;
+					if (path.startsWith(from + "/"))
+						throw new JSONException("Cannot move " + from + " into one of its children");
+					add(path, remove(from));
+					break;
+				case "copy":
+					add(path, get(operation.getString("from")).deepCopy());
+					break;
+				case "test":
+					if (!equal(get(path), value(operation)))
+						throw new JSONException("The value at " + path + " does not match the test value");
+					break;
+				default:
+					throw new JSONException("Unknown operation " + op);
+			}
+		}
+		
+		private static JSONData<?> value(JSONObject operation) {
+			JSONData<?> value = operation.get("value");
+			if (value == null)
+				throw new JSONException("The " + operation.getString("op") + " operation requires a value");
+			return value.deepCopy();
+		}
+		
+		private JSONData<?> get(String path) {
+			checkPointer(path);
+			JSONData<?> current = root;
+			for (int start = 0, end; start < path.length(); start = end) {
+				end = path.indexOf('/', start + 1);
+				if (end < 0)
+					end = path.length();
+				current = child(current, path.substring(start + 1, end), path);
+			}
+			return current;
+		}
+		
+		private JSONData<?> child(JSONData<?> parent, String token, String path) {
+			JSONData<?> child = null;
+			if (parent.type() == JSONType.OBJECT)
+				child = asObject(parent).get(unescape(token));
+			else if (parent.type() == JSONType.ARRAY) {
+				List<JSONData<?>> array = asArray(parent);
+				child = array.get(index(token, array.size() - 1, path));
+			}
+			if (child == null)
+				throw new JSONException("There is no value at " + path);
+			return child;
+		}
+		
+		private void add(String path, JSONData<?> value) {
+			if (path.isEmpty()) { //The root is being replaced
+				root = value;
+				return;
+			}
+			int split = path.lastIndexOf('/');
+			JSONData<?> parent = get(path.substring(0, split));
+			String token = path.substring(split + 1);
+			if (parent.type() == JSONType.OBJECT) {
+				Map<String, JSONData<?>> object = asObject(parent);
+				touch(object);
+				object.put(unescape(token), value);
+			}
+			else if (parent.type() == JSONType.ARRAY) {
+				JSONArray array = (JSONArray) asArray(parent);
+				touch(array);
+				if (token.equals("-"))
+					array.add(value);
+				else
+					array.add(index(token, array.size(), path), value);
+			}
+			else
+				throw new JSONException("The parent of " + path + " is not a container");
+		}
+		
+		private void replace(String path, JSONData<?> value) {
+			if (path.isEmpty()) {
+				root = value;
+				return;
+			}
+			int split = path.lastIndexOf('/');
+			JSONData<?> parent = get(path.substring(0, split));
+			String token = path.substring(split + 1);
+			child(parent, token, path); //Ensures that the value being replaced exists
+			if (parent.type() == JSONType.OBJECT) {
+				Map<String, JSONData<?>> object = asObject(parent);
+				touch(object);
+				object.put(unescape(token), value); //Replacing an existing key does not change its position
+			}
+			else {
+				JSONArray array = (JSONArray) asArray(parent);
+				touch(array);
+				array.set(index(token, array.size() - 1, path), value);
+			}
+		}
+		
+		private JSONData<?> remove(String path) {
+			if (path.isEmpty()) {
+				JSONData<?> old = root;
+				root = JSONNull.NULL;
+				return old;
+			}
+			int split = path.lastIndexOf('/');
+			JSONData<?> parent = get(path.substring(0, split));
+			String token = path.substring(split + 1);
+			JSONData<?> old = child(parent, token, path);
+			if (parent.type() == JSONType.OBJECT) {
+				Map<String, JSONData<?>> object = asObject(parent);
+				touch(object);
+				object.remove(unescape(token));
+				if (object.containsKey(unescape(token)))
+					throw new JSONException("Cannot remove " + path + " because it is in a lower layer of a JSONOverlay");
+			}
+			else {
+				JSONArray array = (JSONArray) asArray(parent);
+				touch(array);
+				array.remove(index(token, array.size() - 1, path));
+			}
+			return old;
+		}
+		
+		private static void checkPointer(String path) {
+			if (!path.isEmpty() && path.charAt(0) != '/')
+				throw new JSONException("Invalid JSON pointer: " + path);
+		}
+		
+		private static int index(String token, int max, String path) {
+			if (token.isEmpty() || token.length() > 10 || (token.length() > 1 && token.charAt(0) == '0'))
+				throw new JSONException("Invalid array index in " + path);
+			long index = 0;
+			for (int i = 0; i < token.length(); i++) {
+				char c = token.charAt(i);
+				if (c < '0' || c > '9')
+					throw new JSONException("Invalid array index in " + path);
+				index = index * 10 + (c - '0');
+			}
+			if (index > max)
+				throw new JSONException("Array index out of range in " + path);
+			return (int) index;
+		}
+		
+		private void touch(Map<String, JSONData<?>> object) {
+			if (object instanceof JSONOverlay)
+				touch((JSONOverlay) object);
+			else
+				touch((JSONObject) object);
+		}
+		
+		/**
+		 * {@link JSONOverlay JSONOverlays} only write to their top layer, so that is what is snapshotted. A nested {@link JSONOverlay} that has
+		 * not been written to yet creates its top layer in its parent's top layer, so the parent is snapshotted first.
+		 */
+		private void touch(JSONOverlay overlay) {
+			if (overlay.getLayer(0) == null)
+				touch(overlay.parent);
+			touch(overlay.top());
+		}
+		
+		private void touch(JSONObject object) {
+			if (!snapshots.containsKey(object)) {
+				flags.put(object, object.isOwnModified());
+				snapshots.put(object, new LinkedHashMap<>(object));
+			}
+		}
+		
+		private void touch(JSONArray array) {
+			if (!snapshots.containsKey(array)) {
+				flags.put(array, array.isOwnModified());
+				snapshots.put(array, array.toArray(new JSONData<?>[array.size()]));
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		private void rollback() {
+			for (Map.Entry<Object, Object> e : snapshots.entrySet()) {
+				if (e.getKey() instanceof JSONObject) {
+					JSONObject object = (JSONObject) e.getKey();
+					object.clear();
+					for (Entry<String, JSONData<?>> entry : ((Map<String, JSONData<?>>) e.getValue()).entrySet())
+						object.putDirectly(entry.getKey(), entry.getValue());
+					object.setOwnModified(flags.get(object));
+				}
+				else {
+					JSONArray array = (JSONArray) e.getKey();
+					array.clear();
+					array.addAll(Arrays.asList((JSONData<?>[]) e.getValue()));
+					array.setOwnModified(flags.get(array));
+				}
+			}
+			root = originalRoot;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package toberumono.json;
 
+import java.io.IOException;
+
 /**
  * Indicates that an object can be represented as a {@link JSONObject}.
  * 
@@ -14,8 +16,22 @@ public interface JSONRepresentable extends JSONSerializable {
 	 */
 	public JSONObject toJSONObject();
 	
+	/**
+	 * Serializes the object by calling {@link #writeJSON(JSONGenerator)}. Therefore, objects that override
+	 * {@link #writeJSON(JSONGenerator)} are serialized without building a {@link JSONObject}.
+	 */
 	@Override
 	public default String toJSONString() {
-		return toJSONObject().toJSONString();
+		return JSONGenerator.toJSONString(this, false);
+	}
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * The default implementation writes the {@link JSONObject} returned by {@link #toJSONObject()}. Override this to write the object's fields
+	 * directly.
+	 */
+	@Override
+	public default void writeJSON(JSONGenerator generator) throws IOException {
+		toJSONObject().writeJSON(generator);
 	}
 }
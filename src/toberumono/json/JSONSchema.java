@@ -0,0 +1,715 @@
+package toberumono.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import toberumono.json.exceptions.JSONValidationException;
+
+/**
+ * A validator for a practical subset of JSON Schema. The schema is compiled into a graph of validation nodes once by
+ * {@link #compile(JSONData)}, after which the same {@link JSONSchema} can be used to validate any number of documents, either as existing trees
+ * via {@link #validate(JSONData)} or while they are being parsed via {@link #validating(JSONHandler)}.<br>
+ * The supported keywords are:
+ * <ul>
+ * <li>{@code type} (a single name or an array of names)</li>
+ * <li>{@code enum}</li>
+ * <li>{@code minimum}, {@code maximum}, {@code exclusiveMinimum}, and {@code exclusiveMaximum} (both the boolean and the numeric forms)</li>
+ * <li>{@code minLength}, {@code maxLength}, and {@code pattern}</li>
+ * <li>{@code items}, {@code minItems}, and {@code maxItems}</li>
+ * <li>{@code properties}, {@code required}, {@code additionalProperties}, {@code minProperties}, and {@code maxProperties}</li>
+ * <li>{@code $ref} with pointers into the schema document ({@code "#"} or {@code "#/..."})</li>
+ * </ul>
+ * {@code true} and {@code false} are accepted as schemas that allow everything and nothing respectively. Unrecognized keywords are ignored.
+ * Values that are wrapped in {@link JSONWrapped} are validated as {@link String Strings} because that is how they are serialized.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#parseJSON(String, JSONSchema)
+ */
+public final class JSONSchema {
+	private static final int STRING = 1, NUMBER = 2, INTEGER = 4, OBJECT = 8, ARRAY = 16, BOOLEAN = 32, NULL = 64, ANY = 127;
+	private static final String[] TYPE_NAMES = {"string", "number", "integer", "object", "array", "boolean", "null"};
+	
+	private final Node root;
+	
+	private JSONSchema(Node root) {
+		this.root = root;
+	}
+	
+	/**
+	 * Compiles the given schema into a {@link JSONSchema}.
+	 * 
+	 * @param schema
+	 *            the root of the schema document
+	 * @return a {@link JSONSchema} that validates documents against {@code schema}
+	 * @throws IllegalArgumentException
+	 *             if {@code schema} is not a valid schema document
+	 */
+	public static JSONSchema compile(JSONData<?> schema) {
+		return new JSONSchema(new Compiler(schema).compile());
+	}
+	
+	/**
+	 * Validates an existing tree of {@link JSONData} against this {@link JSONSchema}.
+	 * 
+	 * @param data
+	 *            the root of the tree to validate
+	 * @throws JSONValidationException
+	 *             if {@code data} does not conform to this {@link JSONSchema}. The message contains a JSON Pointer to the offending value
+	 */
+	public void validate(JSONData<?> data) {
+		Deque<Object> path = new ArrayDeque<>();
+		String error = check(root, data, path);
+		if (error != null)
+			throw new JSONValidationException(pointer(path.descendingIterator()) + ": " + error);
+	}
+	
+	/**
+	 * @param data
+	 *            the root of the tree to validate
+	 * @return {@code true} iff {@code data} conforms to this {@link JSONSchema}
+	 */
+	public boolean isValid(JSONData<?> data) {
+		return check(root, data, new ArrayDeque<>()) == null;
+	}
+	
+	/**
+	 * Creates a {@link JSONHandler} that validates the events that it receives against this {@link JSONSchema} before forwarding them to
+	 * {@code delegate}. Because the events are validated as they arrive, invalid input is rejected as soon as the offending value is read.<br>
+	 * Subtrees are only buffered when they are constrained by {@code enum}.
+	 * 
+	 * @param delegate
+	 *            the {@link JSONHandler} to which the validated events should be forwarded
+	 * @return a validating {@link JSONHandler} that throws a {@link JSONValidationException} when it receives invalid data
+	 * @see JSONStreamParser
+	 */
+	public JSONHandler validating(JSONHandler delegate) {
+		return new StreamValidator(root, delegate);
+	}
+	
+	private static final class Node {
+		boolean never = false, additionalAllowed = true, exclusiveMinimum = false, exclusiveMaximum = false;
+		int types = ANY;
+		int minLength = 0, maxLength = Integer.MAX_VALUE, minItems = 0, maxItems = Integer.MAX_VALUE, minProperties = 0,
+				maxProperties = Integer.MAX_VALUE;
+		double minimum = Double.NaN, maximum = Double.NaN;
+		Map<String, Integer> required = null;
+		Map<String, Node> properties = null;
+		Node additional = null, items = null, target = null;
+		JSONData<?>[] enumeration = null;
+		Pattern pattern = null;
+		
+		Node resolve() {
+			Node node = this;
+			while (node.target != null)
+				node = node.target;
+			return node;
+		}
+	}
+	
+	private static final class Compiler {
+		private final JSONData<?> document;
+		private final IdentityHashMap<JSONData<?>, Node> compiled = new IdentityHashMap<>();
+		private final ArrayList<Node> refNodes = new ArrayList<>();
+		private final ArrayList<String> refs = new ArrayList<>();
+		
+		Compiler(JSONData<?> document) {
+			this.document = document;
+		}
+		
+		Node compile() {
+			Node root = compile(document);
+			for (int i = 0; i < refNodes.size(); i++) //Resolving a reference can compile new subschemas that contain references
+				refNodes.get(i).target = compile(dereference(refs.get(i)));
+			for (Node node : refNodes) {
+				Node n = node;
+				for (int steps = 0; n.target != null; n = n.target)
+					if (++steps > refNodes.size())
+						throw new IllegalArgumentException("The schema contains a cycle of $refs");
+			}
+			return root;
+		}
+		
+		private JSONData<?> dereference(String ref) {
+			if (!ref.startsWith("#"))
+				throw new IllegalArgumentException("Only references within the schema document are supported: " + ref);
+			JSONData<?> current = document;
+			if (ref.length() <= 2)
+				return current;
+			for (String token : ref.substring(2).split("/", -1)) {
+				token = token.replace("~1", "/").replace("~0", "~");
+				if (current.type() == JSONType.OBJECT)
+					current = asMap(current).get(token);
+				else if (current.type() == JSONType.ARRAY) {
+					List<?> list = (List<?>) current.value();
+					int index = Integer.parseInt(token);
+					current = index < list.size() ? (JSONData<?>) list.get(index) : null;
+				}
+				else
+					current = null;
+				if (current == null)
+					throw new IllegalArgumentException("Unable to resolve " + ref);
+			}
+			return current;
+		}
+		
+		private Node compile(JSONData<?> schema) {
+			Node node = compiled.get(schema);
+			if (node != null)
+				return node;
+			compiled.put(schema, node = new Node());
+			if (schema.type() == JSONType.BOOLEAN) {
+				node.never = !((Boolean) schema.value());
+				return node;
+			}
+			if (schema.type() != JSONType.OBJECT)
+				throw new IllegalArgumentException("A schema must be an object or a boolean");
+			Map<String, JSONData<?>> s = asMap(schema);
+			JSONData<?> keyword;
+			if ((keyword = s.get("$ref")) != null) { //Other keywords are ignored when $ref is present
+				refNodes.add(node);
+				refs.add((String) keyword.value());
+				return node;
+			}
+			if ((keyword = s.get("type")) != null) {
+				node.types = 0;
+				if (keyword.type() == JSONType.ARRAY)
+					for (Object type : (List<?>) keyword.value())
+						node.types |= type((JSONData<?>) type);
+				else
+					node.types = type(keyword);
+			}
+			if ((keyword = s.get("enum")) != null)
+				node.enumeration = ((List<?>) keyword.value()).toArray(new JSONData<?>[0]);
+			if ((keyword = s.get("minimum")) != null)
+				node.minimum = number(keyword);
+			if ((keyword = s.get("maximum")) != null)
+				node.maximum = number(keyword);
+			if ((keyword = s.get("exclusiveMinimum")) != null) {
+				if (keyword.type() == JSONType.BOOLEAN)
+					node.exclusiveMinimum = (Boolean) keyword.value();
+				else if (Double.isNaN(node.minimum) || number(keyword) >= node.minimum) {
+					node.minimum = number(keyword);
+					node.exclusiveMinimum = true;
+				}
+			}
+			if ((keyword = s.get("exclusiveMaximum")) != null) {
+				if (keyword.type() == JSONType.BOOLEAN)
+					node.exclusiveMaximum = (Boolean) keyword.value();
+				else if (Double.isNaN(node.maximum) || number(keyword) <= node.maximum) {
+					node.maximum = number(keyword);
+					node.exclusiveMaximum = true;
+				}
+			}
+			if ((keyword = s.get("minLength")) != null)
+				node.minLength = (int) number(keyword);
+			if ((keyword = s.get("maxLength")) != null)
+				node.maxLength = (int) number(keyword);
+			if ((keyword = s.get("pattern")) != null)
+				node.pattern = Pattern.compile((String) keyword.value());
+			if ((keyword = s.get("items")) != null)
+				node.items = compile(keyword);
+			if ((keyword = s.get("minItems")) != null)
+				node.minItems = (int) number(keyword);
+			if ((keyword = s.get("maxItems")) != null)
+				node.maxItems = (int) number(keyword);
+			if ((keyword = s.get("minProperties")) != null)
+				node.minProperties = (int) number(keyword);
+			if ((keyword = s.get("maxProperties")) != null)
+				node.maxProperties = (int) number(keyword);
+			if ((keyword = s.get("required")) != null) {
+				node.required = new HashMap<>();
+				for (Object name : (List<?>) keyword.value())
+					node.required.putIfAbsent((String) ((JSONData<?>) name).value(), node.required.size());
+			}
+			if ((keyword = s.get("properties")) != null) {
+				node.properties = new HashMap<>();
+				for (Entry<String, JSONData<?>> property : asMap(keyword).entrySet())
+					node.properties.put(property.getKey(), compile(property.getValue()));
+			}
+			if ((keyword = s.get("additionalProperties")) != null) {
+				if (keyword.type() == JSONType.BOOLEAN)
+					node.additionalAllowed = (Boolean) keyword.value();
+				else
+					node.additional = compile(keyword);
+			}
+			return node;
+		}
+		
+		private static int type(JSONData<?> name) {
+			for (int i = 0; i < TYPE_NAMES.length; i++)
+				if (TYPE_NAMES[i].equals(name.value()))
+					return 1 << i;
+			throw new IllegalArgumentException("Unknown type: " + name);
+		}
+		
+		private static double number(JSONData<?> keyword) {
+			if (keyword.type() != JSONType.NUMBER)
+				throw new IllegalArgumentException("Expected a number but found " + keyword);
+			return ((Number) keyword.value()).doubleValue();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, JSONData<?>> asMap(JSONData<?> object) {
+		return (Map<String, JSONData<?>>) object.value();
+	}
+	
+	private static String check(Node node, JSONData<?> data, Deque<Object> path) {
+		node = node.resolve();
+		if (node.never)
+			return "no value is allowed here";
+		String error;
+		switch (data.type()) {
+			case STRING:
+				if ((error = checkString(node, (String) data.value())) != null)
+					return error;
+				break;
+			case WRAPPED:
+				if ((error = checkString(node, ((JSONSerializable) data.value()).toJSONString())) != null)
+					return error;
+				break;
+			case NUMBER:
+				if ((error = checkNumber(node, (Number) data.value())) != null)
+					return error;
+				break;
+			case BOOLEAN:
+				if ((error = checkType(node, BOOLEAN)) != null)
+					return error;
+				break;
+			case NULL:
+				if ((error = checkType(node, NULL)) != null)
+					return error;
+				break;
+			case ARRAY:
+				List<?> list = (List<?>) data.value();
+				if ((error = checkArray(node, list.size())) != null)
+					return error;
+				if (node.items != null) {
+					for (int i = 0; i < list.size(); i++) {
+						path.push(i);
+						if ((error = check(node.items, (JSONData<?>) list.get(i), path)) != null)
+							return error;
+						path.pop();
+					}
+				}
+				break;
+			case OBJECT:
+				Map<String, JSONData<?>> map = asMap(data);
+				if ((error = checkObject(node, map.size())) != null)
+					return error;
+				if (node.required != null)
+					for (String name : node.required.keySet())
+						if (!map.containsKey(name))
+							return "missing required property \"" + name + "\"";
+				if (node.properties != null || node.additional != null || !node.additionalAllowed) {
+					for (Entry<String, JSONData<?>> e : map.entrySet()) {
+						path.push(e.getKey());
+						Node child = node.properties != null ? node.properties.get(e.getKey()) : null;
+						if (child == null) {
+							if (!node.additionalAllowed)
+								return "property \"" + e.getKey() + "\" is not allowed";
+							child = node.additional;
+						}
+						if (child != null && (error = check(child, e.getValue(), path)) != null)
+							return error;
+						path.pop();
+					}
+				}
+				break;
+		}
+		if (node.enumeration != null && !inEnumeration(node, data))
+			return "value is not one of " + Arrays.toString(node.enumeration);
+		return null;
+	}
+	
+	private static String checkType(Node node, int type) {
+		if ((node.types & type) != 0)
+			return null;
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < TYPE_NAMES.length; i++)
+			if ((node.types & (1 << i)) != 0)
+				expected.append(expected.length() == 0 ? "" : " or ").append(TYPE_NAMES[i]);
+		int found = 0;
+		while ((type & (1 << found)) == 0)
+			found++;
+		return "expected " + expected + " but found " + TYPE_NAMES[found];
+	}
+	
+	private static String checkString(Node node, String value) {
+		String error = checkType(node, STRING);
+		if (error != null)
+			return error;
+		if (node.minLength > 0 || node.maxLength < Integer.MAX_VALUE) {
+			int length = value.codePointCount(0, value.length());
+			if (length < node.minLength)
+				return "string is shorter than " + node.minLength + " characters";
+			if (length > node.maxLength)
+				return "string is longer than " + node.maxLength + " characters";
+		}
+		if (node.pattern != null && !node.pattern.matcher(value).find())
+			return "string does not match " + node.pattern.pattern();
+		return null;
+	}
+	
+	private static String checkNumber(Node node, Number value) {
+		String error = checkType(node, isIntegral(value) ? NUMBER | INTEGER : NUMBER);
+		if (error != null)
+			return error;
+		double number = value.doubleValue();
+		if (!Double.isNaN(node.minimum) && (node.exclusiveMinimum ? number <= node.minimum : number < node.minimum))
+			return value + " is less than " + (node.exclusiveMinimum ? "or equal to " : "") + node.minimum;
+		if (!Double.isNaN(node.maximum) && (node.exclusiveMaximum ? number >= node.maximum : number > node.maximum))
+			return value + " is greater than " + (node.exclusiveMaximum ? "or equal to " : "") + node.maximum;
+		return null;
+	}
+	
+	private static String checkArray(Node node, int size) {
+		String error = checkType(node, ARRAY);
+		if (error != null)
+			return error;
+		if (size < node.minItems)
+			return "array has fewer than " + node.minItems + " items";
+		if (size > node.maxItems)
+			return "array has more than " + node.maxItems + " items";
+		return null;
+	}
+	
+	private static String checkObject(Node node, int size) {
+		String error = checkType(node, OBJECT);
+		if (error != null)
+			return error;
+		if (size < node.minProperties)
+			return "object has fewer than " + node.minProperties + " properties";
+		if (size > node.maxProperties)
+			return "object has more than " + node.maxProperties + " properties";
+		return null;
+	}
+	
+	private static boolean isIntegral(Number value) {
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte || value instanceof BigInteger)
+			return true;
+		if (value instanceof BigDecimal)
+			return ((BigDecimal) value).stripTrailingZeros().scale() <= 0;
+		double d = value.doubleValue();
+		return !Double.isInfinite(d) && d == Math.rint(d);
+	}
+	
+	private static boolean inEnumeration(Node node, JSONData<?> data) {
+		for (JSONData<?> allowed : node.enumeration)
+			if (equal(allowed, data))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Structural equality in which numbers are compared by value rather than by type.
+	 */
+	private static boolean equal(JSONData<?> a, JSONData<?> b) {
+		if (a.type() != b.type())
+			return false;
+		switch (a.type()) {
+			case NUMBER:
+				return ((Number) a.value()).doubleValue() == ((Number) b.value()).doubleValue();
+			case ARRAY:
+				List<?> la = (List<?>) a.value(), lb = (List<?>) b.value();
+				if (la.size() != lb.size())
+					return false;
+				for (int i = 0; i < la.size(); i++)
+					if (!equal((JSONData<?>) la.get(i), (JSONData<?>) lb.get(i)))
+						return false;
+				return true;
+			case OBJECT:
+				Map<String, JSONData<?>> ma = asMap(a), mb = asMap(b);
+				if (ma.size() != mb.size())
+					return false;
+				for (Entry<String, JSONData<?>> e : ma.entrySet()) {
+					JSONData<?> other = mb.get(e.getKey());
+					if (other == null || !equal(e.getValue(), other))
+						return false;
+				}
+				return true;
+			case NULL:
+				return true;
+			default:
+				return a.equals(b);
+		}
+	}
+	
+	private static String pointer(Iterator<?> segments) {
+		StringBuilder sb = new StringBuilder("#");
+		while (segments.hasNext())
+			sb.append('/').append(segments.next().toString().replace("~", "~0").replace("/", "~1"));
+		return sb.toString();
+	}
+	
+	/**
+	 * Validates parser events against the compiled schema. Open containers are tracked on an explicit stack; a {@code null} node means that the
+	 * container's contents are unconstrained.
+	 */
+	private static final class StreamValidator implements JSONHandler {
+		private final Node root;
+		private final JSONHandler delegate;
+		private Node[] nodes = new Node[16];
+		private boolean[] arrays = new boolean[16];
+		private int[] counts = new int[16];
+		private String[] keys = new String[16];
+		private BitSet[] seen = new BitSet[16];
+		private int depth = 0;
+		private Node next = null;
+		private JSONTreeBuilder capture = null;
+		private int captureDepth = 0;
+		private Node captureNode = null;
+		
+		StreamValidator(Node root, JSONHandler delegate) {
+			this.root = root;
+			this.delegate = delegate;
+		}
+		
+		/**
+		 * @return the node that applies to the value that is starting, or {@code null} if the value is unconstrained
+		 */
+		private Node enter() {
+			if (depth == 0)
+				return root.resolve();
+			int top = depth - 1;
+			if (arrays[top]) {
+				counts[top]++;
+				return nodes[top] == null || nodes[top].items == null ? null : nodes[top].items.resolve();
+			}
+			return next;
+		}
+		
+		private void scalar(Node node, String error, JSONData<?> value) {
+			if (node == null)
+				return;
+			if (node.never)
+				error = "no value is allowed here";
+			if (error == null && node.enumeration != null && !inEnumeration(node, value))
+				error = "value is not one of " + Arrays.toString(node.enumeration);
+			if (error != null)
+				fail(depth, error);
+		}
+		
+		private void open(Node node, boolean array) {
+			if (node != null) {
+				String error = node.never ? "no value is allowed here" : checkType(node, array ? ARRAY : OBJECT);
+				if (error != null)
+					fail(depth, error);
+			}
+			if (node != null && node.enumeration != null) { //enum needs the complete value, so the subtree is buffered and checked as a tree
+				capture = new JSONTreeBuilder();
+				captureNode = node;
+				return;
+			}
+			if (depth == nodes.length) {
+				int length = depth * 2;
+				nodes = Arrays.copyOf(nodes, length);
+				arrays = Arrays.copyOf(arrays, length);
+				counts = Arrays.copyOf(counts, length);
+				keys = Arrays.copyOf(keys, length);
+				seen = Arrays.copyOf(seen, length);
+			}
+			nodes[depth] = node;
+			arrays[depth] = array;
+			counts[depth] = 0;
+			if (node != null && node.required != null) {
+				if (seen[depth] == null)
+					seen[depth] = new BitSet(node.required.size());
+				else
+					seen[depth].clear();
+			}
+			depth++;
+		}
+		
+		private boolean capturing() {
+			return capture != null;
+		}
+		
+		private void captureStarted() {
+			captureDepth++;
+		}
+		
+		private void captureEnded() {
+			if (--captureDepth > 0)
+				return;
+			JSONData<?> value = capture.getRoot();
+			capture = null;
+			Deque<Object> path = new ArrayDeque<>();
+			String error = check(captureNode, value, path);
+			if (error != null) {
+				StringBuilder sb = new StringBuilder(pointer(depth));
+				for (Iterator<Object> iter = path.descendingIterator(); iter.hasNext();)
+					sb.append('/').append(iter.next().toString().replace("~", "~0").replace("/", "~1"));
+				throw new JSONValidationException(sb.append(": ").append(error).toString());
+			}
+		}
+		
+		@Override
+		public void startObject() {
+			if (capturing()) {
+				capture.startObject();
+				captureStarted();
+			}
+			else {
+				open(enter(), false);
+				if (capturing()) {
+					capture.startObject();
+					captureStarted();
+				}
+			}
+			delegate.startObject();
+		}
+		
+		@Override
+		public void endObject() {
+			if (capturing()) {
+				capture.endObject();
+				captureEnded();
+			}
+			else {
+				Node node = nodes[--depth];
+				if (node != null) {
+					String error = checkObject(node, counts[depth]);
+					if (error == null && node.required != null && seen[depth].cardinality() < node.required.size())
+						for (String name : node.required.keySet())
+							if (!seen[depth].get(node.required.get(name))) {
+								error = "missing required property \"" + name + "\"";
+								break;
+							}
+					if (error != null)
+						fail(depth, error);
+				}
+			}
+			delegate.endObject();
+		}
+		
+		@Override
+		public void startArray() {
+			if (capturing()) {
+				capture.startArray();
+				captureStarted();
+			}
+			else {
+				open(enter(), true);
+				if (capturing()) {
+					capture.startArray();
+					captureStarted();
+				}
+			}
+			delegate.startArray();
+		}
+		
+		@Override
+		public void endArray() {
+			if (capturing()) {
+				capture.endArray();
+				captureEnded();
+			}
+			else {
+				Node node = nodes[--depth];
+				String error;
+				if (node != null && (error = checkArray(node, counts[depth])) != null)
+					fail(depth, error);
+			}
+			delegate.endArray();
+		}
+		
+		@Override
+		public void key(String key) {
+			if (capturing())
+				capture.key(key);
+			else {
+				int top = depth - 1;
+				keys[top] = key;
+				counts[top]++;
+				Node node = nodes[top];
+				if (node == null)
+					next = null;
+				else {
+					Node child = node.properties != null ? node.properties.get(key) : null;
+					if (child == null) {
+						if (!node.additionalAllowed)
+							fail(depth, "property \"" + key + "\" is not allowed");
+						child = node.additional;
+					}
+					next = child == null ? null : child.resolve();
+					Integer index;
+					if (node.required != null && (index = node.required.get(key)) != null)
+						seen[top].set(index);
+				}
+			}
+			delegate.key(key);
+		}
+		
+		@Override
+		public void stringValue(String value) {
+			if (capturing())
+				capture.stringValue(value);
+			else {
+				Node node = enter();
+				if (node != null)
+					scalar(node, checkString(node, value), node.enumeration != null ? new JSONString(value) : null);
+			}
+			delegate.stringValue(value);
+		}
+		
+		@Override
+		public void numberValue(Number value) {
+			if (capturing())
+				capture.numberValue(value);
+			else {
+				Node node = enter();
+				if (node != null)
+					scalar(node, checkNumber(node, value), node.enumeration != null ? new JSONNumber<>(value) : null);
+			}
+			delegate.numberValue(value);
+		}
+		
+		@Override
+		public void booleanValue(boolean value) {
+			if (capturing())
+				capture.booleanValue(value);
+			else {
+				Node node = enter();
+				if (node != null)
+					scalar(node, checkType(node, BOOLEAN), JSONBoolean.valueOf(value));
+			}
+			delegate.booleanValue(value);
+		}
+		
+		@Override
+		public void nullValue() {
+			if (capturing())
+				capture.nullValue();
+			else {
+				Node node = enter();
+				if (node != null)
+					scalar(node, checkType(node, NULL), JSONNull.NULL);
+			}
+			delegate.nullValue();
+		}
+		
+		private String pointer(int frames) {
+			StringBuilder sb = new StringBuilder("#");
+			for (int i = 0; i < frames; i++)
+				sb.append('/').append(arrays[i] ? Integer.toString(counts[i] - 1) : keys[i].replace("~", "~0").replace("/", "~1"));
+			return sb.toString();
+		}
+		
+		private void fail(int frames, String error) {
+			throw new JSONValidationException(pointer(frames) + ": " + error);
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package toberumono.json;
 
+import java.io.IOException;
+
 import toberumono.json.exceptions.JSONSerializationException;
 
 /**
@@ -17,4 +19,20 @@ public interface JSONSerializable {
 	 *             if an error occurs during serialization
 	 */
 	public String toJSONString();
+	
+	/**
+	 * Writes the object to the given {@link JSONGenerator}. This is used by the library's serializer whenever the object is written.<br>
+	 * The default implementation writes the text produced by {@link #toJSONString()} as-is. Implementations that can write their contents
+	 * directly should override this method to avoid building intermediate {@link String Strings}.
+	 * 
+	 * @param generator
+	 *            the {@link JSONGenerator} to which the object should be written
+	 * @throws IOException
+	 *             if an error occurs while writing to the {@link JSONGenerator}
+	 * @throws JSONSerializationException
+	 *             if an error occurs during serialization
+	 */
+	public default void writeJSON(JSONGenerator generator) throws IOException {
+		generator.rawValue(toJSONString());
+	}
 }
@@ -0,0 +1,592 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import toberumono.json.exceptions.JSONSyntaxException;
+
+/**
+ * A parser that reads JSON text in arbitrarily-sized chunks and reports its structure to a {@link JSONHandler}.<br>
+ * The parser keeps all of its state between calls to {@link #feed(CharSequence)}, so text can be passed to it as it becomes available. It
+ * tracks nesting with an explicit stack rather than recursion, and it accepts the same dialect as {@link JSONSystem#parseJSON(String)}:
+ * single-line comments (if they were enabled when the parser was created), Unicode left and right-quotes around {@link String Strings},
+ * case-insensitive literals, dangling commas, and the extended number forms described below.<br>
+ * In addition to JSON's numbers, any text that the original lexer treated as a number is passed to the active number reader (see
+ * {@link JSONSystem#setNumberHandlers(Class, Function, Function)}): {@code infinity} in any case with an optional sign, and imaginary and
+ * complex numbers such as {@code 2i}, {@code i}, and {@code 1.5-2i}. When {@link JSONSystem#defaultReader} is active, the infinities are
+ * read as {@link Double Doubles} and the other forms are rejected, so they are only useful with a reader that supports them.<br>
+ * The limits set via {@link JSONSystem#setMaxDepth(int)}, {@link JSONSystem#setMaxDocumentLength(long)},
+ * {@link JSONSystem#setMaxStringLength(int)}, and {@link JSONSystem#setMaxElements(long)} when the parser is created are enforced as the
+ * text is read, so oversized or overly-nested input is rejected before it is buffered or handed to the {@link JSONHandler}.
+ * 
+ * @author Toberumono
+ * @see JSONHandler
+ */
+public final class JSONStreamParser {
+	private static final byte OBJECT = 1, ARRAY = 2;
+	private static final int EXPECT_VALUE = 0, EXPECT_KEY = 1, EXPECT_COLON = 2, EXPECT_SEPARATOR = 3, EXPECT_END = 4;
+	private static final int TOKEN_NONE = 0, TOKEN_STRING = 1, TOKEN_ESCAPE = 2, TOKEN_UNICODE = 3, TOKEN_NUMBER = 4, TOKEN_LITERAL = 5,
+			TOKEN_SLASH = 6, TOKEN_COMMENT = 7;
+	/**
+	 * The numbers accepted by the original lexer, which include infinities and imaginary and complex numbers. This is only checked when the
+	 * text of a number is not a plain JSON number.
+	 */
+	private static final Pattern EXTENDED_NUMBER;
+	static {
+		String sign = "[\\+\\-]", basicNumber = "([0-9]+(\\.[0-9]*)?|0?\\.[0-9]+)", exp = basicNumber + "([eE]" + sign + "?" + basicNumber + ")?",
+				infinity = "(" + exp + "|infinity)"; //To avoid copy-pasting
+		EXTENDED_NUMBER = Pattern.compile("(" + sign + "?" + infinity + "(" + sign + "(i" + infinity + "|" + infinity + "i|i))?|" + sign + "?(i" + infinity +
+				"|" + infinity + "i|i)(" + sign + infinity + ")?)", Pattern.CASE_INSENSITIVE);
+	}
+	
+	/**
+	 * Receives the structural events of a syntax-only parse and discards them
+	 */
+	private static final JSONHandler IGNORE = new JSONHandler() {
+		@Override
+		public void startObject() {/* Nothing to do */}
+		
+		@Override
+		public void endObject() {/* Nothing to do */}
+		
+		@Override
+		public void startArray() {/* Nothing to do */}
+		
+		@Override
+		public void endArray() {/* Nothing to do */}
+		
+		@Override
+		public void key(String key) {/* Nothing to do */}
+		
+		@Override
+		public void stringValue(String value) {/* Nothing to do */}
+		
+		@Override
+		public void numberValue(Number value) {/* Nothing to do */}
+		
+		@Override
+		public void booleanValue(boolean value) {/* Nothing to do */}
+		
+		@Override
+		public void nullValue() {/* Nothing to do */}
+	};
+	
+	private final JSONHandler handler;
+	private final boolean comments, multipleValues, syntaxOnly;
+	private final int maxDepth, maxStringLength;
+	private final long maxLength, maxElements;
+	private byte[] containers = new byte[16];
+	private char[] buffer = new char[64];
+	private int depth, expect, token, length, unicode, unicodeDigits;
+	private boolean key, finished;
+	private long offset, elements;
+	/**
+	 * The offset at which the current document started. In multiple-values mode, the limits apply to each document separately
+	 */
+	private long documentStart;
+	
+	/**
+	 * Constructs a new {@link JSONStreamParser} that reports to the given {@link JSONHandler}.
+	 * 
+	 * @param handler
+	 *            the {@link JSONHandler} that receives the parsed structure
+	 */
+	public JSONStreamParser(JSONHandler handler) {
+		this(handler, false);
+	}
+	
+	/**
+	 * Constructs a new {@link JSONStreamParser} that reports to the given {@link JSONHandler}.
+	 * 
+	 * @param handler
+	 *            the {@link JSONHandler} that receives the parsed structure
+	 * @param multipleValues
+	 *            if true, the text may contain any number of JSON values one after another (optionally separated by whitespace), and
+	 *            {@link #finish()} does not require there to be any
+	 */
+	JSONStreamParser(JSONHandler handler, boolean multipleValues) {
+		this(handler, multipleValues, false);
+	}
+	
+	/**
+	 * Constructs a new {@link JSONStreamParser} that reports to the given {@link JSONHandler}.
+	 * 
+	 * @param handler
+	 *            the {@link JSONHandler} that receives the parsed structure
+	 * @param multipleValues
+	 *            if true, the text may contain any number of JSON values one after another (optionally separated by whitespace), and
+	 *            {@link #finish()} does not require there to be any
+	 * @param syntaxOnly
+	 *            if true, the parser only checks the syntax of the text. The contents of {@link String Strings} are not kept, numbers are
+	 *            checked against the default number syntax without being converted, and {@code handler} only receives the structural events
+	 */
+	JSONStreamParser(JSONHandler handler, boolean multipleValues, boolean syntaxOnly) {
+		this.handler = handler;
+		this.multipleValues = multipleValues;
+		this.syntaxOnly = syntaxOnly;
+		comments = JSONSystem.areCommentsEnabled();
+		maxDepth = JSONSystem.getMaxDepth();
+		maxLength = JSONSystem.getMaxDocumentLength();
+		maxStringLength = JSONSystem.getMaxStringLength();
+		maxElements = JSONSystem.getMaxElements();
+		reset();
+	}
+	
+	/**
+	 * Resets the parser so that it can read a new piece of JSON text. The {@link JSONHandler} is <i>not</i> reset.
+	 */
+	public void reset() {
+		depth = expect = token = length = 0;
+		key = finished = false;
+		offset = elements = documentStart = 0;
+	}
+	
+	/**
+	 * Parses the next chunk of JSON text.
+	 * 
+	 * @param text
+	 *            the chunk to parse
+	 * @throws JSONSyntaxException
+	 *             if the chunk contains a syntax error
+	 */
+	public void feed(CharSequence text) {
+		for (int i = 0, len = text.length(); i < len; i++)
+			accept(text.charAt(i));
+	}
+	
+	/**
+	 * Parses the next chunk of JSON text.
+	 * 
+	 * @param text
+	 *            the array containing the chunk to parse
+	 * @param offset
+	 *            the index of the first character in the chunk
+	 * @param length
+	 *            the number of characters in the chunk
+	 * @throws JSONSyntaxException
+	 *             if the chunk contains a syntax error
+	 */
+	public void feed(char[] text, int offset, int length) {
+		for (int i = offset, lim = offset + length; i < lim; i++)
+			accept(text[i]);
+	}
+	
+	/**
+	 * Signals that there is no more JSON text and completes any value that was still being read.
+	 * 
+	 * @throws JSONSyntaxException
+	 *             if the text ended before the JSON value was complete
+	 */
+	public void finish() {
+		if (finished)
+			return;
+		switch (token) {
+			case TOKEN_STRING:
+			case TOKEN_ESCAPE:
+			case TOKEN_UNICODE:
+				throw error("Unterminated string");
+			case TOKEN_SLASH:
+				throw error("Unexpected character '/'");
+			case TOKEN_NUMBER:
+				token = TOKEN_NONE;
+				endNumber();
+				break;
+			case TOKEN_LITERAL:
+				token = TOKEN_NONE;
+				endLiteral();
+				break;
+		}
+		if (expect != EXPECT_END && !(multipleValues && depth == 0 && expect == EXPECT_VALUE))
+			throw error(depth == 0 && expect == EXPECT_VALUE ? "Empty input" : "Unexpected end of input");
+		finished = true;
+	}
+	
+	/**
+	 * @return the number of characters that the parser has consumed since it was created or last {@link #reset()}
+	 */
+	public long getOffset() {
+		return offset;
+	}
+	
+	/**
+	 * @return the current nesting depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * Reads all of the JSON text in {@code json} into a new {@link JSONStreamParser} that reports to {@code handler}.
+	 * 
+	 * @param json
+	 *            the {@link Reader} from which to read the JSON text
+	 * @param handler
+	 *            the {@link JSONHandler} that receives the parsed structure
+	 * @throws IOException
+	 *             if an error occurs while reading from the {@link Reader}
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 */
+	public static void parse(Reader json, JSONHandler handler) throws IOException {
+		JSONStreamParser parser = new JSONStreamParser(handler);
+		char[] chunk = new char[8192];
+		for (int read; (read = json.read(chunk)) != -1;)
+			parser.feed(chunk, 0, read);
+		parser.finish();
+	}
+	
+	/**
+	 * Checks the syntax of {@code json} without building a tree.
+	 * 
+	 * @param json
+	 *            the JSON text to check
+	 * @return a {@link JSONSyntaxResult} describing the first syntax error, if any
+	 */
+	static JSONSyntaxResult validate(CharSequence json) {
+		JSONStreamParser parser = new JSONStreamParser(IGNORE, false, true);
+		try {
+			parser.feed(json);
+			parser.finish();
+			return JSONSyntaxResult.VALID;
+		}
+		catch (JSONSyntaxException e) {
+			return new JSONSyntaxResult(parser.getOffset(), e.getMessage());
+		}
+	}
+	
+	/**
+	 * Checks the syntax of the UTF-8 encoded JSON text in {@code json} without building a tree. Bytes that are not valid UTF-8 are reported as
+	 * a syntax error.
+	 * 
+	 * @param json
+	 *            the {@link InputStream} from which to read the JSON text. It is not closed
+	 * @return a {@link JSONSyntaxResult} describing the first syntax error, if any
+	 * @throws IOException
+	 *             if an error occurs while reading from the {@link InputStream}
+	 */
+	static JSONSyntaxResult validate(InputStream json) throws IOException {
+		JSONStreamParser parser = new JSONStreamParser(IGNORE, false, true);
+		Reader reader = new InputStreamReader(json, StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT));
+		char[] chunk = new char[8192];
+		try {
+			for (int read; (read = reader.read(chunk)) != -1;)
+				parser.feed(chunk, 0, read);
+			parser.finish();
+			return JSONSyntaxResult.VALID;
+		}
+		catch (JSONSyntaxException e) {
+			return new JSONSyntaxResult(parser.getOffset(), e.getMessage());
+		}
+		catch (CharacterCodingException e) {
+			return new JSONSyntaxResult(parser.getOffset(), "Invalid UTF-8 at offset " + parser.getOffset());
+		}
+	}
+	
+	private void accept(char c) {
+		if (finished)
+			throw error("Unexpected content after the end of the JSON value");
+		if (offset - documentStart == maxLength)
+			throw error("The JSON text is longer than the maximum of " + maxLength + " characters");
+		switch (token) {
+			case TOKEN_STRING:
+				if (c == '"' || c == '\u201D') {
+					token = TOKEN_NONE;
+					endString();
+				}
+				else if (c == '\\')
+					token = TOKEN_ESCAPE;
+				else
+					appendString(c);
+				break;
+			case TOKEN_ESCAPE:
+				token = TOKEN_STRING;
+				switch (c) {
+					case 't':
+						appendString('\t');
+						break;
+					case 'b':
+						appendString('\b');
+						break;
+					case 'n':
+						appendString('\n');
+						break;
+					case 'r':
+						appendString('\r');
+						break;
+					case 'f':
+						appendString('\f');
+						break;
+					case 'u':
+						token = TOKEN_UNICODE;
+						unicode = unicodeDigits = 0;
+						break;
+					case '"':
+					case '\'':
+					case '/':
+					case '\\':
+					case '\u201C':
+					case '\u201D':
+						appendString(c);
+						break;
+					default:
+						throw error("Invalid escape sequence '\\" + c + "'");
+				}
+				break;
+			case TOKEN_UNICODE:
+				int digit = Character.digit(c, 16);
+				if (digit == -1)
+					throw error("Invalid Unicode escape sequence");
+				unicode = (unicode << 4) | digit;
+				if (++unicodeDigits == 4) {
+					appendString((char) unicode);
+					token = TOKEN_STRING;
+				}
+				break;
+			case TOKEN_NUMBER:
+				if (isNumberPart(c) || Character.isLetter(c)) //Letters are included so that extended numbers are read as a single token
+					append(c);
+				else {
+					token = TOKEN_NONE;
+					endNumber();
+					dispatch(c);
+				}
+				break;
+			case TOKEN_LITERAL:
+				if (Character.isLetter(c) || isNumberPart(c)) //Extended numbers such as i2 and infinity+2i can start with a letter
+					append(c);
+				else {
+					token = TOKEN_NONE;
+					endLiteral();
+					dispatch(c);
+				}
+				break;
+			case TOKEN_SLASH:
+				if (c != '/')
+					throw error("Unexpected character '/'");
+				token = TOKEN_COMMENT;
+				break;
+			case TOKEN_COMMENT:
+				if (c == '\n' || c == '\r')
+					token = TOKEN_NONE;
+				break;
+			default:
+				dispatch(c);
+		}
+		offset++;
+	}
+	
+	private void dispatch(char c) {
+		if (Character.isWhitespace(c))
+			return;
+		if (c == '/' && comments) {
+			token = TOKEN_SLASH;
+			return;
+		}
+		if (expect == EXPECT_END && multipleValues)
+			expect = EXPECT_VALUE;
+		switch (expect) {
+			case EXPECT_VALUE:
+				if (c != ']' && ++elements > maxElements)
+					throw error("The JSON text contains more than the maximum of " + maxElements + " values");
+				if (c == '"' || c == '\u201C')
+					startString(false);
+				else if (c == '{') {
+					push(OBJECT);
+					expect = EXPECT_KEY;
+					handler.startObject();
+				}
+				else if (c == '[') {
+					push(ARRAY);
+					handler.startArray();
+				}
+				else if (c == ']' && depth > 0 && containers[depth - 1] == ARRAY) //Empty arrays and dangling commas
+					endArray();
+				else if (isNumberStart(c)) {
+					token = TOKEN_NUMBER;
+					length = 0;
+					append(c);
+				}
+				else if (Character.isLetter(c)) {
+					token = TOKEN_LITERAL;
+					length = 0;
+					append(c);
+				}
+				else
+					throw error("Unexpected character '" + c + "'");
+				break;
+			case EXPECT_KEY:
+				if (c == '"' || c == '\u201C')
+					startString(true);
+				else if (c == '}') //Empty objects and dangling commas
+					endObject();
+				else
+					throw error("Expected a key but found '" + c + "'");
+				break;
+			case EXPECT_COLON:
+				if (c != ':')
+					throw error("Expected ':' but found '" + c + "'");
+				expect = EXPECT_VALUE;
+				break;
+			case EXPECT_SEPARATOR:
+				if (c == ',')
+					expect = containers[depth - 1] == OBJECT ? EXPECT_KEY : EXPECT_VALUE;
+				else if (c == '}' && containers[depth - 1] == OBJECT)
+					endObject();
+				else if (c == ']' && containers[depth - 1] == ARRAY)
+					endArray();
+				else
+					throw error("Expected ',' or the end of the enclosing structure but found '" + c + "'");
+				break;
+			default:
+				throw error("Unexpected content after the end of the JSON value");
+		}
+	}
+	
+	private void startString(boolean isKey) {
+		key = isKey;
+		token = TOKEN_STRING;
+		length = 0;
+	}
+	
+	private void endString() {
+		if (key) {
+			if (!syntaxOnly)
+				handler.key(new String(buffer, 0, length));
+			expect = EXPECT_COLON;
+		}
+		else {
+			if (!syntaxOnly)
+				handler.stringValue(new String(buffer, 0, length));
+			endValue();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void endNumber() {
+		if (syntaxOnly) {
+			if (!JSONNumberReader.isValid(buffer, 0, length) && !isExtendedNumber())
+				throw error("Invalid number '" + new String(buffer, 0, length) + "'");
+			endValue();
+			return;
+		}
+		Function<String, ? extends Object> reader = JSONSystem.getReader();
+		Number number;
+		if (reader == JSONSystem.defaultReader) {
+			if ((number = JSONNumberReader.read(buffer, 0, length)) == null) {
+				int sign = buffer[0] == '-' || buffer[0] == '+' ? 1 : 0;
+				if (length != sign + 8 || !new String(buffer, sign, 8).equalsIgnoreCase("infinity")) //The default reader only supports the infinities
+					throw error("Invalid number '" + new String(buffer, 0, length) + "'");
+				number = buffer[0] == '-' ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			}
+		}
+		else {
+			try {
+				number = ((Function<String, ? extends Number>) reader).apply(new String(buffer, 0, length));
+			}
+			catch (NumberFormatException e) {
+				throw error("Invalid number '" + new String(buffer, 0, length) + "'");
+			}
+		}
+		handler.numberValue(number);
+		endValue();
+	}
+	
+	private void endLiteral() {
+		if (literalIs("true"))
+			handler.booleanValue(true);
+		else if (literalIs("false"))
+			handler.booleanValue(false);
+		else if (literalIs("null"))
+			handler.nullValue();
+		else if (isExtendedNumber()) {
+			endNumber();
+			return;
+		}
+		else
+			throw error("Unknown literal '" + new String(buffer, 0, length) + "'");
+		endValue();
+	}
+	
+	private boolean isExtendedNumber() {
+		return EXTENDED_NUMBER.matcher(CharBuffer.wrap(buffer, 0, length)).matches();
+	}
+	
+	private boolean literalIs(String literal) {
+		if (length != literal.length())
+			return false;
+		for (int i = 0; i < length; i++)
+			if (Character.toLowerCase(buffer[i]) != literal.charAt(i))
+				return false;
+		return true;
+	}
+	
+	private void endObject() {
+		depth--;
+		handler.endObject();
+		endValue();
+	}
+	
+	private void endArray() {
+		depth--;
+		handler.endArray();
+		endValue();
+	}
+	
+	private void endValue() {
+		if (depth > 0)
+			expect = EXPECT_SEPARATOR;
+		else {
+			expect = EXPECT_END;
+			if (multipleValues) { //The next document gets its own length and element limits
+				documentStart = offset + 1;
+				elements = 0;
+			}
+		}
+	}
+	
+	private void push(byte container) {
+		if (depth == maxDepth)
+			throw error("The JSON text is nested more deeply than the maximum of " + maxDepth + " levels");
+		if (depth == containers.length)
+			containers = Arrays.copyOf(containers, depth * 2);
+		containers[depth++] = container;
+		expect = EXPECT_VALUE;
+	}
+	
+	private void appendString(char c) {
+		if (length == maxStringLength)
+			throw error("A string in the JSON text is longer than the maximum of " + maxStringLength + " characters");
+		if (syntaxOnly)
+			length++;
+		else
+			append(c);
+	}
+	
+	private void append(char c) {
+		if (length == buffer.length)
+			buffer = Arrays.copyOf(buffer, length * 2);
+		buffer[length++] = c;
+	}
+	
+	private static boolean isNumberStart(char c) {
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+	}
+	
+	private static boolean isNumberPart(char c) {
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+	}
+	
+	private JSONSyntaxException error(String message) {
+		return new JSONSyntaxException(message + " at offset " + offset);
+	}
+}
@@ -1,5 +1,7 @@
 package toberumono.json;
 
+import java.io.IOException;
+
 /**
  * Represents a {@link String} in JSON text.
  * 
@@ -22,6 +24,11 @@ public class JSONString extends JSONValue<String> {
 		return toJSONString(value());
 	}
 
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		generator.value(value());
+	}
+	
 	@Override
 	public JSONString deepCopy() {
 		return new JSONString(value());
@@ -36,25 +43,54 @@ public class JSONString extends JSONValue<String> {
 	 * @return {@code str} in a form that can be written to a valid JSON file
 	 */
 	public static String toJSONString(String str) {
-		StringBuilder sb = new StringBuilder(str.length());
-		str.chars().forEach(c -> {
-			if (c == '\t')
-				sb.append("\\t");
-			else if (c == '\b')
-				sb.append("\\b");
-			else if (c == '\n')
-				sb.append("\\n");
-			else if (c == '\r')
-				sb.append("\\r");
-			else if (c == '\f')
-				sb.append("\\f");
-			else if (c == '\"')
-				sb.append("\\\"");
-			else if (c == '\\')
-				sb.append("\\\\");
-			else
-				sb.append((char) c);
-		});
-		return "\"" + sb.toString() + "\"";
+		int i = 0;
+		while (i < str.length() && escape(str.charAt(i)) == null)
+			i++;
+		if (i == str.length()) //Most strings do not need to be escaped
+			return "\"" + str + "\"";
+		return appendJSONString(new StringBuilder(str.length() + 8), str).toString();
+	}
+	
+	/**
+	 * Appends the JSON form of {@code str} (see {@link #toJSONString(String)}) to {@code sb}.
+	 * 
+	 * @param sb
+	 *            the {@link StringBuilder} to which the escaped {@link String} should be appended
+	 * @param str
+	 *            the {@link String} to convert to a valid JSON string
+	 * @return {@code sb}
+	 */
+	static StringBuilder appendJSONString(StringBuilder sb, String str) {
+		sb.append('"');
+		int start = 0;
+		for (int i = 0; i < str.length(); i++) {
+			String escaped = escape(str.charAt(i));
+			if (escaped != null) {
+				sb.append(str, start, i).append(escaped);
+				start = i + 1;
+			}
+		}
+		return sb.append(str, start, str.length()).append('"');
+	}
+	
+	private static String escape(char c) {
+		switch (c) {
+			case '\t':
+				return "\\t";
+			case '\b':
+				return "\\b";
+			case '\n':
+				return "\\n";
+			case '\r':
+				return "\\r";
+			case '\f':
+				return "\\f";
+			case '"':
+				return "\\\"";
+			case '\\':
+				return "\\\\";
+			default:
+				return null;
+		}
 	}
 }
@@ -0,0 +1,48 @@
+package toberumono.json;
+
+/**
+ * The outcome of checking the syntax of a piece of JSON text without building a tree from it.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#validate(CharSequence)
+ */
+public final class JSONSyntaxResult {
+	/**
+	 * The result for syntactically valid JSON text
+	 */
+	static final JSONSyntaxResult VALID = new JSONSyntaxResult(-1, null);
+	
+	private final long errorOffset;
+	private final String message;
+	
+	JSONSyntaxResult(long errorOffset, String message) {
+		this.errorOffset = errorOffset;
+		this.message = message;
+	}
+	
+	/**
+	 * @return {@code true} if the JSON text is syntactically valid
+	 */
+	public boolean isValid() {
+		return message == null;
+	}
+	
+	/**
+	 * @return the number of characters that were read before the first syntax error was found, or -1 if the JSON text is valid
+	 */
+	public long getErrorOffset() {
+		return errorOffset;
+	}
+	
+	/**
+	 * @return a description of the first syntax error, or {@code null} if the JSON text is valid
+	 */
+	public String getMessage() {
+		return message;
+	}
+	
+	@Override
+	public String toString() {
+		return isValid() ? "valid" : message;
+	}
+}
@@ -1,36 +1,28 @@
 package toberumono.json;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
+import toberumono.json.exceptions.JSONSerializationException;
 import toberumono.json.exceptions.JSONSyntaxException;
-import toberumono.lexer.BasicDescender;
-import toberumono.lexer.BasicLexer;
-import toberumono.lexer.BasicRule;
-import toberumono.lexer.errors.EmptyInputException;
-import toberumono.lexer.errors.LexerException;
-import toberumono.lexer.util.CommentPatterns;
-import toberumono.lexer.util.DefaultIgnorePatterns;
-import toberumono.structures.sexpressions.BasicConsType;
-import toberumono.structures.sexpressions.ConsCell;
-import toberumono.structures.sexpressions.ConsType;
-import toberumono.structures.tuples.Pair;
-import toberumono.utils.general.Strings;
+import toberumono.json.exceptions.JSONValidationException;
 
 /**
  * Core class for this library. Contains methods to read from and write to JSON files as well as change the type used for numbers when reading from
@@ -45,18 +37,16 @@ import toberumono.utils.general.Strings;
 public class JSONSystem {
 	
 	/**
-	 * The default method by which the {@link JSONSystem} reads numbers from {@link String Strings}.
+	 * The default method by which the {@link JSONSystem} reads numbers from {@link String Strings}. Integers that fit in an {@code int} are read
+	 * as {@link Integer Integers}, and all other numbers are read as {@link Double Doubles}.<br>
+	 * While this is the active reader, the parsers convert numbers directly from their input buffers without creating {@link String Strings}.
 	 */
-	public static final Function<String, ? extends Number> defaultReader = s -> {
-		try {
-			return Integer.parseInt(s);
-		}
-		catch (NumberFormatException e) {
-			return Double.parseDouble(s);
-		}
-	};
+	public static final Function<String, ? extends Number> defaultReader = JSONNumberReader::read;
 	/**
-	 * The default method by which the {@link JSONSystem} writes numbers to {@link String Strings}.
+	 * The default method by which the {@link JSONSystem} writes numbers to {@link String Strings}.<br>
+	 * While this is the active writer, the library formats {@link Double Doubles} and {@link Float Floats} with the shortest decimal that parses
+	 * back to the same value (written as, for example, {@code 1E10} rather than {@code 1.0E10}) and formats integral values without allocating.
+	 * Other {@link Number Numbers} are written with {@link Number#toString()}.
 	 */
 	public static final Function<? extends Number, String> defaultWriter = Number::toString;
 	/**
@@ -67,62 +57,10 @@ public class JSONSystem {
 	private static Function<? extends Number, String> writer = defaultWriter;
 	private static Class<? extends Number> numberType = defaultNumberType;
 	
-	private static final ConsType JSONValueType = new BasicConsType("JSONValue");
-	private static final ConsType JSONArrayType = new BasicConsType("JSONArray");
-	private static final ConsType JSONObjectType = new BasicConsType("JSONObject");
-	private static final ConsType JSONKeyValuePairType = new BasicConsType("JSONKeyValuePair");
-	private static final BasicLexer lexer = new BasicLexer(DefaultIgnorePatterns.WHITESPACE);
 	private static boolean comments = Boolean.parseBoolean(System.getProperty("json.comments", "true"));
 	private static String indentation = System.getProperty("json.indentation", "\t");
-	
-	static {
-		String sign = "[\\+\\-]", basicNumber = "([0-9]+(\\.[0-9]*)?|0?\\.[0-9]+)", exp = basicNumber + "([eE]" + sign + "?" + basicNumber + ")?", infinity = "(" + exp + "|infinity)"; //To avoid copy-pasting
-		lexer.addRule("String", new BasicRule(Pattern.compile("[\"\u201C]((\\\\[tbnrf'\"\u201C\u201D\\\\]|[^\"\u201C\u201D\\\\])*?)[\"\u201D]"), //Supports straight quotes and Unicode left and right-quotes
-				(l, s, m) -> {
-					try {
-						return new ConsCell(new JSONString(Strings.unescape(m.group(1))), JSONValueType);
-					}
-					catch (UnsupportedEncodingException e) {
-						return new ConsCell(new JSONString(m.group(1)), JSONValueType);
-					}
-				}));
-		lexer.addRule("Number", new BasicRule(
-				Pattern.compile("(" + sign + "?" + infinity + "(" + sign + "(i" + infinity + "|" + infinity + "i|i))?|" + sign + "?(i" + infinity + "|" + infinity + "i|i)(" + sign + infinity + ")?)",
-						Pattern.CASE_INSENSITIVE),
-				(l, s, m) -> new ConsCell(new JSONNumber<>(JSONSystem.reader.apply(m.group())), JSONValueType)));
-		lexer.addRule("Boolean", new BasicRule(Pattern.compile("(true|false)", Pattern.CASE_INSENSITIVE),
-				(l, s, m) -> new ConsCell(new JSONBoolean(Boolean.valueOf(m.group())), JSONValueType)));
-		lexer.addRule("Null", new BasicRule(Pattern.compile("null", Pattern.CASE_INSENSITIVE & Pattern.LITERAL),
-				(l, s, m) -> new ConsCell(new JSONNull(), JSONValueType)));
-		lexer.addRule("Colon", new BasicRule(Pattern.compile(":", Pattern.LITERAL), (l, s, m) -> {
-			String key = ((JSONString) s.popLast().getCar()).value();
-			return new ConsCell(new Pair<String, JSONData<?>>(key, (JSONData<?>) l.getNextConsCell(s, true).getCar()), JSONKeyValuePairType);
-		}));
-		lexer.addRule("Comma", new BasicRule(Pattern.compile(",", Pattern.LITERAL), (l, s, m) -> {
-			try {
-				return l.getNextConsCell(s, true);
-			}
-			catch (EmptyInputException e) { //This can occur if there is a dangling comma
-				return null;
-			}
-		}));
-		lexer.addDescender("Array", new BasicDescender("[", "]", (l, s, m) -> {
-			JSONArray array = new JSONArray();
-			for (; m != null; m = m.getNext())
-				array.add((JSONData<?>) m.getCar());
-			return new ConsCell(array, JSONArrayType);
-		}));
-		lexer.addDescender("Object", new BasicDescender("{", "}", (l, s, m) -> {
-			JSONObject object = new JSONObject();
-			for (; m != null; m = m.getNext()) {
-				@SuppressWarnings("unchecked") Pair<String, JSONData<?>> pair = (Pair<String, JSONData<?>>) m.getCar();
-				object.put(pair.getX(), pair.getY());
-			}
-			return new ConsCell(object, JSONObjectType);
-		}));
-		if (comments)
-			lexer.addIgnore(CommentPatterns.SINGLE_LINE_COMMENT);
-	}
+	private static int maxDepth = Integer.getInteger("json.maxDepth", 1000), maxStringLength = Integer.getInteger("json.maxStringLength", Integer.MAX_VALUE);
+	private static long maxDocumentLength = Long.getLong("json.maxDocumentLength", Long.MAX_VALUE), maxElements = Long.getLong("json.maxElements", Long.MAX_VALUE);
 	
 	/**
 	 * Enable parsing comments in JSON text.<br>
@@ -132,10 +70,7 @@ public class JSONSystem {
 	 * @see #setComments(boolean)
 	 */
 	public static final void enableComments() {
-		if (!comments) {
-			lexer.addIgnore(CommentPatterns.SINGLE_LINE_COMMENT);
-			comments = true;
-		}
+		comments = true;
 	}
 	
 	/**
@@ -146,10 +81,7 @@ public class JSONSystem {
 	 * @see #setComments(boolean)
 	 */
 	public static final void disableComments() {
-		if (comments) {
-			lexer.removeIgnore(CommentPatterns.SINGLE_LINE_COMMENT);
-			comments = false;
-		}
+		comments = false;
 	}
 	
 	/**
@@ -168,6 +100,97 @@ public class JSONSystem {
 		JSONSystem.indentation = indentation;
 	}
 	
+	/**
+	 * Serialization reuses one character buffer and one byte buffer per thread. Buffers that grow past this size while serializing a large
+	 * document are dropped afterward instead of being kept for reuse.<br>
+	 * Defaults to the value of the {@code json.bufferLimit} system property, or 65536 if it is not set.
+	 * 
+	 * @return the largest capacity (in chars or bytes) that a per-thread serialization buffer can have and still be kept for reuse
+	 * @see #getBufferStatistics()
+	 */
+	public static int getMaxRetainedBufferSize() {
+		return JSONBufferPool.getMaxRetainedSize();
+	}
+	
+	/**
+	 * @param size
+	 *            the largest capacity (in chars or bytes) that a per-thread serialization buffer can have and still be kept for reuse. Setting
+	 *            this to 0 effectively disables pooling
+	 * @see #getMaxRetainedBufferSize()
+	 */
+	public static void setMaxRetainedBufferSize(int size) {
+		JSONBufferPool.setMaxRetainedSize(size);
+	}
+	
+	/**
+	 * @return a snapshot of how often the per-thread serialization buffers have been reused since the statistics were last reset
+	 * @see #resetBufferStatistics()
+	 */
+	public static JSONBufferStatistics getBufferStatistics() {
+		return JSONBufferPool.getStatistics();
+	}
+	
+	/**
+	 * Resets the counts returned by {@link #getBufferStatistics()} to 0.
+	 */
+	public static void resetBufferStatistics() {
+		JSONBufferPool.resetStatistics();
+	}
+	
+	/**
+	 * @return the {@link JSONMetrics} that parse and serialize operations are currently reported to, or {@code null} if there are none
+	 * @see #setMetrics(JSONMetrics)
+	 */
+	public static JSONMetrics getMetrics() {
+		return JSONEvents.getMetrics();
+	}
+	
+	/**
+	 * Sets the {@link JSONMetrics} that the {@code parseJSON}, {@code readJSON}, {@code loadJSON}, and {@code writeJSON} methods report to.<br>
+	 * Independently of this, those methods emit the {@code toberumono.json.Parse} and {@code toberumono.json.Serialize} JDK Flight Recorder
+	 * events (with the source or target file, size, node count, and maximum depth) when the JVM supports Flight Recorder and the events are
+	 * enabled in a running recording. When neither is the case, the operations are not measured.
+	 * 
+	 * @param metrics
+	 *            the {@link JSONMetrics} to report to, or {@code null} to stop reporting
+	 * @see JSONMetricsCollector
+	 */
+	public static void setMetrics(JSONMetrics metrics) {
+		JSONEvents.setMetrics(metrics);
+	}
+	
+	/**
+	 * Estimates the number of bytes of heap that {@code root} and everything reachable from it retain, including the {@link JSONObject}
+	 * tables and entries, the {@link JSONArray} backing arrays, boxed numbers, and the contents of keys and {@link String Strings}.<br>
+	 * This walks the entire tree. For large trees, {@link #estimateRetainedBytes(JSONData, int)} is considerably faster.
+	 * 
+	 * @param root
+	 *            the root of the tree to measure
+	 * @return the estimated number of bytes retained by the tree
+	 */
+	public static long estimateRetainedBytes(JSONData<?> root) {
+		return JSONMemory.estimate(root, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Estimates the number of bytes of heap that {@code root} and everything reachable from it retain by sampling.<br>
+	 * In each {@link JSONObject} or {@link JSONArray} with more than {@code sampleSize} children, only {@code sampleSize} evenly-spaced children
+	 * are measured and the result is scaled up to the full number of children. The estimate is therefore accurate for containers whose
+	 * elements have a similar shape (such as arrays of records) and walks at most {@code sampleSize} children per container.
+	 * 
+	 * @param root
+	 *            the root of the tree to measure
+	 * @param sampleSize
+	 *            the maximum number of children to measure in each container
+	 * @return the estimated number of bytes retained by the tree
+	 * @throws IllegalArgumentException
+	 *             if {@code sampleSize} is less than 1
+	 * @see #estimateRetainedBytes(JSONData)
+	 */
+	public static long estimateRetainedBytes(JSONData<?> root, int sampleSize) {
+		return JSONMemory.estimate(root, sampleSize);
+	}
+	
 	/**
 	 * @return whether parsing of comments in JSON text is currently enabled
 	 */
@@ -193,6 +216,108 @@ public class JSONSystem {
 			disableComments();
 	}
 	
+	/**
+	 * Defaults to the value of the {@code json.maxDepth} system property, or 1000 if it is not set.
+	 * 
+	 * @return the maximum depth to which objects and arrays can be nested in parsed JSON text
+	 * @see #setMaxDepth(int)
+	 */
+	public static int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	/**
+	 * Sets the maximum depth to which objects and arrays can be nested in JSON text that is parsed after this call. Text that is nested more
+	 * deeply is rejected with a {@link JSONSyntaxException} as soon as the parser reaches the offending bracket.
+	 * 
+	 * @param depth
+	 *            the maximum nesting depth
+	 * @throws IllegalArgumentException
+	 *             if {@code depth} is negative
+	 */
+	public static void setMaxDepth(int depth) {
+		if (depth < 0)
+			throw new IllegalArgumentException("The maximum depth cannot be negative");
+		maxDepth = depth;
+	}
+	
+	/**
+	 * Defaults to the value of the {@code json.maxDocumentLength} system property, or {@link Long#MAX_VALUE} (no limit) if it is not set.
+	 * 
+	 * @return the maximum number of characters in parsed JSON text
+	 * @see #setMaxDocumentLength(long)
+	 */
+	public static long getMaxDocumentLength() {
+		return maxDocumentLength;
+	}
+	
+	/**
+	 * Sets the maximum number of characters in JSON text that is parsed after this call. Longer text is rejected with a
+	 * {@link JSONSyntaxException} once the limit is reached, and files that are larger than this number of bytes are rejected by
+	 * {@link #loadJSON(Path)} before they are read.
+	 * 
+	 * @param length
+	 *            the maximum length of a JSON document
+	 * @throws IllegalArgumentException
+	 *             if {@code length} is negative
+	 */
+	public static void setMaxDocumentLength(long length) {
+		if (length < 0)
+			throw new IllegalArgumentException("The maximum document length cannot be negative");
+		maxDocumentLength = length;
+	}
+	
+	/**
+	 * Defaults to the value of the {@code json.maxStringLength} system property, or {@link Integer#MAX_VALUE} (no limit) if it is not set.
+	 * 
+	 * @return the maximum number of characters in a single key or {@link String} in parsed JSON text (after escape sequences are decoded)
+	 * @see #setMaxStringLength(int)
+	 */
+	public static int getMaxStringLength() {
+		return maxStringLength;
+	}
+	
+	/**
+	 * Sets the maximum number of characters in a single key or {@link String} (after escape sequences are decoded) in JSON text that is parsed
+	 * after this call. Longer strings are rejected with a {@link JSONSyntaxException} before they are buffered past the limit. Numbers and
+	 * literals are only bounded by {@link #setMaxDocumentLength(long)}.
+	 * 
+	 * @param length
+	 *            the maximum length of a single key or {@link String}
+	 * @throws IllegalArgumentException
+	 *             if {@code length} is negative
+	 */
+	public static void setMaxStringLength(int length) {
+		if (length < 0)
+			throw new IllegalArgumentException("The maximum string length cannot be negative");
+		maxStringLength = length;
+	}
+	
+	/**
+	 * Defaults to the value of the {@code json.maxElements} system property, or {@link Long#MAX_VALUE} (no limit) if it is not set.
+	 * 
+	 * @return the maximum number of values (including objects, arrays, and everything nested in them) in parsed JSON text
+	 * @see #setMaxElements(long)
+	 */
+	public static long getMaxElements() {
+		return maxElements;
+	}
+	
+	/**
+	 * Sets the maximum number of values (including objects, arrays, and everything nested in them) in JSON text that is parsed after this
+	 * call. Text with more values is rejected with a {@link JSONSyntaxException} as soon as the first value past the limit is reached.
+	 * 
+	 * @param elements
+	 *            the maximum number of values in a JSON document
+	 * @throws IllegalArgumentException
+	 *             if {@code elements} is negative
+	 */
+	public static void setMaxElements(long elements) {
+		if (elements < 0)
+			throw new IllegalArgumentException("The maximum number of elements cannot be negative");
+		maxElements = elements;
+	}
+	
 	/**
 	 * Sets the functions used to read numbers from and write numbers to {@link String strings}.<br>
 	 * Defaults to Double::new and String::valueOf<br>
@@ -241,6 +366,13 @@ public class JSONSystem {
 		return writer;
 	}
 	
+	/**
+	 * @return the type that the {@link JSONSystem} expects numbers to have
+	 */
+	public static final Class<? extends Number> getNumberType() {
+		return numberType;
+	}
+	
 	/**
 	 * Reads the text from the file at {@code path} and then parses it as JSON text.
 	 * 
@@ -255,33 +387,160 @@ public class JSONSystem {
 	 * @see JSONData#value()
 	 */
 	public static final JSONData<?> loadJSON(Path path) throws IOException {
-		final StringBuilder sb = new StringBuilder();
-		final String sep = System.lineSeparator();
-		for (String line : Files.readAllLines(path))
-			sb.append(line).append(sep);
-		return parseJSON(sb.toString());
+		return loadJSON(path, null);
 	}
 	
 	/**
-	 * Parses already-loaded JSON text
+	 * Parses already-loaded JSON text.<br>
+	 * The parser tracks nesting with an explicit stack, so deeply-nested text cannot exhaust the call stack, and it enforces the limits set
+	 * via {@link #setMaxDepth(int)}, {@link #setMaxDocumentLength(long)}, {@link #setMaxStringLength(int)}, and {@link #setMaxElements(long)}.
+	 * The dialect that it accepts (comments, Unicode quotes, infinities, imaginary numbers, and so on) is described in {@link JSONStreamParser}.
 	 * 
 	 * @param json
 	 *            the JSON text to parse
 	 * @return the root node in the JSON text. Use {@link JSONData#value()} and {@link JSONData#type()} to access the value
 	 * @throws JSONSyntaxException
-	 *             if there is an error while parsing the JSON text
+	 *             if there is an error while parsing the JSON text or the text exceeds one of the limits
 	 * @see JSONData#type()
 	 * @see JSONData#value()
 	 */
 	public static final JSONData<?> parseJSON(String json) {
-		try {
-			JSONData<?> out = (JSONData<?>) lexer.lex(json.trim()).getCar();
-			if (out instanceof ModifiableJSONData)
-				((ModifiableJSONData) out).clearModified();
-			return out;
+		return parseJSON(json, null);
+	}
+	
+	/**
+	 * Checks whether {@code json} is syntactically valid JSON text without building a tree from it. The same dialect as
+	 * {@link #parseJSON(String)} is accepted (comments, if they are enabled, Unicode quotes, and so on), but no {@link String Strings} or
+	 * {@link Number Numbers} are created for the values in the text.
+	 * 
+	 * @param json
+	 *            the JSON text to check
+	 * @return a {@link JSONSyntaxResult} describing the first syntax error in {@code json}, if any
+	 */
+	public static final JSONSyntaxResult validate(CharSequence json) {
+		return JSONStreamParser.validate(json);
+	}
+	
+	/**
+	 * Checks whether the UTF-8 encoded text read from {@code json} is syntactically valid JSON text without building a tree from it.
+	 * 
+	 * @param json
+	 *            the {@link InputStream} from which to read the JSON text. It is not closed
+	 * @return a {@link JSONSyntaxResult} describing the first syntax error in the text, if any
+	 * @throws IOException
+	 *             if an error occurs while reading from the {@link InputStream}
+	 * @see #validate(CharSequence)
+	 */
+	public static final JSONSyntaxResult validate(InputStream json) throws IOException {
+		return JSONStreamParser.validate(json);
+	}
+	
+	/**
+	 * Checks whether the file at {@code path} contains syntactically valid JSON text without building a tree from it.
+	 * 
+	 * @param path
+	 *            the {@link Path} to the file to check. It must be encoded in UTF-8
+	 * @return a {@link JSONSyntaxResult} describing the first syntax error in the file, if any
+	 * @throws IOException
+	 *             if there is an error opening or reading the file
+	 * @see #validate(CharSequence)
+	 */
+	public static final JSONSyntaxResult validate(Path path) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			return JSONStreamParser.validate(in);
+		}
+	}
+	
+	/**
+	 * Parses already-loaded JSON text and validates it against {@code schema} while it is being parsed. Parsing stops at the first value that does
+	 * not conform to {@code schema}, so invalid input is rejected without building the whole tree.
+	 * 
+	 * @param json
+	 *            the JSON text to parse
+	 * @param schema
+	 *            the {@link JSONSchema} that the JSON text must conform to. If it is {@code null}, the text is not validated
+	 * @return the root node in the JSON text. Use {@link JSONData#value()} and {@link JSONData#type()} to access the value
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 * @throws JSONValidationException
+	 *             if the JSON text does not conform to {@code schema}
+	 * @see JSONSchema#validating(JSONHandler)
+	 */
+	public static final JSONData<?> parseJSON(String json, JSONSchema schema) {
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.PARSE);
+		JSONTreeBuilder builder = new JSONTreeBuilder();
+		JSONStreamParser parser = new JSONStreamParser(schema == null ? builder : schema.validating(builder));
+		parser.feed(json);
+		parser.finish();
+		if (span != null)
+			span.end(null, json.length(), builder.getRoot());
+		return builder.getRoot();
+	}
+	
+	/**
+	 * Reads JSON text from a {@link Reader} and validates it against {@code schema} while it is being parsed.
+	 * 
+	 * @param json
+	 *            the JSON text to parse
+	 * @param schema
+	 *            the {@link JSONSchema} that the JSON text must conform to. If it is {@code null}, the text is not validated
+	 * @return the root node in the JSON text. Use {@link JSONData#value()} and {@link JSONData#type()} to access the value
+	 * @throws IOException
+	 *             if an error occurs while reading from the {@link Reader}
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 * @throws JSONValidationException
+	 *             if the JSON text does not conform to {@code schema}
+	 * @see #parseJSON(String, JSONSchema)
+	 */
+	public static final JSONData<?> readJSON(Reader json, JSONSchema schema) throws IOException {
+		return readJSON(json, schema, null);
+	}
+	
+	private static JSONData<?> readJSON(Readable json, JSONSchema schema, Path source) throws IOException {
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.PARSE);
+		JSONTreeBuilder builder = new JSONTreeBuilder();
+		JSONStreamParser parser = new JSONStreamParser(schema == null ? builder : schema.validating(builder));
+		if (json instanceof Reader) {
+			char[] chunk = new char[8192];
+			for (int read; (read = ((Reader) json).read(chunk)) != -1;)
+				parser.feed(chunk, 0, read);
 		}
-		catch (LexerException e) {
-			throw new JSONSyntaxException(e);
+		else {
+			CharBuffer chunk = CharBuffer.allocate(8192);
+			while (json.read(chunk) != -1) {
+				chunk.flip();
+				parser.feed(chunk.array(), chunk.position(), chunk.remaining());
+				chunk.clear();
+			}
+		}
+		parser.finish();
+		if (span != null)
+			span.end(source, parser.getOffset(), builder.getRoot());
+		return builder.getRoot();
+	}
+	
+	/**
+	 * Reads the text from the file at {@code path} and validates it against {@code schema} while it is being parsed.
+	 * 
+	 * @param path
+	 *            the {@link Path} to the file to open
+	 * @param schema
+	 *            the {@link JSONSchema} that the JSON text must conform to. If it is {@code null}, the text is not validated
+	 * @return the root node in the JSON file. Use {@link JSONData#value()} and {@link JSONData#type()} to access the value and determine the type
+	 * @throws IOException
+	 *             if there is an error opening the file
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 * @throws JSONValidationException
+	 *             if the JSON text does not conform to {@code schema}
+	 * @see #parseJSON(String, JSONSchema)
+	 */
+	public static final JSONData<?> loadJSON(Path path, JSONSchema schema) throws IOException {
+		if (maxDocumentLength != Long.MAX_VALUE && Files.size(path) > maxDocumentLength) //Every character takes at least one byte
+			throw new JSONSyntaxException("The file at " + path + " is larger than the maximum of " + maxDocumentLength + " characters");
+		try (Reader r = Files.newBufferedReader(path)) {
+			return readJSON(r, schema, path);
 		}
 	}
 	
@@ -299,14 +558,7 @@ public class JSONSystem {
 	 * @see JSONData#value()
 	 */
 	public static final JSONData<?> readJSON(Readable json) throws IOException {
-		StringBuilder sb = new StringBuilder();
-		CharBuffer cbuff = CharBuffer.allocate(1024);
-		while (json.read(cbuff) != -1) {
-			cbuff.flip();
-			sb.append(cbuff);
-			cbuff.clear();
-		}
-		return parseJSON(sb.toString());
+		return readJSON(json, null, null);
 	}
 	
 	/**
@@ -323,7 +575,7 @@ public class JSONSystem {
 	 * @see JSONData#value()
 	 */
 	public static final JSONData<?> readJSON(Reader json) throws IOException {
-		return readJSON(json instanceof BufferedReader ? (BufferedReader) json : new BufferedReader(json));
+		return readJSON(json, null, null);
 	}
 	
 	/**
@@ -340,7 +592,7 @@ public class JSONSystem {
 	 * @see JSONData#value()
 	 */
 	public static final JSONData<?> readJSON(InputStream json) throws IOException {
-		return readJSON(new BufferedReader(new InputStreamReader(json)));
+		return readJSON(new InputStreamReader(json), null, null);
 	}
 	
 	/**
@@ -357,12 +609,7 @@ public class JSONSystem {
 	 * @see JSONData#value()
 	 */
 	public static final JSONData<?> readJSON(BufferedReader json) throws IOException {
-		StringBuilder sb = new StringBuilder();
-		final String sep = System.lineSeparator();
-		String line;
-		while ((line = json.readLine()) != null)
-			sb.append(line).append(sep);
-		return parseJSON(sb.toString());
+		return readJSON(json, null, null);
 	}
 	
 	/**
@@ -384,10 +631,10 @@ public class JSONSystem {
 	
 	/**
 	 * Writes the JSON data to the file at {@code path} if the file does not exist, it is created. If the file already exists, it is overwritten.<br>
-	 * This simply creates a new {@link BufferedWriter} via {@link Files#newBufferedWriter(Path, OpenOption...)} without any arguments for the
-	 * {@link OpenOption} parameter and forwards to {@link #writeJSON(JSONData, Appendable, boolean)}.<br>
+	 * This simply opens a new {@link OutputStream} via {@link Files#newOutputStream(Path, OpenOption...)} without any arguments for the
+	 * {@link OpenOption} parameter and forwards to {@link #writeJSON(JSONData, OutputStream, boolean)}, so the file is encoded in UTF-8.<br>
 	 * <b>Note</b>: For consistency with previous versions (and general good formatting), it prints a terminating newline after calling
-	 * {@link #writeJSON(JSONData, Appendable, boolean)} if formatting is enabled.
+	 * {@link #writeJSON(JSONData, OutputStream, boolean)} if formatting is enabled.
 	 * 
 	 * @param root
 	 *            the root node of the JSON data
@@ -402,11 +649,41 @@ public class JSONSystem {
 	 * @see #writeJSON(JSONData, Appendable, boolean)
 	 */
 	public static final void writeJSON(JSONData<?> root, Path path, boolean formatting) throws IOException {
-		try (Writer w = Files.newBufferedWriter(path)) {
-			writeJSON(root, w, formatting);
-			if (formatting)
-				w.write(System.lineSeparator()); //This is to keep a terminating newline
-		}
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.SERIALIZE);
+		long size = JSONFileWriter.writeDirectly(root, path, formatting);
+		if (span != null)
+			span.end(path, size, root);
+	}
+	
+	/**
+	 * Writes the JSON data to the file at {@code path} with the given {@link JSONWriteOption options}.<br>
+	 * With {@link JSONWriteOption#SKIP_IF_UNMODIFIED} or {@link JSONWriteOption#SKIP_IF_UNCHANGED}, the file is left untouched if it is known
+	 * to be up to date. With {@link JSONWriteOption#ATOMIC}, the data is written to a temporary file that is forced to the storage device and
+	 * then renamed over the target, so a crash cannot leave a partially-written file behind. Without any options, this behaves like
+	 * {@link #writeJSON(JSONData, Path, boolean)}.<br>
+	 * Once the file matches {@code root} (whether or not it was written), the modified flags of {@code root} are cleared.
+	 * 
+	 * @param root
+	 *            the root node of the JSON data
+	 * @param path
+	 *            the {@link Path} to the file
+	 * @param formatting
+	 *            if true, then the nicer formatting is used. The speed penalty is minor, so this should almost always be true
+	 * @param options
+	 *            the {@link JSONWriteOption options} that control how the file is written
+	 * @return {@code true} if the file was written, {@code false} if the write was skipped
+	 * @throws IOException
+	 *             if there is an error while writing to the file
+	 * @throws java.nio.file.AtomicMoveNotSupportedException
+	 *             if {@link JSONWriteOption#ATOMIC} is given and the file system cannot replace the file atomically. The file is left untouched
+	 * @see #writeJSON(JSONData, Path, boolean)
+	 */
+	public static final boolean writeJSON(JSONData<?> root, Path path, boolean formatting, JSONWriteOption... options) throws IOException {
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.SERIALIZE);
+		boolean written = JSONFileWriter.write(root, path, formatting, options);
+		if (span != null)
+			span.end(path, Files.size(path), root);
+		return written;
 	}
 	
 	/**
@@ -442,14 +719,234 @@ public class JSONSystem {
 	 * @see #writeJSON(JSONData, Path, boolean)
 	 */
 	public static final void writeJSON(JSONData<?> root, Appendable writer, boolean formatting) throws IOException {
-		writer.append(formatting ? root.toFormattedJSON() : root.toJSONString());
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.SERIALIZE);
+		boolean measurable = writer instanceof StringBuilder || writer instanceof StringBuffer;
+		long start = span != null && measurable ? ((CharSequence) writer).length() : 0;
+		root.writeJSON(new JSONGenerator(writer, formatting));
 		if (writer instanceof Flushable) //Handles Writers
 			((Flushable) writer).flush();
+		if (span != null)
+			span.end(null, measurable ? ((CharSequence) writer).length() - start : -1, root);
+	}
+	
+	/**
+	 * Writes the JSON data to the given {@link OutputStream} in UTF-8.<br>
+	 * Convenience method for {@link #writeJSON(JSONData, OutputStream, boolean)} with {@code formatting} set to true.
+	 * 
+	 * @param root
+	 *            the root node of the JSON data
+	 * @param out
+	 *            the {@link OutputStream} to which to write
+	 * @throws IOException
+	 *             if there is an error while writing to the {@link OutputStream}
+	 * @see #writeJSON(JSONData, OutputStream, boolean)
+	 */
+	public static final void writeJSON(JSONData<?> root, OutputStream out) throws IOException {
+		writeJSON(root, out, true);
+	}
+	
+	/**
+	 * Writes the JSON data to the given {@link OutputStream} in UTF-8.<br>
+	 * The text is encoded while it is being generated instead of being passed through a {@link Writer}: ASCII characters are written as single
+	 * bytes without going through a {@link java.nio.charset.CharsetEncoder}, and the escaped bytes of short keys are cached so that keys that
+	 * appear in many objects are only escaped and encoded once. The {@link OutputStream} is flushed, but not closed, once the data has been
+	 * written.
+	 * 
+	 * @param root
+	 *            the root node of the JSON data
+	 * @param out
+	 *            the {@link OutputStream} to which to write
+	 * @param formatting
+	 *            if true, then the nicer formatting is used
+	 * @throws IOException
+	 *             if there is an error while writing to the {@link OutputStream}
+	 * @throws java.nio.charset.CharacterCodingException
+	 *             if a key or {@link String} contains an unpaired surrogate, which cannot be encoded as UTF-8
+	 * @see #writeJSON(JSONData, Appendable, boolean)
+	 */
+	public static final void writeJSON(JSONData<?> root, OutputStream out, boolean formatting) throws IOException {
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.SERIALIZE);
+		JSONUTF8Output utf8 = new JSONUTF8Output(out);
+		root.writeJSON(new JSONGenerator(utf8, formatting));
+		utf8.flush();
+		if (span != null)
+			span.end(null, utf8.getWritten(), root);
+	}
+	
+	/**
+	 * Writes the JSON data in text form to the given {@link PrintStream}.<br>
+	 * {@link PrintStream PrintStreams} are both {@link Appendable Appendables} and {@link OutputStream OutputStreams}; this overload keeps
+	 * calls such as {@code writeJSON(root, System.out)} unambiguous and writes via {@link #writeJSON(JSONData, Appendable, boolean)} so that
+	 * the {@link PrintStream PrintStream's} own encoding is used.
+	 * 
+	 * @param root
+	 *            the root node of the JSON data
+	 * @param out
+	 *            the {@link PrintStream} to which to write
+	 * @throws IOException
+	 *             if there is an error while writing to the {@link PrintStream}
+	 */
+	public static final void writeJSON(JSONData<?> root, PrintStream out) throws IOException {
+		writeJSON(root, (Appendable) out, true);
+	}
+	
+	/**
+	 * Writes the JSON data in text form to the given {@link PrintStream}.<br>
+	 * {@link PrintStream PrintStreams} are both {@link Appendable Appendables} and {@link OutputStream OutputStreams}; this overload keeps
+	 * calls such as {@code writeJSON(root, System.out, false)} unambiguous and writes via {@link #writeJSON(JSONData, Appendable, boolean)} so
+	 * that the {@link PrintStream PrintStream's} own encoding is used.
+	 * 
+	 * @param root
+	 *            the root node of the JSON data
+	 * @param out
+	 *            the {@link PrintStream} to which to write
+	 * @param formatting
+	 *            if true, then the nicer formatting is used
+	 * @throws IOException
+	 *             if there is an error while writing to the {@link PrintStream}
+	 */
+	public static final void writeJSON(JSONData<?> root, PrintStream out, boolean formatting) throws IOException {
+		writeJSON(root, (Appendable) out, formatting);
+	}
+	
+	/**
+	 * Writes the JSON data into the given {@link ByteBuffer} in UTF-8, starting at its current position.<br>
+	 * Convenience method for {@link #writeJSON(JSONData, ByteBuffer, boolean)} with {@code formatting} set to true.
+	 * 
+	 * @param root
+	 *            the root node of the JSON data
+	 * @param buffer
+	 *            the {@link ByteBuffer} into which to write
+	 * @throws BufferOverflowException
+	 *             if {@code buffer} does not have enough space for the data. The position of {@code buffer} is left unchanged
+	 * @see #writeJSON(JSONData, ByteBuffer, boolean)
+	 */
+	public static final void writeJSON(JSONData<?> root, ByteBuffer buffer) {
+		writeJSON(root, buffer, true);
+	}
+	
+	/**
+	 * Writes the JSON data into the given {@link ByteBuffer} in UTF-8, starting at its current position. When this method returns, the
+	 * position of {@code buffer} is just past the last byte that was written. This encodes the text in the same way as
+	 * {@link #writeJSON(JSONData, OutputStream, boolean)}.
+	 * 
+	 * @param root
+	 *            the root node of the JSON data
+	 * @param buffer
+	 *            the {@link ByteBuffer} into which to write
+	 * @param formatting
+	 *            if true, then the nicer formatting is used
+	 * @throws BufferOverflowException
+	 *             if {@code buffer} does not have enough space for the data. The position of {@code buffer} is left unchanged
+	 * @throws JSONSerializationException
+	 *             if a key or {@link String} contains an unpaired surrogate, which cannot be encoded as UTF-8. The position of {@code buffer} is
+	 *             left unchanged
+	 */
+	public static final void writeJSON(JSONData<?> root, ByteBuffer buffer, boolean formatting) {
+		JSONEvents.Span span = JSONEvents.start(JSONEvents.SERIALIZE);
+		int start = buffer.position();
+		try {
+			JSONUTF8Output utf8 = new JSONUTF8Output(buffer);
+			root.writeJSON(new JSONGenerator(utf8, formatting));
+			utf8.flush();
+			if (span != null)
+				span.end(null, buffer.position() - start, root);
+		}
+		catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw e;
+		}
+		catch (IOException e) { //ByteBuffers do not throw IOExceptions, so this can only be a CharacterCodingException
+			buffer.position(start);
+			throw new JSONSerializationException(e);
+		}
+	}
+	
+	/**
+	 * Loads the JSON files at the given {@link Path Paths} concurrently.<br>
+	 * This uses virtual threads when they are available (and a pool of daemon threads otherwise), with at most twice as many files in flight
+	 * as there are processors (and never fewer than four).
+	 * 
+	 * @param paths
+	 *            the {@link Path Paths} of the files to load. Duplicates are only loaded once
+	 * @return a {@link JSONBatchResult} that maps each {@link Path} to either its root node or the {@link Exception} that prevented it from being
+	 *         loaded
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the files to be loaded
+	 * @see #loadJSON(Path)
+	 * @see #loadAll(Collection, Executor, int)
+	 */
+	public static final JSONBatchResult<JSONData<?>> loadAll(Collection<Path> paths) throws InterruptedException {
+		return loadAll(paths, JSONBatch.defaultExecutor(), JSONBatch.DEFAULT_PARALLELISM);
+	}
+	
+	/**
+	 * Loads the JSON files at the given {@link Path Paths} concurrently on the given {@link Executor}.<br>
+	 * At most {@code parallelism} tasks are submitted to {@code executor}, and each one loads files until none are left, so at most
+	 * {@code parallelism} files are read at once regardless of how many threads {@code executor} has.
+	 * 
+	 * @param paths
+	 *            the {@link Path Paths} of the files to load. Duplicates are only loaded once
+	 * @param executor
+	 *            the {@link Executor} on which to read and parse the files
+	 * @param parallelism
+	 *            the maximum number of files to load at once
+	 * @return a {@link JSONBatchResult} that maps each {@link Path} to either its root node or the {@link Exception} that prevented it from being
+	 *         loaded
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the files to be loaded
+	 * @see #loadJSON(Path)
+	 */
+	public static final JSONBatchResult<JSONData<?>> loadAll(Collection<Path> paths, Executor executor, int parallelism) throws InterruptedException {
+		return JSONBatch.run(paths, executor, parallelism, JSONSystem::loadJSON);
+	}
+	
+	/**
+	 * Writes each {@link JSONData} tree to its {@link Path} concurrently, with formatting enabled.<br>
+	 * This uses the same {@link Executor} and parallelism as {@link #loadAll(Collection)}.
+	 * 
+	 * @param files
+	 *            a {@link Map} from the {@link Path} of each file to the root node to write to it
+	 * @return a {@link JSONBatchResult} that maps each {@link Path} to either the root node that was written to it or the {@link Exception} that
+	 *         prevented it from being written
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the files to be written
+	 * @see #writeJSON(JSONData, Path)
+	 * @see #writeAll(Map, Executor, int)
+	 */
+	public static final JSONBatchResult<JSONData<?>> writeAll(Map<Path, ? extends JSONData<?>> files) throws InterruptedException {
+		return writeAll(files, JSONBatch.defaultExecutor(), JSONBatch.DEFAULT_PARALLELISM);
+	}
+	
+	/**
+	 * Writes each {@link JSONData} tree to its {@link Path} concurrently on the given {@link Executor}, with formatting enabled.
+	 * 
+	 * @param files
+	 *            a {@link Map} from the {@link Path} of each file to the root node to write to it
+	 * @param executor
+	 *            the {@link Executor} on which to serialize and write the files
+	 * @param parallelism
+	 *            the maximum number of files to write at once
+	 * @return a {@link JSONBatchResult} that maps each {@link Path} to either the root node that was written to it or the {@link Exception} that
+	 *         prevented it from being written
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the files to be written
+	 * @see #writeJSON(JSONData, Path)
+	 */
+	public static final JSONBatchResult<JSONData<?>> writeAll(Map<Path, ? extends JSONData<?>> files, Executor executor, int parallelism) throws InterruptedException {
+		return JSONBatch.run(files.keySet(), executor, parallelism, path -> {
+			JSONData<?> root = files.get(path);
+			writeJSON(root, path);
+			return root;
+		});
 	}
 	
 	/**
 	 * Attempts to wrap {@code value} within the appropriate container for this library.<br>
+	 * If {@code value} is already {@link JSONData}, it is returned unchanged. Otherwise, if an adapter was registered for the value's type via
+	 * {@link #registerAdapter(Class, Function)}, that adapter is used.<br>
 	 * If the value is one of the basic types for JSON, it gets wrapped within the that type's container (including {@code null}).<br>
+	 * {@link Collection Collections} and arrays (including primitive arrays) are wrapped in a {@link JSONArray} element by element.<br>
 	 * If it implements {@link JSONRepresentable}, this method calls {@link JSONRepresentable#toJSONObject()} and returns the result.<br>
 	 * If the value is an instance of {@link JSONSerializable}, it wraps the value within a {@link JSONWrapped} object. Otherwise, it throws an
 	 * {@link UnsupportedOperationException}.
@@ -465,25 +962,99 @@ public class JSONSystem {
 	 */
 	@SuppressWarnings("unchecked")
 	public static final <T extends JSONData<?>> T wrap(Object value) {
-		if (value == null)
-			return (T) new JSONNull();
-		if (value instanceof JSONData)
-			return (T) value;
-		if (numberType.isInstance(value))
-			return (T) new JSONNumber<>((Number) value);
-		if (value instanceof String)
-			return (T) new JSONString((String) value);
-		if (value instanceof Boolean)
-			return (T) new JSONBoolean((Boolean) value);
-		if (value instanceof Collection)
-			return (T) JSONArray.wrap((Collection<?>) value);
-		if (value.getClass().isArray())
-			return (T) JSONArray.wrap(Arrays.asList(value));
-		if (value instanceof JSONRepresentable)
-			return (T) ((JSONRepresentable) value).toJSONObject();
-		if (value instanceof JSONSerializable)
-			return (T) new JSONWrapped<>((JSONSerializable) value);
-		throw new UnsupportedOperationException("Cannot wrap a value that is not part of JSON's default supported values and does not implement JSONSerializable or JSONRepresentable");
+		return (T) JSONAdapters.wrap(value);
+	}
+	
+	/**
+	 * Registers a function that {@link #wrap(Object)} uses to convert values of the given type and its subtypes into {@link JSONData}.
+	 * Registered adapters take precedence over the default conversions, but values that are already {@link JSONData} (such as
+	 * {@link JSONObject JSONObjects}, which are {@link java.util.Map Maps}) are always returned unchanged.<br>
+	 * {@code type} can be a class or an interface. The adapter for a value is the one registered for the nearest of its classes (starting with
+	 * its own class and going up through its superclasses) or, if none of those have one, for the nearest of its interfaces (in breadth-first
+	 * order, starting with the interfaces of its own class).
+	 * 
+	 * @param type
+	 *            the type of value that {@code adapter} converts
+	 * @param adapter
+	 *            a function that converts values of type {@code type} into {@link JSONData}
+	 * @param <T>
+	 *            the type of value that {@code adapter} converts
+	 * @see #wrap(Object)
+	 */
+	public static final <T> void registerAdapter(Class<T> type, Function<? super T, ? extends JSONData<?>> adapter) {
+		JSONAdapters.register(type, adapter);
+	}
+	
+	/**
+	 * Converts an arbitrary object into {@link JSONData}.<br>
+	 * In addition to the types supported by {@link #wrap(Object)}, this supports enums, arrays, {@link Collection Collections}, {@link java.util.Map
+	 * Maps}, records, and beans (objects with public getters or fields). The conversion for each {@link Class} is built once and cached, so
+	 * repeated conversions do not pay for reflection.
+	 * 
+	 * @param value
+	 *            the object to convert
+	 * @return the {@link JSONData} representation of {@code value}
+	 * @see #fromJSON(JSONData, Class)
+	 */
+	public static final JSONData<?> toJSON(Object value) {
+		return JSONBinder.toJSON(value);
+	}
+	
+	/**
+	 * Converts {@link JSONData} into an instance of {@code type}. This is the inverse of {@link #toJSON(Object)}.<br>
+	 * Beans must have a constructor that takes no arguments, and only properties with setters or non-final public fields are restored. Records are
+	 * constructed through their canonical constructors.
+	 * 
+	 * @param data
+	 *            the {@link JSONData} to convert
+	 * @param type
+	 *            the {@link Class} of the object to produce
+	 * @param <T>
+	 *            the type of the object to produce
+	 * @return an instance of {@code type} that holds the values in {@code data}
+	 * @throws toberumono.json.exceptions.JSONException
+	 *             if {@code data} cannot be converted into an instance of {@code type}
+	 * @see #toJSON(Object)
+	 */
+	public static final <T> T fromJSON(JSONData<?> data, Class<T> type) {
+		return JSONBinder.fromJSON(data, type);
+	}
+	
+	/**
+	 * Computes a JSON Patch (RFC 6902) that transforms {@code source} into {@code target}.<br>
+	 * Unchanged subtrees are skipped by comparing cached structural hashes, and arrays are aligned by their longest common subsequence so that
+	 * insertions and removals do not cause the rest of the array to be replaced. The values in the patch are copies, so later changes to
+	 * {@code target} do not affect it.
+	 * 
+	 * @param source
+	 *            the original tree
+	 * @param target
+	 *            the tree that the patch should produce when applied to {@code source}
+	 * @return the patch as a {@link JSONArray} of operations
+	 * @see #patch(JSONData, JSONArray)
+	 */
+	public static final JSONArray diff(JSONData<?> source, JSONData<?> target) {
+		return JSONPatch.diff(source, target);
+	}
+	
+	/**
+	 * Applies a JSON Patch (RFC 6902) to {@code root} in place. All six operations ({@code add}, {@code remove}, {@code replace}, {@code move},
+	 * {@code copy}, and {@code test}) are supported.<br>
+	 * Every container that the patch changes is flagged as modified (see {@link ModifiableJSONData}). If any operation fails, the changes made by
+	 * the earlier operations are undone, the modified flags are restored, and a {@link toberumono.json.exceptions.JSONException JSONException} is
+	 * thrown.
+	 * 
+	 * @param root
+	 *            the tree to patch
+	 * @param patch
+	 *            the patch as a {@link JSONArray} of operations
+	 * @return the root of the patched tree. This is {@code root} unless the patch replaced the whole document
+	 * @throws toberumono.json.exceptions.JSONException
+	 *             if the patch is malformed or one of its operations fails
+	 * @see #diff(JSONData, JSONData)
+	 */
+	public static final JSONData<?> patch(JSONData<?> root, JSONArray patch) {
+		return JSONPatch.apply(root, patch);
 	}
 	
 	/**
@@ -599,21 +1170,19 @@ public class JSONSystem {
 			return;
 		}
 		JSONData<?> value = defaultValue;
-		int i = 0, j = 0, highestValue = 0;
-		for (; i < containerChain.length; i++) {
-			for (; j < nameChain.length; j++) {
-				if (containerChain[i].containsKey(nameChain[j])) {
-					if (j >= highestValue) {
-						value = containerChain[i].remove(nameChain[j]);
-						highestValue = j;
-					}
-					else {
-						containerChain[i].remove(nameChain[j]);
-					}
+		int lastContainer = containerChain.length - 1, lastName = nameChain.length - 1, highestValue = 0;
+		for (int i = 0; i < containerChain.length; i++) {
+			for (int j = 0; j < nameChain.length; j++) {
+				if ((i == lastContainer && j == lastName) || !containerChain[i].containsKey(nameChain[j]))
+					continue;
+				JSONData<?> found = containerChain[i].remove(nameChain[j]);
+				if (j >= highestValue) {
+					value = found;
+					highestValue = j;
 				}
 			}
 		}
-		if (!containerChain[i].containsKey(nameChain[j]))
-			containerChain[i].put(nameChain[j], value);
+		if (!containerChain[lastContainer].containsKey(nameChain[lastName]))
+			containerChain[lastContainer].put(nameChain[lastName], value);
 	}
 }
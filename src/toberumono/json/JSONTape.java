@@ -0,0 +1,343 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import toberumono.json.exceptions.JSONSyntaxException;
+
+/**
+ * An immutable, compact representation of a parsed JSON document that is stored off the Java heap.<br>
+ * Parsing writes the document into a tape of tagged 64-bit entries (in the style of simdjson) and a buffer of UTF-8 strings, both of which
+ * are direct {@link ByteBuffer ByteBuffers}. The tape holds the nodes in document order, so scanning it has good locality, and each
+ * container's entry points at its matching end entry so that whole subtrees can be skipped. {@link JSONTapeCursor JSONTapeCursors} read
+ * the tape in place without creating an object per node, and a mutable tree of {@link JSONObject JSONObjects} and {@link JSONArray
+ * JSONArrays} can be built from any part of the tape when it is needed.<br>
+ * Each entry has a tag in its high byte and a 56-bit payload:
+ * <ul>
+ * <li>{@code '{'} and {@code '['}: the number of members or elements (saturating at {@code 0xFFFFFF}) in bits 32-55 and the index of the
+ * matching end entry in bits 0-31</li>
+ * <li>{@code '}'} and {@code ']'}: the index of the matching start entry</li>
+ * <li>{@code '"'}: the offset of the string in the string buffer, where it is stored as its length in bytes followed by its UTF-8 bytes. The
+ * keys of objects are stored as strings immediately before their values</li>
+ * <li>{@code 'i'}: an {@link Integer} in bits 0-31</li>
+ * <li>{@code 'l'} and {@code 'd'}: a {@link Long} or {@link Double}, whose bits are stored in the entry that follows</li>
+ * <li>{@code 'N'}: any other kind of {@link Number}, stored as the text of the number in the string buffer and read with
+ * {@link JSONSystem#getReader()}</li>
+ * <li>{@code 't'}, {@code 'f'}, and {@code 'n'}: {@code true}, {@code false}, and {@code null}</li>
+ * </ul>
+ * Strings that contain unpaired surrogates (which can only come from escape sequences such as <code>&#92;uD800</code>) are rejected because
+ * they cannot be stored as UTF-8.<br>
+ * The tape and the string buffer are each limited to 2GB. The off-heap memory is released when the {@link JSONTape} is garbage-collected.<br>
+ * A {@link JSONTape} can be read by any number of threads at once, provided that each thread uses its own {@link JSONTapeCursor}.
+ * 
+ * @author Toberumono
+ * @see JSONTapeCursor
+ */
+public final class JSONTape {
+	static final int OBJECT = '{', OBJECT_END = '}', ARRAY = '[', ARRAY_END = ']', STRING = '"', INT = 'i', LONG = 'l', DOUBLE = 'd',
+			OTHER_NUMBER = 'N', TRUE = 't', FALSE = 'f', NULL = 'n';
+	static final int MAX_COUNT = 0xFFFFFF;
+	private static final long PAYLOAD = 0x00FFFFFFFFFFFFFFL;
+	
+	private final ByteBuffer tape, strings;
+	private final int length;
+	
+	private JSONTape(ByteBuffer tape, int length, ByteBuffer strings) {
+		this.tape = tape;
+		this.length = length;
+		this.strings = strings;
+	}
+	
+	/**
+	 * Parses {@code json} into a {@link JSONTape}.
+	 * 
+	 * @param json
+	 *            the JSON text to parse
+	 * @return a {@link JSONTape} that holds the parsed document
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 */
+	public static JSONTape parse(String json) {
+		Builder builder = new Builder(json.length());
+		JSONStreamParser parser = new JSONStreamParser(builder);
+		parser.feed(json);
+		parser.finish();
+		return builder.build();
+	}
+	
+	/**
+	 * Reads JSON text from a {@link Reader} and parses it into a {@link JSONTape}.
+	 * 
+	 * @param json
+	 *            the {@link Reader} from which to read the JSON text
+	 * @return a {@link JSONTape} that holds the parsed document
+	 * @throws IOException
+	 *             if an error occurs while reading from the {@link Reader}
+	 * @throws JSONSyntaxException
+	 *             if there is an error while parsing the JSON text
+	 */
+	public static JSONTape read(Reader json) throws IOException {
+		Builder builder = new Builder(8192);
+		JSONStreamParser parser = new JSONStreamParser(builder);
+		char[] chunk = new char[8192];
+		for (int read; (read = json.read(chunk)) != -1;)
+			parser.feed(chunk, 0, read);
+		parser.finish();
+		return builder.build();
+	}
+	
+	/**
+	 * @return a new {@link JSONTapeCursor} that is positioned at the root of the document
+	 */
+	public JSONTapeCursor cursor() {
+		return new JSONTapeCursor(this);
+	}
+	
+	/**
+	 * Builds a mutable tree from the entire document. Use {@link JSONTapeCursor#toJSONData()} to build a tree from part of the document.
+	 * 
+	 * @return the root of the tree
+	 */
+	public JSONData<?> toJSONData() {
+		return cursor().toJSONData();
+	}
+	
+	/**
+	 * @return the number of entries in the tape
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * @return the number of bytes of off-heap memory that are used by this {@link JSONTape}
+	 */
+	public long getSizeInBytes() {
+		return (long) tape.capacity() + strings.capacity();
+	}
+	
+	long entry(int index) {
+		return tape.getLong(index << 3);
+	}
+	
+	static int tag(long entry) {
+		return (int) (entry >>> 56);
+	}
+	
+	static long payload(long entry) {
+		return entry & PAYLOAD;
+	}
+	
+	/**
+	 * @return a view of the string buffer with its own position, for use by a single {@link JSONTapeCursor}
+	 */
+	ByteBuffer strings() {
+		return strings.duplicate().order(strings.order());
+	}
+	
+	/**
+	 * @return the index of the entry that follows the value at {@code index} and all of its children
+	 */
+	int after(int index) {
+		long entry = entry(index);
+		switch (tag(entry)) {
+			case OBJECT:
+			case ARRAY:
+				return (int) entry + 1;
+			case LONG:
+			case DOUBLE:
+				return index + 2;
+			default:
+				return index + 1;
+		}
+	}
+	
+	/**
+	 * A {@link JSONHandler} that writes the events that it receives onto a tape.
+	 * 
+	 * @author Toberumono
+	 */
+	private static final class Builder implements JSONHandler {
+		private ByteBuffer tape, strings;
+		private int length = 0;
+		private int[] starts = new int[16], counts = new int[16];
+		private int depth = 0;
+		
+		Builder(int expectedLength) {
+			int initial = Math.max(64, Math.min(expectedLength, 1 << 26));
+			tape = allocate(initial << 2);
+			strings = allocate(initial);
+		}
+		
+		private static ByteBuffer allocate(int capacity) {
+			return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+		}
+		
+		/**
+		 * @return {@code buffer} or a larger copy of it with at least {@code needed} bytes of space after the first {@code used} bytes. The
+		 *         position of the copy is {@code used}
+		 */
+		private static ByteBuffer grow(ByteBuffer buffer, int used, long needed) {
+			long required = used + needed;
+			if (required <= buffer.capacity())
+				return buffer;
+			if (required > Integer.MAX_VALUE - 8)
+				throw new OutOfMemoryError("The document is too large for a JSONTape");
+			ByteBuffer out = allocate((int) Math.min(Integer.MAX_VALUE - 8 & ~7, Math.max(required, buffer.capacity() * 2L)));
+			buffer.position(0).limit(used);
+			out.put(buffer); //This leaves the position of out at used
+			return out;
+		}
+		
+		/**
+		 * @return a copy of {@code buffer} that is exactly {@code used} bytes long if {@code buffer} has a lot of unused space
+		 */
+		private static ByteBuffer trim(ByteBuffer buffer, int used) {
+			if (buffer.capacity() - used <= buffer.capacity() / 4)
+				return buffer;
+			ByteBuffer out = allocate(Math.max(used, 8));
+			buffer.position(0).limit(used);
+			out.put(buffer);
+			out.clear();
+			return out;
+		}
+		
+		JSONTape build() {
+			return new JSONTape(trim(tape, length << 3), length, trim(strings, strings.position()));
+		}
+		
+		private int write(int tag, long payload) {
+			if ((length + 2L) << 3 > tape.capacity())
+				tape = grow(tape, length << 3, 16);
+			tape.putLong(length << 3, (long) tag << 56 | payload);
+			return length++;
+		}
+		
+		private void writeRaw(long bits) {
+			tape.putLong(length++ << 3, bits); //write reserves space for two entries
+		}
+		
+		private void count() {
+			if (depth > 0)
+				counts[depth - 1]++;
+		}
+		
+		private void start(int tag) {
+			count();
+			if (depth == starts.length) {
+				starts = Arrays.copyOf(starts, depth * 2);
+				counts = Arrays.copyOf(counts, depth * 2);
+			}
+			starts[depth] = write(tag, 0);
+			counts[depth++] = 0;
+		}
+		
+		private void end(int tag) {
+			int start = starts[--depth], end = write(tag, start);
+			tape.putLong(start << 3, (long) tag(entry(start)) << 56 | (long) Math.min(counts[depth], MAX_COUNT) << 32 | end);
+		}
+		
+		private long entry(int index) {
+			return tape.getLong(index << 3);
+		}
+		
+		/**
+		 * Encodes {@code value} into the string buffer as its length followed by its UTF-8 bytes.
+		 * 
+		 * @return the offset of the string in the string buffer
+		 */
+		private int string(String value) {
+			strings = grow(strings, strings.position(), 4 + value.length() * 3L);
+			int offset = strings.position();
+			strings.position(offset + 4);
+			for (int i = 0, length = value.length(); i < length; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80)
+					strings.put((byte) c);
+				else if (c < 0x800) {
+					strings.put((byte) (0xC0 | (c >> 6)));
+					strings.put((byte) (0x80 | (c & 0x3F)));
+				}
+				else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, value.charAt(++i));
+					strings.put((byte) (0xF0 | (cp >> 18)));
+					strings.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+					strings.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+					strings.put((byte) (0x80 | (cp & 0x3F)));
+				}
+				else if (Character.isSurrogate(c)) //This matches the writers, which cannot encode unpaired surrogates either
+					throw new JSONSyntaxException("A string contains an unpaired surrogate, which cannot be stored as UTF-8");
+				else {
+					strings.put((byte) (0xE0 | (c >> 12)));
+					strings.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+					strings.put((byte) (0x80 | (c & 0x3F)));
+				}
+			}
+			strings.putInt(offset, strings.position() - offset - 4);
+			return offset;
+		}
+		
+		@Override
+		public void startObject() {
+			start(OBJECT);
+		}
+		
+		@Override
+		public void endObject() {
+			end(OBJECT_END);
+		}
+		
+		@Override
+		public void startArray() {
+			start(ARRAY);
+		}
+		
+		@Override
+		public void endArray() {
+			end(ARRAY_END);
+		}
+		
+		@Override
+		public void key(String key) {
+			write(STRING, string(key));
+		}
+		
+		@Override
+		public void stringValue(String value) {
+			count();
+			write(STRING, string(value));
+		}
+		
+		@Override
+		public void numberValue(Number value) {
+			count();
+			if (value instanceof Integer)
+				write(INT, value.intValue() & 0xFFFFFFFFL);
+			else if (value instanceof Long) {
+				write(LONG, 0);
+				writeRaw(value.longValue());
+			}
+			else if (value instanceof Double) {
+				write(DOUBLE, 0);
+				writeRaw(Double.doubleToRawLongBits(value.doubleValue()));
+			}
+			else
+				write(OTHER_NUMBER, string(value.toString()));
+		}
+		
+		@Override
+		public void booleanValue(boolean value) {
+			count();
+			write(value ? TRUE : FALSE, 0);
+		}
+		
+		@Override
+		public void nullValue() {
+			count();
+			write(NULL, 0);
+		}
+	}
+}
@@ -0,0 +1,566 @@
+package toberumono.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import toberumono.json.exceptions.JSONException;
+
+/**
+ * A flyweight that reads a {@link JSONTape} in place.<br>
+ * A {@link JSONTapeCursor} is positioned at one value in the tape and is moved around the document with {@link #first()}, {@link #next()},
+ * {@link #up()}, {@link #find(String)}, and {@link #element(int)}, so a single {@link JSONTapeCursor} can visit every node of a document
+ * without creating any objects for the nodes. Keys can be compared with {@link #keyEquals(String)} and {@link #find(String)} without
+ * decoding them, and numbers and booleans are read without boxing. {@link String Strings} are only created when they are requested.<br>
+ * {@link JSONTapeCursor} also implements {@link JSONData}, so it can be used wherever a {@link JSONData} is read or serialized. Its
+ * {@link #value()} is the value at the cursor's current position, with objects and arrays built into a new {@link JSONObject} or
+ * {@link JSONArray}, and {@link #writeJSON(JSONGenerator)} writes the current value straight from the tape. Because the tape is immutable,
+ * {@link #deepCopy()} simply returns an independent {@link JSONTapeCursor} at the same position.<br>
+ * Example Usage:
+ * 
+ * <pre>
+ * {
+ * 	JSONTapeCursor cursor = JSONTape.parse(text).cursor();
+ * 	long total = 0;
+ * 	if (cursor.find("orders") &amp;&amp; cursor.first()) {
+ * 		do {
+ * 			if (cursor.find("amount")) {
+ * 				total += cursor.longValue();
+ * 				cursor.up();
+ * 			}
+ * 		} while (cursor.next());
+ * 	}
+ * }
+ * </pre>
+ * 
+ * A {@link JSONTapeCursor} is not thread-safe, but any number of them can read the same {@link JSONTape} concurrently.
+ * 
+ * @author Toberumono
+ * @see JSONTape
+ */
+public final class JSONTapeCursor implements JSONData<Object> {
+	private final JSONTape tape;
+	private final ByteBuffer strings;
+	private byte[] scratch = null;
+	private int[] parents = new int[8];
+	private int depth = 0, index = 0;
+	
+	JSONTapeCursor(JSONTape tape) {
+		this.tape = tape;
+		strings = tape.strings();
+	}
+	
+	private JSONTapeCursor(JSONTapeCursor original) {
+		tape = original.tape;
+		strings = tape.strings();
+		parents = Arrays.copyOf(original.parents, Math.max(original.depth, 8));
+		depth = original.depth;
+		index = original.index;
+	}
+	
+	/**
+	 * @return the {@link JSONTape} that this {@link JSONTapeCursor} reads
+	 */
+	public JSONTape getTape() {
+		return tape;
+	}
+	
+	/**
+	 * @return a new {@link JSONTapeCursor} with the same position as this one
+	 */
+	public JSONTapeCursor copy() {
+		return new JSONTapeCursor(this);
+	}
+	
+	/**
+	 * @return the number of containers that enclose the current value (the root is at depth 0)
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	private int tag() {
+		return JSONTape.tag(tape.entry(index));
+	}
+	
+	private boolean inObject() {
+		return depth > 0 && JSONTape.tag(tape.entry(parents[depth - 1])) == JSONTape.OBJECT;
+	}
+	
+	@Override
+	public JSONType type() {
+		switch (tag()) {
+			case JSONTape.OBJECT:
+				return JSONType.OBJECT;
+			case JSONTape.ARRAY:
+				return JSONType.ARRAY;
+			case JSONTape.STRING:
+				return JSONType.STRING;
+			case JSONTape.TRUE:
+			case JSONTape.FALSE:
+				return JSONType.BOOLEAN;
+			case JSONTape.NULL:
+				return JSONType.NULL;
+			default:
+				return JSONType.NUMBER;
+		}
+	}
+	
+	/**
+	 * @return {@code true} if the current value is {@code null}
+	 */
+	public boolean isNull() {
+		return tag() == JSONTape.NULL;
+	}
+	
+	/**
+	 * Moves to the first member of the current object or the first element of the current array.
+	 * 
+	 * @return {@code true} if the cursor was moved, {@code false} if the current value is empty or is not an object or array
+	 */
+	public boolean first() {
+		int tag = tag();
+		if ((tag != JSONTape.OBJECT && tag != JSONTape.ARRAY) || (int) tape.entry(index) == index + 1)
+			return false;
+		push();
+		index += tag == JSONTape.OBJECT ? 2 : 1;
+		return true;
+	}
+	
+	/**
+	 * Moves to the next member or element of the enclosing object or array.
+	 * 
+	 * @return {@code true} if the cursor was moved, {@code false} if the current value is the last one or is the root
+	 */
+	public boolean next() {
+		if (depth == 0)
+			return false;
+		int next = tape.after(index), tag = JSONTape.tag(tape.entry(next));
+		if (tag == JSONTape.OBJECT_END || tag == JSONTape.ARRAY_END)
+			return false;
+		index = inObject() ? next + 1 : next;
+		return true;
+	}
+	
+	/**
+	 * Moves to the enclosing object or array.
+	 * 
+	 * @return {@code true} if the cursor was moved, {@code false} if the current value is the root
+	 */
+	public boolean up() {
+		if (depth == 0)
+			return false;
+		index = parents[--depth];
+		return true;
+	}
+	
+	/**
+	 * Moves to the value for {@code key} in the current object. The keys are compared without being decoded.
+	 * 
+	 * @param key
+	 *            the key to find
+	 * @return {@code true} if the cursor was moved, {@code false} if the current value is not an object or has no value for {@code key}
+	 */
+	public boolean find(String key) {
+		if (tag() != JSONTape.OBJECT)
+			return false;
+		for (int i = index + 1, end = (int) tape.entry(index); i < end; i = tape.after(i + 1)) {
+			if (stringEquals(i, key)) {
+				push();
+				index = i + 1;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Moves to the element at {@code position} in the current array.
+	 * 
+	 * @param position
+	 *            the index of the element
+	 * @return {@code true} if the cursor was moved, {@code false} if the current value is not an array or {@code position} is out of range
+	 */
+	public boolean element(int position) {
+		if (tag() != JSONTape.ARRAY || position < 0)
+			return false;
+		int i = index + 1, end = (int) tape.entry(index);
+		for (; position > 0 && i < end; position--)
+			i = tape.after(i);
+		if (i >= end)
+			return false;
+		push();
+		index = i;
+		return true;
+	}
+	
+	private void push() {
+		if (depth == parents.length)
+			parents = Arrays.copyOf(parents, depth * 2);
+		parents[depth++] = index;
+	}
+	
+	/**
+	 * @return the key of the current value
+	 * @throws IllegalStateException
+	 *             if the current value is not a member of an object
+	 */
+	public String key() {
+		if (!inObject())
+			throw new IllegalStateException("The current value is not a member of an object");
+		return string(index - 1);
+	}
+	
+	/**
+	 * Compares the key of the current value with {@code key} without decoding it.
+	 * 
+	 * @param key
+	 *            the {@link String} to compare with
+	 * @return {@code true} if the current value is a member of an object and its key is equal to {@code key}
+	 */
+	public boolean keyEquals(String key) {
+		return inObject() && stringEquals(index - 1, key);
+	}
+	
+	/**
+	 * @return the number of members in the current object or elements in the current array
+	 * @throws JSONException
+	 *             if the current value is not an object or array
+	 */
+	public int size() {
+		long entry = tape.entry(index);
+		int tag = JSONTape.tag(entry);
+		if (tag != JSONTape.OBJECT && tag != JSONTape.ARRAY)
+			throw new JSONException("The current value is not an object or array");
+		int count = (int) (JSONTape.payload(entry) >>> 32);
+		if (count < JSONTape.MAX_COUNT)
+			return count;
+		count = 0;
+		for (int i = index + 1, end = (int) entry; i < end; i = tape.after(tag == JSONTape.OBJECT ? i + 1 : i))
+			count++;
+		return count;
+	}
+	
+	/**
+	 * @return the current value as a {@link String}
+	 * @throws JSONException
+	 *             if the current value is not a string
+	 */
+	public String stringValue() {
+		if (tag() != JSONTape.STRING)
+			throw new JSONException("The current value is not a string");
+		return string(index);
+	}
+	
+	/**
+	 * Compares the current value with {@code value} without decoding it.
+	 * 
+	 * @param value
+	 *            the {@link String} to compare with
+	 * @return {@code true} if the current value is a string that is equal to {@code value}
+	 */
+	public boolean stringEquals(String value) {
+		return tag() == JSONTape.STRING && stringEquals(index, value);
+	}
+	
+	/**
+	 * @return the current value as a {@link Number}
+	 * @throws JSONException
+	 *             if the current value is not a number
+	 */
+	public Number numberValue() {
+		long entry = tape.entry(index);
+		switch (JSONTape.tag(entry)) {
+			case JSONTape.INT:
+				return (int) entry;
+			case JSONTape.LONG:
+				return tape.entry(index + 1);
+			case JSONTape.DOUBLE:
+				return Double.longBitsToDouble(tape.entry(index + 1));
+			case JSONTape.OTHER_NUMBER:
+				return (Number) JSONSystem.getReader().apply(string(index));
+			default:
+				throw new JSONException("The current value is not a number");
+		}
+	}
+	
+	/**
+	 * @return the current value as an {@code int} as if by {@link Number#intValue()}
+	 * @throws JSONException
+	 *             if the current value is not a number
+	 */
+	public int intValue() {
+		long entry = tape.entry(index);
+		return JSONTape.tag(entry) == JSONTape.INT ? (int) entry : numberValue().intValue();
+	}
+	
+	/**
+	 * @return the current value as a {@code long} as if by {@link Number#longValue()}
+	 * @throws JSONException
+	 *             if the current value is not a number
+	 */
+	public long longValue() {
+		long entry = tape.entry(index);
+		switch (JSONTape.tag(entry)) {
+			case JSONTape.INT:
+				return (int) entry;
+			case JSONTape.LONG:
+				return tape.entry(index + 1);
+			case JSONTape.DOUBLE:
+				return (long) Double.longBitsToDouble(tape.entry(index + 1));
+			default:
+				return numberValue().longValue();
+		}
+	}
+	
+	/**
+	 * @return the current value as a {@code double} as if by {@link Number#doubleValue()}
+	 * @throws JSONException
+	 *             if the current value is not a number
+	 */
+	public double doubleValue() {
+		long entry = tape.entry(index);
+		switch (JSONTape.tag(entry)) {
+			case JSONTape.INT:
+				return (int) entry;
+			case JSONTape.LONG:
+				return tape.entry(index + 1);
+			case JSONTape.DOUBLE:
+				return Double.longBitsToDouble(tape.entry(index + 1));
+			default:
+				return numberValue().doubleValue();
+		}
+	}
+	
+	/**
+	 * @return the current value as a {@code boolean}
+	 * @throws JSONException
+	 *             if the current value is not a boolean
+	 */
+	public boolean booleanValue() {
+		int tag = tag();
+		if (tag != JSONTape.TRUE && tag != JSONTape.FALSE)
+			throw new JSONException("The current value is not a boolean");
+		return tag == JSONTape.TRUE;
+	}
+	
+	/**
+	 * Decodes the string at the given tape index.
+	 */
+	private String string(int at) {
+		int offset = (int) JSONTape.payload(tape.entry(at)), length = strings.getInt(offset);
+		if (scratch == null || scratch.length < length)
+			scratch = new byte[Math.max(length, 64)];
+		strings.position(offset + 4);
+		strings.get(scratch, 0, length);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Compares the string at the given tape index with {@code value} one code point at a time.
+	 */
+	private boolean stringEquals(int at, String value) {
+		int offset = (int) JSONTape.payload(tape.entry(at)), position = offset + 4, end = position + strings.getInt(offset), i = 0;
+		int length = value.length();
+		while (position < end) {
+			int b = strings.get(position) & 0xFF, cp;
+			if (b < 0x80) {
+				cp = b;
+				position++;
+			}
+			else if (b < 0xE0) {
+				cp = (b & 0x1F) << 6 | (strings.get(position + 1) & 0x3F);
+				position += 2;
+			}
+			else if (b < 0xF0) {
+				cp = (b & 0x0F) << 12 | (strings.get(position + 1) & 0x3F) << 6 | (strings.get(position + 2) & 0x3F);
+				position += 3;
+			}
+			else {
+				cp = (b & 0x07) << 18 | (strings.get(position + 1) & 0x3F) << 12 | (strings.get(position + 2) & 0x3F) << 6 | (strings.get(position + 3) & 0x3F);
+				position += 4;
+			}
+			if (i >= length)
+				return false;
+			int c = value.codePointAt(i);
+			if (c != cp)
+				return false;
+			i += Character.charCount(c);
+		}
+		return i == length;
+	}
+	
+	/**
+	 * Builds a mutable tree from the current value.
+	 * 
+	 * @return the current value as ordinary {@link JSONData}
+	 */
+	public JSONData<?> toJSONData() {
+		JSONTreeBuilder builder = new JSONTreeBuilder();
+		try {
+			replay(builder, null);
+		}
+		catch (IOException e) {} //Only the JSONGenerator can throw IOExceptions
+		return builder.getRoot();
+	}
+	
+	/**
+	 * Passes the current value to either {@code handler} or {@code generator} without recursion.
+	 */
+	private void replay(JSONHandler handler, JSONGenerator generator) throws IOException {
+		boolean[] objects = new boolean[16];
+		int level = 0;
+		boolean key = false;
+		for (int i = index, end = tape.after(index); i < end;) {
+			long entry = tape.entry(i);
+			int tag = JSONTape.tag(entry);
+			if (tag == JSONTape.OBJECT || tag == JSONTape.ARRAY) {
+				if (level == objects.length)
+					objects = Arrays.copyOf(objects, level * 2);
+				objects[level++] = tag == JSONTape.OBJECT;
+				key = tag == JSONTape.OBJECT;
+				if (generator == null) {
+					if (tag == JSONTape.OBJECT)
+						handler.startObject();
+					else
+						handler.startArray();
+				}
+				else if (tag == JSONTape.OBJECT)
+					generator.beginObject();
+				else
+					generator.beginArray();
+				i++;
+				continue;
+			}
+			if (key && tag == JSONTape.STRING) {
+				if (generator == null)
+					handler.key(string(i));
+				else
+					generator.key(string(i));
+				key = false;
+				i++;
+				continue;
+			}
+			switch (tag) {
+				case JSONTape.OBJECT_END:
+				case JSONTape.ARRAY_END:
+					level--;
+					if (generator == null) {
+						if (tag == JSONTape.OBJECT_END)
+							handler.endObject();
+						else
+							handler.endArray();
+					}
+					else if (tag == JSONTape.OBJECT_END)
+						generator.endObject();
+					else
+						generator.endArray();
+					break;
+				case JSONTape.STRING:
+					if (generator == null)
+						handler.stringValue(string(i));
+					else
+						generator.value(string(i));
+					break;
+				case JSONTape.INT:
+					if (generator == null)
+						handler.numberValue((int) entry);
+					else
+						generator.value((int) entry);
+					break;
+				case JSONTape.LONG:
+					if (generator == null)
+						handler.numberValue(tape.entry(i + 1));
+					else
+						generator.value(tape.entry(i + 1));
+					break;
+				case JSONTape.DOUBLE:
+					if (generator == null)
+						handler.numberValue(Double.longBitsToDouble(tape.entry(i + 1)));
+					else
+						generator.value(Double.longBitsToDouble(tape.entry(i + 1)));
+					break;
+				case JSONTape.OTHER_NUMBER:
+					Number number = (Number) JSONSystem.getReader().apply(string(i));
+					if (generator == null)
+						handler.numberValue(number);
+					else
+						generator.value(number);
+					break;
+				case JSONTape.TRUE:
+				case JSONTape.FALSE:
+					if (generator == null)
+						handler.booleanValue(tag == JSONTape.TRUE);
+					else
+						generator.value(tag == JSONTape.TRUE);
+					break;
+				default:
+					if (generator == null)
+						handler.nullValue();
+					else
+						generator.nullValue();
+			}
+			i = tag == JSONTape.LONG || tag == JSONTape.DOUBLE ? i + 2 : i + 1;
+			key = level > 0 && objects[level - 1]; //The next entry in an object is either a key or the end of the object
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * Strings, numbers, and booleans are returned as their Java values, and objects and arrays are built into a new {@link JSONObject} or
+	 * {@link JSONArray} as if by {@link #toJSONData()}.
+	 */
+	@Override
+	public Object value() {
+		switch (tag()) {
+			case JSONTape.OBJECT:
+			case JSONTape.ARRAY:
+				return toJSONData();
+			case JSONTape.STRING:
+				return string(index);
+			case JSONTape.TRUE:
+				return Boolean.TRUE;
+			case JSONTape.FALSE:
+				return Boolean.FALSE;
+			case JSONTape.NULL:
+				return null;
+			default:
+				return numberValue();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * The tape is immutable, so this returns a new {@link JSONTapeCursor} at the same position (see {@link #copy()}). Use
+	 * {@link #toJSONData()} to build a mutable tree.
+	 */
+	@Override
+	public JSONTapeCursor deepCopy() {
+		return copy();
+	}
+	
+	@Override
+	public String toJSONString() {
+		return JSONGenerator.toJSONString(this, false);
+	}
+	
+	@Override
+	public StringBuilder toFormattedJSON(final StringBuilder sb, String indentation) {
+		try {
+			writeJSON(new JSONGenerator(sb, true, indentation));
+		}
+		catch (IOException e) {} //StringBuilders do not throw IOExceptions
+		return sb;
+	}
+	
+	@Override
+	public void writeJSON(JSONGenerator generator) throws IOException {
+		replay(null, generator);
+	}
+	
+	@Override
+	public String toString() {
+		return toJSONString();
+	}
+}
@@ -0,0 +1,124 @@
+package toberumono.json;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link JSONHandler} that assembles the events that it receives into a tree of {@link JSONData}.<br>
+ * Containers are attached to their parents as soon as they are opened, so the builder only needs an explicit stack of open containers.<br>
+ * The nodes are created via {@link #newObject()}, {@link #newArray()}, {@link #newString(String)}, and {@link #newNumber(Number)}, which
+ * subclasses can override to reuse nodes (see {@link JSONDocument}).
+ * 
+ * @author Toberumono
+ */
+class JSONTreeBuilder implements JSONHandler {
+	private final ArrayList<JSONData<?>> containers = new ArrayList<>();
+	private JSONData<?> root;
+	private String key;
+	
+	/**
+	 * @return the root of the tree that was built. Its modified flags are cleared before it is returned
+	 */
+	public JSONData<?> getRoot() {
+		if (root instanceof ModifiableJSONData)
+			((ModifiableJSONData) root).clearModified();
+		return root;
+	}
+	
+	/**
+	 * Discards the tree that was built so that the builder can be reused.
+	 */
+	public void reset() {
+		containers.clear();
+		root = null;
+		key = null;
+	}
+	
+	private void value(JSONData<?> value) {
+		if (containers.isEmpty()) {
+			root = value;
+			return;
+		}
+		JSONData<?> top = containers.get(containers.size() - 1);
+		if (top instanceof JSONObject)
+			((JSONObject) top).put(key, value);
+		else
+			((JSONArray) top).add(value);
+	}
+	
+	@Override
+	public void startObject() {
+		JSONObject object = newObject();
+		value(object);
+		containers.add(object);
+	}
+	
+	@Override
+	public void endObject() {
+		((JSONObject) containers.remove(containers.size() - 1)).clearOwnModified(); //Its children have already been cleared
+	}
+	
+	@Override
+	public void startArray() {
+		JSONArray array = newArray();
+		value(array);
+		containers.add(array);
+	}
+	
+	@Override
+	public void endArray() {
+		((JSONArray) containers.remove(containers.size() - 1)).clearOwnModified(); //Its children have already been cleared
+	}
+	
+	@Override
+	public void key(String key) {
+		this.key = JSONKey.canonical(key);
+	}
+	
+	@Override
+	public void stringValue(String value) {
+		value(newString(value));
+	}
+	
+	@Override
+	public void numberValue(Number value) {
+		value(newNumber(value));
+	}
+	
+	/**
+	 * @return an empty {@link JSONObject}
+	 */
+	JSONObject newObject() {
+		return new JSONObject();
+	}
+	
+	/**
+	 * @return an empty {@link JSONArray}
+	 */
+	JSONArray newArray() {
+		return new JSONArray();
+	}
+	
+	/**
+	 * @return a {@link JSONData} that represents the string {@code value}
+	 */
+	JSONData<?> newString(String value) {
+		return new JSONString(value);
+	}
+	
+	/**
+	 * @return a {@link JSONData} that represents the number {@code value}
+	 */
+	JSONData<?> newNumber(Number value) {
+		return new JSONNumber<>(value);
+	}
+	
+	@Override
+	public void booleanValue(boolean value) {
+		value(JSONBoolean.valueOf(value));
+	}
+	
+	@Override
+	public void nullValue() {
+		value(JSONNull.NULL);
+	}
+}
@@ -0,0 +1,264 @@
+package toberumono.json;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An {@link Appendable} that encodes everything appended to it as UTF-8 and passes the bytes straight to an {@link OutputStream} or a
+ * {@link ByteBuffer}.<br>
+ * {@link JSONGenerator} recognizes this class and writes keys and strings via {@link #key(String)} and {@link #string(String)}, which escape
+ * and encode in a single pass. The escaped bytes of short keys are cached across all outputs, so the keys of documents with a regular shape
+ * are only escaped and encoded once.
+ * 
+ * @author Toberumono
+ */
+final class JSONUTF8Output implements Appendable, Flushable {
+	private static final int MAX_CACHED_KEYS = 4096, MAX_CACHED_KEY_LENGTH = 64;
+	private static final ConcurrentHashMap<String, byte[]> keys = new ConcurrentHashMap<>();
+	private static final byte[][] escapes = new byte[128][];
+	
+	static {
+		escapes['\t'] = "\\t".getBytes();
+		escapes['\b'] = "\\b".getBytes();
+		escapes['\n'] = "\\n".getBytes();
+		escapes['\r'] = "\\r".getBytes();
+		escapes['\f'] = "\\f".getBytes();
+		escapes['"'] = "\\\"".getBytes();
+		escapes['\\'] = "\\\\".getBytes();
+	}
+	
+	private final OutputStream stream;
+	private final ByteBuffer target;
+	private final byte[] buffer = new byte[8192];
+	private int position = 0;
+	private long drained = 0;
+	
+	/**
+	 * Constructs a {@link JSONUTF8Output} that writes to an {@link OutputStream}. The bytes are buffered until they are {@link #flush()
+	 * flushed}.
+	 * 
+	 * @param stream
+	 *            the {@link OutputStream} to which the bytes should be written
+	 */
+	JSONUTF8Output(OutputStream stream) {
+		this.stream = stream;
+		this.target = null;
+	}
+	
+	/**
+	 * Constructs a {@link JSONUTF8Output} that writes into a {@link ByteBuffer} starting at its current position. The bytes are buffered until
+	 * they are {@link #flush() flushed}.
+	 * 
+	 * @param target
+	 *            the {@link ByteBuffer} into which the bytes should be written
+	 */
+	JSONUTF8Output(ByteBuffer target) {
+		this.stream = null;
+		this.target = target;
+	}
+	
+	@Override
+	public JSONUTF8Output append(CharSequence csq) throws IOException {
+		return append(csq, 0, csq.length());
+	}
+	
+	@Override
+	public JSONUTF8Output append(CharSequence csq, int start, int end) throws IOException {
+		for (int i = start; i < end; i++) {
+			char c = csq.charAt(i);
+			if (c < 0x80) { //ASCII fast path
+				if (position == buffer.length)
+					drain();
+				buffer[position++] = (byte) c;
+			}
+			else
+				i = encode(csq, i, end);
+		}
+		return this;
+	}
+	
+	@Override
+	public JSONUTF8Output append(char c) throws IOException {
+		if (c < 0x80) {
+			if (position == buffer.length)
+				drain();
+			buffer[position++] = (byte) c;
+		}
+		else
+			encode(String.valueOf(c), 0, 1);
+		return this;
+	}
+	
+	/**
+	 * Writes characters that are known to be ASCII, such as formatted numbers.
+	 * 
+	 * @param chars
+	 *            the array containing the characters
+	 * @param length
+	 *            the number of characters to write from the start of {@code chars}
+	 * @throws IOException
+	 *             if an error occurs while writing to the underlying {@link OutputStream}
+	 */
+	void ascii(char[] chars, int length) throws IOException {
+		if (buffer.length - position < length)
+			drain();
+		for (int i = 0; i < length; i++)
+			buffer[position++] = (byte) chars[i];
+	}
+	
+	/**
+	 * Writes {@code key} as an escaped JSON string, using the cached bytes if {@code key} has been written before.
+	 * 
+	 * @param key
+	 *            the key to write
+	 * @throws IOException
+	 *             if an error occurs while writing to the underlying {@link OutputStream}
+	 */
+	void key(String key) throws IOException {
+		if (key.length() > MAX_CACHED_KEY_LENGTH) {
+			string(key);
+			return;
+		}
+		byte[] bytes = keys.get(key);
+		if (bytes == null) {
+			if (buffer.length - position < MAX_CACHED_KEY_LENGTH * 3 + 2) //Guarantees that the escaped key will not be split by a drain
+				drain();
+			int start = position;
+			string(key);
+			if (keys.size() < MAX_CACHED_KEYS) {
+				bytes = new byte[position - start];
+				System.arraycopy(buffer, start, bytes, 0, bytes.length);
+				keys.putIfAbsent(key, bytes);
+			}
+			return;
+		}
+		write(bytes);
+	}
+	
+	/**
+	 * Writes the cached UTF-8 bytes of {@code key}.
+	 * 
+	 * @param key
+	 *            the key to write
+	 * @throws IOException
+	 *             if an error occurs while writing to the underlying {@link OutputStream}
+	 */
+	void key(JSONKey key) throws IOException {
+		if (key.utf8().length > buffer.length)
+			string(key.getName());
+		else
+			write(key.utf8());
+	}
+	
+	/**
+	 * Escapes, quotes, and encodes {@code value} in a single pass.
+	 * 
+	 * @param value
+	 *            the {@link String} to write
+	 * @throws IOException
+	 *             if an error occurs while writing to the underlying {@link OutputStream}
+	 */
+	void string(String value) throws IOException {
+		if (buffer.length - position < 2)
+			drain();
+		buffer[position++] = '"';
+		for (int i = 0, length = value.length(); i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				byte[] escape = escapes[c];
+				if (escape == null) {
+					if (position == buffer.length)
+						drain();
+					buffer[position++] = (byte) c;
+				}
+				else
+					write(escape);
+			}
+			else
+				i = encode(value, i, length);
+		}
+		if (position == buffer.length)
+			drain();
+		buffer[position++] = '"';
+	}
+	
+	/**
+	 * Encodes the non-ASCII character at {@code index}.
+	 * 
+	 * @return the index of the last {@code char} that was consumed
+	 * @throws MalformedInputException
+	 *             if the character is an unpaired surrogate
+	 */
+	private int encode(CharSequence csq, int index, int end) throws IOException {
+		if (buffer.length - position < 4)
+			drain();
+		char c = csq.charAt(index);
+		if (c < 0x800) {
+			buffer[position++] = (byte) (0xC0 | (c >> 6));
+			buffer[position++] = (byte) (0x80 | (c & 0x3F));
+		}
+		else if (Character.isHighSurrogate(c) && index + 1 < end && Character.isLowSurrogate(csq.charAt(index + 1))) {
+			int cp = Character.toCodePoint(c, csq.charAt(++index));
+			buffer[position++] = (byte) (0xF0 | (cp >> 18));
+			buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+			buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+		}
+		else if (Character.isSurrogate(c))
+			throw new MalformedInputException(1); //Unpaired surrogates cannot be encoded, which is what a reporting CharsetEncoder throws for them
+		else {
+			buffer[position++] = (byte) (0xE0 | (c >> 12));
+			buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[position++] = (byte) (0x80 | (c & 0x3F));
+		}
+		return index;
+	}
+	
+	/**
+	 * Copies {@code bytes} into the buffer. {@code bytes} must be no longer than the buffer, which holds for escapes and cached keys.
+	 */
+	private void write(byte[] bytes) throws IOException {
+		if (buffer.length - position < bytes.length)
+			drain();
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+	
+	/**
+	 * Passes the buffered bytes on to the underlying {@link OutputStream} or {@link ByteBuffer}.
+	 * 
+	 * @throws java.nio.BufferOverflowException
+	 *             if the underlying {@link ByteBuffer} does not have enough space left
+	 */
+	private void drain() throws IOException {
+		if (position == 0)
+			return;
+		if (stream != null)
+			stream.write(buffer, 0, position);
+		else
+			target.put(buffer, 0, position);
+		drained += position;
+		position = 0;
+	}
+	
+	/**
+	 * @return the number of bytes that have been written to this {@link JSONUTF8Output}, including those that are still buffered
+	 */
+	long getWritten() {
+		return drained + position;
+	}
+	
+	/**
+	 * Passes the buffered bytes on and flushes the underlying {@link OutputStream}.
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+		if (stream != null)
+			stream.flush();
+	}
+}
@@ -17,12 +17,16 @@ abstract class JSONValue<T> implements JSONData<T> {
 	}
 	
 	JSONValue(JSONValue<T> original) {
-		value = original.value;
+		value = original.value();
 		type = original.type;
 	}
 	
+	/**
+	 * Subclasses that store their value in a different form (such as a primitive) can override this method, in which case they should pass
+	 * {@code null} to the constructor.
+	 */
 	@Override
-	public final T value() {
+	public T value() {
 		return value;
 	}
 	
@@ -38,7 +42,7 @@ abstract class JSONValue<T> implements JSONData<T> {
 	 */
 	@Override
 	public String toString() {
-		return value.toString();
+		return value().toString();
 	}
 	
 	/**
@@ -48,7 +52,7 @@ abstract class JSONValue<T> implements JSONData<T> {
 	 */
 	@Override
 	public int hashCode() {
-		return value.hashCode();
+		return value().hashCode();
 	}
 	
 	/**
@@ -58,6 +62,7 @@ abstract class JSONValue<T> implements JSONData<T> {
 	 */
 	@Override
 	public boolean equals(Object o) {
+		T value = value();
 		if (o == null)
 			return value == null;
 		if (o instanceof JSONData)
@@ -1,8 +1,14 @@
 package toberumono.json;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
 import toberumono.utils.general.Strings;
 
@@ -15,6 +21,21 @@ import toberumono.utils.general.Strings;
  *            the type of value to wrap
  */
 public class JSONWrapped<T extends JSONSerializable> extends JSONValue<T> {
+	private static final Map<Class<?>, UnaryOperator<?>> registered = new ConcurrentHashMap<>();
+	private static volatile ClassValue<MethodHandle> copiers = newCopierCache();
+	private static final MethodType COPIER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodHandle APPLY, UNSUPPORTED, FAILED;
+	static {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			APPLY = lookup.findVirtual(UnaryOperator.class, "apply", COPIER_TYPE);
+			UNSUPPORTED = lookup.findStatic(JSONWrapped.class, "unsupported", COPIER_TYPE);
+			FAILED = lookup.findStatic(JSONWrapped.class, "failed", MethodType.methodType(Object.class, Exception.class, Object.class));
+		}
+		catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
 	
 	/**
 	 * Constructs a new {@link JSONWrapped} that wraps the given {@code value}
@@ -33,12 +54,16 @@ public class JSONWrapped<T extends JSONSerializable> extends JSONValue<T> {
 	
 	/**
 	 * {@inheritDoc}<br>
-	 * <b>Note:</b> If the wrapped {@link #value() value} implements {@link Cloneable}, this method will attempt to use the
-	 * wrapped {@link #value() value's} {@link #clone()} method. If {@link #value() value} is not an instance of
-	 * {@link Cloneable} or its {@link #clone()} method fails, this method will attempt to use a copy {@link Constructor} (a
-	 * {@link Constructor} which takes an instance of the value's type as it's only argument). If that fails or the copy
-	 * {@link Constructor} for {@link #value() value} does not exist, this method will throw an
-	 * {@link UnsupportedOperationException}.
+	 * <b>Note:</b> The strategy used to copy the wrapped {@link #value() value} is resolved once per {@link Class} and then cached. In order of
+	 * preference, it is:
+	 * <ol>
+	 * <li>the copier registered for the value's {@link Class} (or its nearest superclass or, failing that, its nearest interface) via
+	 * {@link #registerCopier(Class, UnaryOperator)}</li>
+	 * <li>the value's public {@link #clone()} method if the value implements {@link Cloneable}</li>
+	 * <li>a public copy {@link Constructor} (a {@link Constructor} which takes an instance of the value's type as it's only argument)</li>
+	 * </ol>
+	 * If the {@link #clone()} method throws an {@link Exception}, the copy {@link Constructor} is used instead. If neither of them exist or both
+	 * of them fail, this method will throw an {@link UnsupportedOperationException}. Exceptions thrown by registered copiers are not caught.
 	 * 
 	 * @throws UnsupportedOperationException
 	 *             if the wrapped {@link #value() value} could not be copied by the methods described above
@@ -46,20 +71,80 @@ public class JSONWrapped<T extends JSONSerializable> extends JSONValue<T> {
 	@Override
 	@SuppressWarnings("unchecked")
 	public JSONWrapped<T> deepCopy() {
-		if (value() instanceof Cloneable) {
+		T value = value();
+		try {
+			return new JSONWrapped<>((T) (Object) copiers.get(value.getClass()).invokeExact((Object) value));
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable t) {
+			throw new UnsupportedOperationException("Cannot create a deep copy with a wrapped value of type " + value.getClass(), t);
+		}
+	}
+	
+	/**
+	 * Registers a function that {@link #deepCopy()} uses to copy wrapped values of the given type and its subtypes. This is intended for types
+	 * that have neither a public {@link #clone()} method nor a public copy {@link Constructor}, and takes precedence over both. {@code type} can
+	 * be a class or an interface.
+	 * 
+	 * @param type
+	 *            the type of value that {@code copier} copies
+	 * @param copier
+	 *            a function that returns a deep copy of its argument
+	 * @param <U>
+	 *            the type of value that {@code copier} copies
+	 */
+	public static <U extends JSONSerializable> void registerCopier(Class<U> type, UnaryOperator<U> copier) {
+		synchronized (registered) {
+			registered.put(Objects.requireNonNull(type, "type"), Objects.requireNonNull(copier, "copier"));
+			copiers = newCopierCache(); //Subtypes of type may have already resolved a different strategy
+		}
+	}
+	
+	private static ClassValue<MethodHandle> newCopierCache() {
+		return new ClassValue<MethodHandle>() {
+			@Override
+			protected MethodHandle computeValue(Class<?> type) {
+				return findCopier(type);
+			}
+		};
+	}
+	
+	private static MethodHandle findCopier(Class<?> type) {
+		UnaryOperator<?> copier = JSONAdapters.findRegistered(registered, type);
+		if (copier != null)
+			return APPLY.bindTo(copier);
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle clone = null, copy = null;
+		if (Cloneable.class.isAssignableFrom(type)) {
 			try {
-				Method clone = value().getClass().getMethod("clone");
-				clone.setAccessible(true);
-				return new JSONWrapped<>((T) clone.invoke(value()));
+				Method method = type.getMethod("clone");
+				method.setAccessible(true);
+				clone = lookup.unreflect(method).asType(COPIER_TYPE);
 			}
-			catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {}
+			catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {}
 		}
 		try {
-			Constructor<?> copy = value().getClass().getConstructor(value().getClass());
-			copy.setAccessible(true);
-			return new JSONWrapped<>((T) copy.newInstance(value()));
+			Constructor<?> constructor = type.getConstructor(type);
+			constructor.setAccessible(true);
+			copy = lookup.unreflectConstructor(constructor).asType(COPIER_TYPE);
 		}
-		catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {}
-		throw new UnsupportedOperationException("Cannot create a deep copy with a wrapped value of type " + value().getClass());
+		catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {}
+		if (clone == null)
+			return copy == null ? UNSUPPORTED : MethodHandles.catchException(copy, Exception.class, FAILED);
+		//If clone throws, fall back to the copy constructor (if there is one)
+		return MethodHandles.catchException(clone, Exception.class, copy == null ? FAILED
+				: MethodHandles.dropArguments(MethodHandles.catchException(copy, Exception.class, FAILED), 0, Exception.class));
+	}
+	
+	@SuppressWarnings("unused") //Used via UNSUPPORTED
+	private static Object unsupported(Object value) {
+		throw new UnsupportedOperationException("Cannot create a deep copy with a wrapped value of type " + value.getClass());
+	}
+	
+	@SuppressWarnings("unused") //Used via FAILED
+	private static Object failed(Exception cause, Object value) {
+		throw new UnsupportedOperationException("Cannot create a deep copy with a wrapped value of type " + value.getClass(), cause);
 	}
 }
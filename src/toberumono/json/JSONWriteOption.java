@@ -0,0 +1,29 @@
+package toberumono.json;
+
+import java.nio.file.Path;
+
+/**
+ * Options that control how {@link JSONSystem#writeJSON(JSONData, Path, boolean, JSONWriteOption...)} writes to a file.
+ * 
+ * @author Toberumono
+ * @see JSONSystem#writeJSON(JSONData, Path, boolean, JSONWriteOption...)
+ */
+public enum JSONWriteOption {
+	/**
+	 * Skip the write if the file already exists and the root node is a {@link ModifiableJSONData} that has not been modified since it was loaded
+	 * or last written.
+	 */
+	SKIP_IF_UNMODIFIED,
+	/**
+	 * Skip the write if the file already contains exactly the bytes that would be written. The existing file is compared chunk by chunk and the
+	 * comparison stops at the first difference, so this costs at most one read of the file.
+	 */
+	SKIP_IF_UNCHANGED,
+	/**
+	 * Write to a temporary file in the same directory, force it to the storage device, and then rename it over the target. Readers (and the file
+	 * after a crash) see either the old contents or the new contents, never a partially-written file.<br>
+	 * If the file system cannot rename the temporary file atomically, the write fails with an
+	 * {@link java.nio.file.AtomicMoveNotSupportedException AtomicMoveNotSupportedException} and the target is left untouched.
+	 */
+	ATOMIC
+}
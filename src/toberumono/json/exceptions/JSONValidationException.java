@@ -0,0 +1,48 @@
+package toberumono.json.exceptions;
+
+/**
+ * Thrown when JSON data does not conform to a {@link toberumono.json.JSONSchema JSONSchema}.
+ * 
+ * @author Toberumono
+ */
+public class JSONValidationException extends JSONException {
+	
+	/**
+	 * Constructs a new {@link JSONValidationException} with no message or {@link Throwable cause}
+	 */
+	public JSONValidationException() {
+		super();
+	}
+	
+	/**
+	 * Constructs a new {@link JSONValidationException} with the given message but no {@link Throwable cause}
+	 * 
+	 * @param message
+	 *            a message describing the details of the exception. Retrieved later via a call to {@link #getMessage()}
+	 */
+	public JSONValidationException(String message) {
+		super(message);
+	}
+	
+	/**
+	 * Constructs a new {@link JSONValidationException} with the given message and {@link Throwable cause}
+	 * 
+	 * @param message
+	 *            a message describing the details of the exception. Retrieved later via a call to {@link #getMessage()}
+	 * @param cause
+	 *            the {@link Throwable} to wrap. Retrieved later via a call to {@link #getCause()}
+	 */
+	public JSONValidationException(String message, Throwable cause) {
+		super(message, cause);
+	}
+	
+	/**
+	 * Wraps the given {@link Throwable} in a {@link JSONValidationException}
+	 * 
+	 * @param cause
+	 *            the {@link Throwable} to wrap. Retrieved later via a call to {@link #getCause()}
+	 */
+	public JSONValidationException(Throwable cause) {
+		super(cause);
+	}
+}